@@ -0,0 +1,37 @@
+package guru.nicks.commons.messaging;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Describes why a message is dead-lettered.
+ */
+@Value
+@Builder
+public class DeadLetterMetadata {
+
+    /**
+     * ID of the listener that received the message.
+     */
+    @NonNull // Lombok creates runtime nullness check for this own annotation only
+    String listenerId;
+
+    /**
+     * Class of the consumer that failed to process the message.
+     */
+    @NonNull // Lombok creates runtime nullness check for this own annotation only
+    String consumerClass;
+
+    /**
+     * Exception that caused dead-lettering.
+     */
+    @NonNull // Lombok creates runtime nullness check for this own annotation only
+    Throwable exception;
+
+    /**
+     * Number of consumption attempts made.
+     */
+    int attempts;
+
+}
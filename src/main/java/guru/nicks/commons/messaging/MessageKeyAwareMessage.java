@@ -19,4 +19,17 @@ public interface MessageKeyAwareMessage {
     @Nullable
     String getMessageKey();
 
+    /**
+     * Returns the message key in its original form, so that it can be converted to bytes without an intermediate
+     * string (see {@link guru.nicks.commons.messaging.key.MessageKeyEncoder}). Its string representation must be equal
+     * to {@link #getMessageKey()}, otherwise partitioning would differ between the two.
+     *
+     * @return default implementation returns {@link #getMessageKey()}
+     */
+    @JsonIgnore
+    @Nullable
+    default Object getRawMessageKey() {
+        return getMessageKey();
+    }
+
 }
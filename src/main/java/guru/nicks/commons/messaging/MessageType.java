@@ -4,6 +4,8 @@ import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import java.time.Duration;
+
 /**
  * @see TypeAwareMessage#getType()
  */
@@ -12,8 +14,22 @@ public interface MessageType {
     /**
      * Needed for {@link MessageTypeResolver} to read/write the message type. Has better semantics than
      * {@link Object#toString()}.
+     * <p>
+     * For enums, must be constant: it's cached per enum constant (see
+     * {@link guru.nicks.commons.messaging.resolver.MessageBrokerValues}).
      */
     @JsonIgnore
     String getMessageBrokerValue();
 
+    /**
+     * Max. age of messages of this type, see
+     * {@link guru.nicks.commons.messaging.listener.MessageConsumer#getMaxMessageAge()}.
+     *
+     * @return default implementation returns {@link Duration#ZERO} which means unlimited
+     */
+    @JsonIgnore
+    default Duration getMaxMessageAge() {
+        return Duration.ZERO;
+    }
+
 }
@@ -0,0 +1,18 @@
+package guru.nicks.commons.messaging;
+
+/**
+ * A message whose instances can be reused for multiple messages (to avoid allocating a new object per message). Such
+ * payloads must not be retained by consumers after they return, because the same instance will be overwritten with the
+ * next message's data.
+ *
+ * @see guru.nicks.commons.messaging.listener.MessageConsumer#isPayloadReusable()
+ */
+public interface ReusableMessage {
+
+    /**
+     * Called before the instance is filled with the next message's data. Must reset all fields to their defaults,
+     * otherwise fields absent in the next message would keep the previous message's values.
+     */
+    void reset();
+
+}
@@ -1,27 +1,149 @@
 package guru.nicks.commons.messaging.config;
 
+import guru.nicks.commons.condition.ConditionalOnPropertyNotBlank;
+import guru.nicks.commons.messaging.impl.DeadLetterPublisherServiceImpl;
+import guru.nicks.commons.messaging.impl.HashedTimerWheel;
 import guru.nicks.commons.messaging.impl.KafkaMessagePublisherServiceImpl;
+import guru.nicks.commons.messaging.impl.ReactiveMessagePublisherServiceImpl;
+import guru.nicks.commons.messaging.impl.RequestReplyServiceImpl;
+import guru.nicks.commons.messaging.impl.StreamBindingStateServiceImpl;
+import guru.nicks.commons.messaging.key.MessageKeyEncoder;
+import guru.nicks.commons.messaging.key.MessageKeyEncoders;
+import guru.nicks.commons.messaging.key.MessagePartitioner;
+import guru.nicks.commons.messaging.listener.MessageConsumer;
+import guru.nicks.commons.messaging.listener.MessageConsumerIndex;
+import guru.nicks.commons.messaging.listener.ReplyMessageListener;
+import guru.nicks.commons.messaging.service.BindingStateService;
+import guru.nicks.commons.messaging.service.DeadLetterPublisherService;
 import guru.nicks.commons.messaging.service.MessagePublisherService;
+import guru.nicks.commons.messaging.service.ReactiveMessagePublisherService;
+import guru.nicks.commons.messaging.service.RequestReplyService;
+import guru.nicks.commons.validation.AnnotationValidator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.cloud.stream.binding.BindingsLifecycleController;
 import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
 
 @AutoConfiguration
 @Slf4j
 public class CommonsMessagingAutoConfiguration {
 
     /**
-     * Creates {@link MessagePublisherService} bean if it's not already present.
+     * Creates {@link MessageConsumerIndex} bean if it's not already present - to be passed to listener constructors
+     * instead of the list of all consumers.
+     */
+    @ConditionalOnMissingBean(MessageConsumerIndex.class)
+    @Bean
+    public MessageConsumerIndex messageConsumerIndex(ObjectProvider<MessageConsumer> messageConsumerProvider) {
+        log.debug("Building {} bean", MessageConsumerIndex.class.getSimpleName());
+        return new MessageConsumerIndex(messageConsumerProvider.orderedStream().toList());
+    }
+
+    /**
+     * Creates {@link MessageKeyEncoders} bean if it's not already present. {@link MessageKeyEncoder} beans complement
+     * (or replace) the built-in encoders.
+     */
+    @ConditionalOnMissingBean(MessageKeyEncoders.class)
+    @Bean
+    public MessageKeyEncoders messageKeyEncoders(ObjectProvider<MessageKeyEncoder<?>> messageKeyEncoderProvider) {
+        log.debug("Building {} bean", MessageKeyEncoders.class.getSimpleName());
+        return new MessageKeyEncoders(messageKeyEncoderProvider.orderedStream().toList());
+    }
+
+    /**
+     * Creates {@link MessagePublisherService} bean if it's not already present. If there's a {@link MessagePartitioner}
+     * bean (for example, {@link guru.nicks.commons.messaging.key.Murmur2MessagePartitioner}), partitions are computed by
+     * the publisher.
      */
     @ConditionalOnMissingBean(MessagePublisherService.class)
     @Bean
-    public MessagePublisherService messagePublisherService(StreamBridge streamBridge, ObjectMapper objectMapper) {
+    public MessagePublisherService messagePublisherService(StreamBridge streamBridge, ObjectMapper objectMapper,
+            MessageKeyEncoders messageKeyEncoders, ObjectProvider<MessagePartitioner> messagePartitionerProvider) {
         log.debug("Building {} bean", MessagePublisherService.class.getSimpleName());
-        return new KafkaMessagePublisherServiceImpl(streamBridge, objectMapper);
+        return new KafkaMessagePublisherServiceImpl(streamBridge, objectMapper, messageKeyEncoders,
+                messagePartitionerProvider.getIfAvailable());
+    }
+
+    /**
+     * Creates {@link DeadLetterPublisherService} bean if it's not already present.
+     */
+    @ConditionalOnMissingBean(DeadLetterPublisherService.class)
+    @Bean
+    public DeadLetterPublisherService deadLetterPublisherService(MessagePublisherService messagePublisherService) {
+        log.debug("Building {} bean", DeadLetterPublisherService.class.getSimpleName());
+        return new DeadLetterPublisherServiceImpl(messagePublisherService);
+    }
+
+    /**
+     * Creates {@link RequestReplyService} bean if it's not already present and the reply topic
+     * ({@link ReplyMessageListener#REPLY_TOPIC_PROPERTY}) is set. Request timeouts are tracked by a
+     * {@link HashedTimerWheel} with default settings.
+     */
+    @ConditionalOnPropertyNotBlank(ReplyMessageListener.REPLY_TOPIC_PROPERTY)
+    @ConditionalOnMissingBean(RequestReplyService.class)
+    @Bean
+    public RequestReplyService requestReplyService(MessagePublisherService messagePublisherService,
+            @Value("${" + ReplyMessageListener.REPLY_TOPIC_PROPERTY + "}") String replyTopic) {
+        log.debug("Building {} bean", RequestReplyService.class.getSimpleName());
+
+        var timerWheel = new HashedTimerWheel(HashedTimerWheel.DEFAULT_TICK_DURATION,
+                HashedTimerWheel.DEFAULT_TICKS_PER_WHEEL, "request-reply-timer");
+        return new RequestReplyServiceImpl(messagePublisherService, replyTopic, timerWheel);
+    }
+
+    /**
+     * Creates {@link ReplyMessageListener} bean (named {@link ReplyMessageListener#BEAN_NAME}) if it's not already
+     * present and the reply topic ({@link ReplyMessageListener#REPLY_TOPIC_PROPERTY}) is set.
+     */
+    @ConditionalOnPropertyNotBlank(ReplyMessageListener.REPLY_TOPIC_PROPERTY)
+    @ConditionalOnMissingBean(ReplyMessageListener.class)
+    @Bean(ReplyMessageListener.BEAN_NAME)
+    public ReplyMessageListener messageReplyListener(@Value("${spring.application.name}") String appName,
+            AnnotationValidator annotationValidator, ObjectMapper objectMapper,
+            RequestReplyService requestReplyService) {
+        log.debug("Building {} bean", ReplyMessageListener.class.getSimpleName());
+        return new ReplyMessageListener(appName, annotationValidator, objectMapper, requestReplyService);
+    }
+
+    /**
+     * Creates {@link BindingStateService} bean if it's not already present.
+     */
+    @ConditionalOnMissingBean(BindingStateService.class)
+    @Bean
+    public BindingStateService bindingStateService(
+            ObjectProvider<BindingsLifecycleController> bindingsLifecycleControllerProvider) {
+        log.debug("Building {} bean", BindingStateService.class.getSimpleName());
+        return new StreamBindingStateServiceImpl(bindingsLifecycleControllerProvider);
+    }
+
+    /**
+     * Reactive beans are declared in a separate class: Reactor types in bean method signatures can't be introspected
+     * without Reactor on the classpath, so a method-level condition wouldn't help.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(Flux.class)
+    public static class ReactiveMessagingConfiguration {
+
+        /**
+         * Creates {@link ReactiveMessagePublisherService} bean if it's not already present.
+         */
+        @ConditionalOnMissingBean(ReactiveMessagePublisherService.class)
+        @Bean
+        public ReactiveMessagePublisherService reactiveMessagePublisherService(
+                MessagePublisherService messagePublisherService) {
+            log.debug("Building {} bean", ReactiveMessagePublisherService.class.getSimpleName());
+            return new ReactiveMessagePublisherServiceImpl(messagePublisherService);
+        }
+
     }
 
 }
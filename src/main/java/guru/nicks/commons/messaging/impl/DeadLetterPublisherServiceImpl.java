@@ -0,0 +1,109 @@
+package guru.nicks.commons.messaging.impl;
+
+import guru.nicks.commons.messaging.DeadLetterMetadata;
+import guru.nicks.commons.messaging.service.DeadLetterPublisherService;
+import guru.nicks.commons.messaging.service.MessagePublisherService;
+
+import am.ik.yavi.meta.ConstraintArguments;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotBlank;
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
+
+/**
+ * Publishes dead letters with {@link MessagePublisherService}. Message type is preserved because it's either in the
+ * payload or in the application headers, both of which are copied as is.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class DeadLetterPublisherServiceImpl implements DeadLetterPublisherService {
+
+    /**
+     * Long exception messages (such as those with nested causes) are truncated to this length.
+     */
+    public static final int MAX_EXCEPTION_MESSAGE_LENGTH = 1000;
+
+    /**
+     * Headers having these prefixes are set by Spring/binders for inbound messages and are not copied to dead letters.
+     */
+    private static final String[] INTERNAL_HEADER_PREFIXES = {KafkaHeaders.PREFIX, "scst_", "spring_"};
+
+    private final MessagePublisherService messagePublisherService;
+
+    @ConstraintArguments
+    @Override
+    public void publish(String deadLetterTopic, Message<Map<String, Object>> failedMessage,
+            DeadLetterMetadata metadata) {
+        checkNotBlank(deadLetterTopic, _DeadLetterPublisherServiceImplPublishArgumentsMeta.DEADLETTERTOPIC.name());
+        checkNotNull(failedMessage, _DeadLetterPublisherServiceImplPublishArgumentsMeta.FAILEDMESSAGE.name());
+        checkNotNull(metadata, _DeadLetterPublisherServiceImplPublishArgumentsMeta.METADATA.name());
+
+        MessageHeaders originalHeaders = failedMessage.getHeaders();
+        Map<String, Object> headers = HashMap.newHashMap(originalHeaders.size() + 8);
+
+        originalHeaders.forEach((name, value) -> {
+            if (isApplicationHeader(name)) {
+                headers.put(name, value);
+            }
+        });
+
+        headers.put(LISTENER_ID_HEADER, metadata.getListenerId());
+        headers.put(CONSUMER_CLASS_HEADER, metadata.getConsumerClass());
+        headers.put(EXCEPTION_CLASS_HEADER, metadata.getException().getClass().getName());
+        headers.put(EXCEPTION_MESSAGE_HEADER,
+                StringUtils.abbreviate(StringUtils.defaultString(metadata.getException().getMessage()),
+                        MAX_EXCEPTION_MESSAGE_LENGTH));
+        headers.put(ATTEMPTS_HEADER, metadata.getAttempts());
+        copyHeader(originalHeaders, KafkaHeaders.RECEIVED_TOPIC, headers, ORIGINAL_TOPIC_HEADER);
+        copyHeader(originalHeaders, KafkaHeaders.RECEIVED_PARTITION, headers, ORIGINAL_PARTITION_HEADER);
+        copyHeader(originalHeaders, KafkaHeaders.OFFSET, headers, ORIGINAL_OFFSET_HEADER);
+
+        // keep the original key to keep the original partitioning
+        byte[] messageKey = switch (originalHeaders.get(KafkaHeaders.RECEIVED_KEY)) {
+            case null -> null;
+            case byte[] bytes -> bytes;
+            case Object obj -> obj.toString().getBytes(StandardCharsets.UTF_8);
+        };
+
+        messagePublisherService.publish(deadLetterTopic, failedMessage.getPayload(), messageKey,
+                NoOpMessageTypeResolver.INSTANCE, headers);
+        log.info("Published dead letter to topic '{}' (consumer [{}], {} attempt(s), reason: {})", deadLetterTopic,
+                metadata.getConsumerClass(), metadata.getAttempts(), metadata.getException().getMessage());
+    }
+
+    /**
+     * Tells headers set by the publishing app from those set by Spring/binders for inbound messages, which must not be
+     * copied when the message is republished.
+     *
+     * @param name header name
+     * @return {@code true} if the header should be copied
+     */
+    public static boolean isApplicationHeader(String name) {
+        if (MessageHeaders.ID.equals(name) || MessageHeaders.TIMESTAMP.equals(name)
+                || IntegrationMessageHeaderAccessor.DELIVERY_ATTEMPT.equals(name)) {
+            return false;
+        }
+
+        return !StringUtils.startsWithAny(name, INTERNAL_HEADER_PREFIXES);
+    }
+
+    private static void copyHeader(MessageHeaders source, String sourceName, Map<String, Object> target,
+            String targetName) {
+        Object value = source.get(sourceName);
+
+        if (value != null) {
+            target.put(targetName, value);
+        }
+    }
+
+}
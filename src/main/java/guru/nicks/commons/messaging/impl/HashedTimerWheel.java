@@ -0,0 +1,313 @@
+package guru.nicks.commons.messaging.impl;
+
+import am.ik.yavi.meta.ConstraintArguments;
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotBlank;
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
+
+/**
+ * Hashed timer wheel: a single thread runs timeouts with {@link #getTickDuration()} precision, however many of them
+ * are outstanding. Scheduling and cancelling are O(1) and lock-free (they only enqueue the timeout for the worker
+ * thread), which makes it suitable for per-message timeouts that are almost always cancelled before they expire.
+ * <p>
+ * Tasks are run by the worker thread, so they should be short (for example, completing a future).
+ */
+@Slf4j
+public class HashedTimerWheel implements AutoCloseable {
+
+    public static final Duration DEFAULT_TICK_DURATION = Duration.ofMillis(10);
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    /**
+     * Longer delays are truncated to this one.
+     */
+    public static final Duration MAX_DELAY = Duration.ofDays(365L * 100);
+
+    @Getter
+    private final Duration tickDuration;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Timeouts scheduled but not yet put into buckets by the worker thread.
+     */
+    private final Queue<Timeout> scheduledTimeouts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Timeouts cancelled but not yet removed from buckets by the worker thread.
+     */
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final Thread worker;
+    private volatile boolean closed;
+
+    /**
+     * Constructor. Starts the worker (daemon) thread.
+     *
+     * @param tickDuration  timer precision
+     * @param ticksPerWheel number of buckets, rounded up to a power of two; timeouts longer than one wheel rotation
+     *                      are checked once per rotation
+     * @param threadName    worker thread name
+     */
+    @ConstraintArguments
+    public HashedTimerWheel(Duration tickDuration, int ticksPerWheel, String threadName) {
+        checkNotNull(tickDuration, _HashedTimerWheelArgumentsMeta.TICKDURATION.name());
+        checkNotBlank(threadName, _HashedTimerWheelArgumentsMeta.THREADNAME.name());
+
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException(_HashedTimerWheelArgumentsMeta.TICKDURATION.name()
+                    + " must be positive");
+        }
+
+        if ((ticksPerWheel < 1) || (ticksPerWheel > (1 << 30))) {
+            throw new IllegalArgumentException(_HashedTimerWheelArgumentsMeta.TICKSPERWHEEL.name()
+                    + " must be between 1 and 2^30");
+        }
+
+        this.tickDuration = tickDuration;
+        tickNanos = tickDuration.toNanos();
+
+        int wheelSize = Integer.highestOneBit(ticksPerWheel);
+        if (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+
+        wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+
+        mask = wheelSize - 1;
+
+        worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules the task to run once, after the given delay.
+     *
+     * @param task  task
+     * @param delay delay; timeouts expire not earlier than that, but up to {@link #getTickDuration()} later
+     * @return handle to cancel the task with
+     * @throws IllegalStateException the timer is closed
+     */
+    @ConstraintArguments
+    public Timeout schedule(Runnable task, Duration delay) {
+        checkNotNull(task, _HashedTimerWheelScheduleArgumentsMeta.TASK.name());
+        checkNotNull(delay, _HashedTimerWheelScheduleArgumentsMeta.DELAY.name());
+
+        if (closed) {
+            throw new IllegalStateException("Timer is closed");
+        }
+
+        long delayNanos;
+        if (delay.isNegative()) {
+            delayNanos = 0;
+        } else if (delay.compareTo(MAX_DELAY) > 0) {
+            // Duration.toNanos() overflows for very long delays
+            delayNanos = MAX_DELAY.toNanos();
+        } else {
+            delayNanos = delay.toNanos();
+        }
+
+        var timeout = new Timeout(this, task, System.nanoTime() - startNanos + delayNanos);
+        scheduledTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the worker thread. Outstanding timeouts are discarded without running their tasks.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+    }
+
+    private void run() {
+        long tick = 0;
+
+        while (!closed) {
+            long sleepNanos = (startNanos + (tick + 1) * tickNanos) - System.nanoTime();
+
+            // parkNanos() may return early, hence re-checking
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+
+            removeCancelledTimeouts();
+            transferScheduledTimeouts(tick);
+            wheel[(int) (tick & mask)].expireTimeouts();
+            tick++;
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferScheduledTimeouts(long currentTick) {
+        Timeout timeout;
+
+        while ((timeout = scheduledTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            long deadlineTick = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (deadlineTick - currentTick) / wheel.length;
+
+            // overdue timeouts go to the current bucket, which is processed right away
+            wheel[(int) (Math.max(deadlineTick, currentTick) & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+
+        private static final int STATE_PENDING = 0;
+        private static final int STATE_CANCELLED = 1;
+        private static final int STATE_EXPIRED = 2;
+
+        private final HashedTimerWheel timer;
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+
+        // accessed by the worker thread only
+        private long remainingRounds;
+        @Nullable
+        private Bucket bucket;
+        @Nullable
+        private Timeout prev;
+        @Nullable
+        private Timeout next;
+
+        private Timeout(HashedTimerWheel timer, Runnable task, long deadlineNanos) {
+            this.timer = timer;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the task unless it has already run.
+         *
+         * @return {@code true} if the task was cancelled by this call
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+                return false;
+            }
+
+            // let the worker unlink it, so the task isn't retained until its deadline
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+                return;
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("Timer task failed: {}", e.getMessage(), e);
+            }
+        }
+
+    }
+
+    /**
+     * Doubly linked list of timeouts, accessed by the worker thread only.
+     */
+    private static final class Bucket {
+
+        @Nullable
+        private Timeout head;
+        @Nullable
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+
+            if (head == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+            }
+
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        void expireTimeouts() {
+            Timeout timeout = head;
+
+            while (timeout != null) {
+                Timeout next = timeout.next;
+
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+
+                timeout = next;
+            }
+        }
+
+    }
+
+}
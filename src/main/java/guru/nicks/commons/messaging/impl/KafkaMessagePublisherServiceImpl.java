@@ -1,6 +1,11 @@
 package guru.nicks.commons.messaging.impl;
 
+import guru.nicks.commons.messaging.MessageKeyAwareMessage;
 import guru.nicks.commons.messaging.TypeAwareMessage;
+import guru.nicks.commons.messaging.jfr.MessagePublishEvent;
+import guru.nicks.commons.messaging.key.MessageKeyEncoders;
+import guru.nicks.commons.messaging.key.MessagePartitioner;
+import guru.nicks.commons.messaging.resolver.MessageBrokerValues;
 import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
 import guru.nicks.commons.messaging.service.MessagePublisherService;
 import guru.nicks.commons.utils.json.JsonUtils;
@@ -10,14 +15,17 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.Nullable;
-import lombok.RequiredArgsConstructor;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.cloud.stream.function.StreamOperations;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.GenericMessage;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,61 +34,127 @@ import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
 
 
 /**
- * Publishes messages to Kafka topics using Spring Cloud Stream.
+ * Publishes messages to Kafka topics using Spring Cloud Stream. If no message key is passed and the payload is
+ * {@link MessageKeyAwareMessage}, its key is used. If {@link MessagePartitioner} is set, keyed messages are published
+ * to the partitions it picks (unless the partition is passed explicitly).
  */
-@RequiredArgsConstructor
 @Slf4j
 public class KafkaMessagePublisherServiceImpl implements MessagePublisherService {
 
     /**
      * DI. Ideally this should be {@code message.setHeader("spring.cloud.stream.sendto.destination", topic)}, but it
-     * works in functional style listeners only. Here, {@link StreamBridge#send(String, Object)} is used instead.
+     * works in functional style listeners only. Here, {@link StreamBridge#send(String, Object)} is used instead. Typed
+     * as {@link StreamOperations} (implemented by {@link StreamBridge}) so that tests can send messages elsewhere.
      */
-    private final StreamBridge streamBridge;
+    @Getter(AccessLevel.PROTECTED)
+    private final StreamOperations streamBridge;
+
+    @Getter(AccessLevel.PROTECTED)
     private final ObjectMapper objectMapper;
 
+    private final MessageKeyEncoders messageKeyEncoders;
+
+    /**
+     * If not {@code null}, computes {@link KafkaHeaders#PARTITION} for messages having keys.
+     */
+    @Nullable
+    private final MessagePartitioner messagePartitioner;
+
+    public KafkaMessagePublisherServiceImpl(StreamOperations streamBridge, ObjectMapper objectMapper) {
+        this(streamBridge, objectMapper, MessageKeyEncoders.DEFAULT, null);
+    }
+
+    public KafkaMessagePublisherServiceImpl(StreamOperations streamBridge, ObjectMapper objectMapper,
+            MessageKeyEncoders messageKeyEncoders, @Nullable MessagePartitioner messagePartitioner) {
+        this.streamBridge = streamBridge;
+        this.objectMapper = objectMapper;
+        this.messageKeyEncoders = messageKeyEncoders;
+        this.messagePartitioner = messagePartitioner;
+    }
+
     @Override
     public void publish(String topic, Object payload, @Nullable Object messageKey,
             MessageTypeResolver messageTypeResolver) {
-        // convert to bytes to avoid: 'org.apache.kafka.common.errors.SerializationException: Can't convert key of class
-        // class java.lang.String to class org.apache.kafka.common.serialization.ByteArraySerializer specified in
-        // key.serializer'
-        byte[] messageKeyBytes = null;
-
-        if (messageKey != null) {
-            String str = messageKey.toString();
-
-            if (str != null) {
-                messageKeyBytes = str.getBytes(StandardCharsets.UTF_8);
-            }
-        }
+        publishInternal(topic, payload, messageKey, messageTypeResolver, Map.of());
+    }
 
-        publishInternal(topic, payload, messageKeyBytes, messageTypeResolver);
+    @Override
+    public void publish(String topic, Object payload, @Nullable byte[] messageKey,
+            MessageTypeResolver messageTypeResolver) {
+        publishInternal(topic, payload, messageKey, messageTypeResolver, Map.of());
     }
 
     @Override
     public void publish(String topic, Object payload, @Nullable byte[] messageKey,
+            MessageTypeResolver messageTypeResolver, Map<String, Object> extraHeaders) {
+        publishInternal(topic, payload, messageKey, messageTypeResolver, extraHeaders);
+    }
+
+    @Override
+    public void publishToPartition(String topic, Object payload, @Nullable Object messageKey, int partition,
             MessageTypeResolver messageTypeResolver) {
-        publishInternal(topic, payload, messageKey, messageTypeResolver);
+        if (partition < 0) {
+            throw new IllegalArgumentException("Partition must not be negative: " + partition);
+        }
+
+        publishInternal(topic, payload, messageKey, messageTypeResolver, Map.of(KafkaHeaders.PARTITION, partition));
     }
 
+    /**
+     * Publishes the message.
+     *
+     * @param messageKey message key - {@code byte[]} or any object supported by {@link MessageKeyEncoders}; if
+     *                   {@code null}, payload's {@link MessageKeyAwareMessage#getRawMessageKey()} is used (if any)
+     */
     @ConstraintArguments
-    private void publishInternal(String topic, Object payload, @Nullable byte[] messageKey,
-            MessageTypeResolver messageTypeResolver) {
+    private void publishInternal(String topic, Object payload, @Nullable Object messageKey,
+            MessageTypeResolver messageTypeResolver, Map<String, Object> extraHeaders) {
         checkNotBlank(topic, _KafkaMessagePublisherServiceImplPublishInternalArgumentsMeta.TOPIC.name());
         checkNotNull(payload, _KafkaMessagePublisherServiceImplPublishInternalArgumentsMeta.PAYLOAD.name());
+        checkNotNull(extraHeaders,
+                _KafkaMessagePublisherServiceImplPublishInternalArgumentsMeta.EXTRAHEADERS.name());
 
+        // needed for JFR events only
+        String messageType = (MessagePublishEvent.isRecorded()
+                && (payload instanceof TypeAwareMessage<?> typeAwareMessage))
+                ? MessageBrokerValues.getBrokerValue(typeAwareMessage.getType())
+                : null;
+
+        var convertEvent = MessagePublishEvent.start(MessagePublishEvent.Stage.CONVERT, topic, messageType);
         // avoid unchecked map assignment (TypeReference instead of Map.class)
         Map<String, Object> payloadAsMap = objectMapper.convertValue(payload, new TypeReference<>() {
         });
+        convertEvent.finish(payloadAsMap.size());
 
         // WARNING: MessageHeaders are immutable, but MessageTypeResolver writes to headers/payload, therefore
         // both payloadAsMap and headersAsMap MUST be mutable
-        Map<String, Object> headersAsMap = HashMap.newHashMap(2);
-        if (messageKey != null) {
-            headersAsMap.put(KafkaHeaders.KEY, messageKey);
+        Map<String, Object> headersAsMap = HashMap.newHashMap(4 + extraHeaders.size());
+        headersAsMap.putAll(extraHeaders);
+        headersAsMap.putIfAbsent(PUBLISH_TIMESTAMP_HEADER, ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now()));
+
+        Object effectiveMessageKey = ((messageKey == null) && (payload instanceof MessageKeyAwareMessage keyAware))
+                ? keyAware.getRawMessageKey()
+                : messageKey;
+
+        if (effectiveMessageKey != null) {
+            // convert to bytes to avoid: 'org.apache.kafka.common.errors.SerializationException: Can't convert key of
+            // class class java.lang.String to class org.apache.kafka.common.serialization.ByteArraySerializer
+            // specified in key.serializer'
+            byte[] messageKeyBytes = messageKeyEncoders.encode(effectiveMessageKey);
+            headersAsMap.put(KafkaHeaders.KEY, messageKeyBytes);
+
+            // explicit partition takes precedence
+            if ((messagePartitioner != null) && !headersAsMap.containsKey(KafkaHeaders.PARTITION)) {
+                Integer partition = messagePartitioner.getPartition(topic, effectiveMessageKey, messageKeyBytes);
+
+                if (partition != null) {
+                    headersAsMap.put(KafkaHeaders.PARTITION, partition);
+                }
+            }
         }
 
+        var resolveTypeEvent = MessagePublishEvent.start(MessagePublishEvent.Stage.RESOLVE_TYPE, topic, messageType);
+
         // retrieve message type out of known classes
         switch (payload) {
             case TypeAwareMessage<?> typeAwareMessage:
@@ -97,6 +171,8 @@ public class KafkaMessagePublisherServiceImpl implements MessagePublisherService
                         + "]: " + payload.getClass());
         }
 
+        resolveTypeEvent.finish(payloadAsMap.size());
+
         Message<Map<String, Object>> message = new GenericMessage<>(payloadAsMap, headersAsMap);
 
         // don't log raw payload, rather mask it (convert to JSON first)
@@ -107,6 +183,18 @@ public class KafkaMessagePublisherServiceImpl implements MessagePublisherService
             log.warn("Publishing to topic '{}' (can't serialize message to masked JSON for logging)", topic);
         }
 
+        var sendEvent = MessagePublishEvent.start(MessagePublishEvent.Stage.SEND, topic, messageType);
+        send(topic, message);
+        sendEvent.finish(payloadAsMap.size());
+    }
+
+    /**
+     * Hands the message over to the binder.
+     *
+     * @param topic   topic
+     * @param message message ready for sending
+     */
+    protected void send(String topic, Message<Map<String, Object>> message) {
         streamBridge.send(topic, message);
     }
 
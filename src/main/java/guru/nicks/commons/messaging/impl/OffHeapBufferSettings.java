@@ -0,0 +1,75 @@
+package guru.nicks.commons.messaging.impl;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of {@link OffHeapBufferedMessagePublisherServiceImpl}.
+ */
+@Value
+@Builder(toBuilder = true)
+public class OffHeapBufferSettings {
+
+    /**
+     * Off-heap buffer size. A message larger than this is handled by {@link #getOverflowPolicy()} right away.
+     */
+    @Builder.Default
+    int capacityBytes = 64 * 1024 * 1024;
+
+    /**
+     * What to do when the buffer is full.
+     */
+    @Builder.Default
+    OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * For {@link OverflowPolicy#BLOCK} (and {@link OverflowPolicy#SPILL_TO_DISK} when {@link #getMaxSpillBytes()} is
+     * reached): max. time to wait for free space before failing.
+     */
+    @Builder.Default
+    Duration blockTimeout = Duration.ofSeconds(30);
+
+    /**
+     * For {@link OverflowPolicy#SPILL_TO_DISK}: where spill files are created.
+     */
+    @Builder.Default
+    Path spillDirectory = Path.of(System.getProperty("java.io.tmpdir"));
+
+    /**
+     * For {@link OverflowPolicy#SPILL_TO_DISK}: max. total size of messages waiting in the spill file. When it's
+     * reached, publishers wait as with {@link OverflowPolicy#BLOCK}.
+     */
+    @Builder.Default
+    long maxSpillBytes = 1024L * 1024 * 1024;
+
+    /**
+     * Max. time {@link OffHeapBufferedMessagePublisherServiceImpl#close()} waits for buffered messages to be sent.
+     */
+    @Builder.Default
+    Duration drainTimeout = Duration.ofSeconds(30);
+
+    public enum OverflowPolicy {
+
+        /**
+         * Publishing thread waits for free space (up to {@link #getBlockTimeout()}), then fails with
+         * {@link IllegalStateException}.
+         */
+        BLOCK,
+
+        /**
+         * Message is dropped (and logged), publishing thread doesn't wait.
+         */
+        DROP,
+
+        /**
+         * Message is appended to a file, as well as all the following messages until the file has been sent - to
+         * preserve their order. The file is limited by {@link #getMaxSpillBytes()}.
+         */
+        SPILL_TO_DISK
+
+    }
+
+}
@@ -0,0 +1,717 @@
+package guru.nicks.commons.messaging.impl;
+
+import guru.nicks.commons.messaging.key.MessageKeyEncoders;
+import guru.nicks.commons.messaging.key.MessagePartitioner;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.cloud.stream.function.StreamOperations;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Publisher that returns as soon as the message is serialized into an off-heap (direct) ring buffer. A dedicated sender
+ * thread drains the buffer into {@link StreamBridge}, preserving the publishing order. Therefore, bursts of publishing
+ * don't build up on-heap backlogs; when the buffer is full, {@link OffHeapBufferSettings#getOverflowPolicy()} applies.
+ * <p>
+ * Payloads are sent as JSON bytes (with {@link MessageHeaders#CONTENT_TYPE} set to {@code application/json}), which is
+ * what the binder would produce out of the original payload anyway. Header values other than strings, byte arrays,
+ * integers, longs, and booleans are converted to strings.
+ * <p>
+ * WARNING: publishing is asynchronous - if the binder fails to send a message, it's logged and counted (see
+ * {@link #getFailedMessageCount()}), but the caller isn't notified. Call {@link #close()} on shutdown (Spring does it
+ * for beans) to send the buffered messages.
+ * <p>
+ * Not created by auto-configuration: declare a
+ * {@link guru.nicks.commons.messaging.service.MessagePublisherService} bean of this class to use it.
+ */
+@Slf4j
+public class OffHeapBufferedMessagePublisherServiceImpl extends KafkaMessagePublisherServiceImpl
+        implements AutoCloseable {
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_BYTES = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+
+    @Getter
+    private final OffHeapBufferSettings settings;
+
+    private final ByteBuffer ring;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Total number of bytes ever written to {@link #ring}, guarded by {@link #lock}. Modulo capacity, it's the index to
+     * write at.
+     */
+    private long writePosition;
+
+    /**
+     * Total number of bytes ever read from {@link #ring}, guarded by {@link #lock}.
+     */
+    private long readPosition;
+
+    /**
+     * Serializes spill file creation, appending, and closing. File I/O never runs under {@link #lock}, so it doesn't
+     * hold up publishers writing to {@link #ring} and the sender thread. If both locks are needed, this one is taken
+     * first.
+     */
+    private final ReentrantLock spillLock = new ReentrantLock();
+
+    /**
+     * Not {@code null} while spilling. Replaced under {@link #spillLock}; the sender thread reads records from it
+     * without that lock because appended records never change.
+     */
+    @Nullable
+    private volatile SpillFile spillFile;
+
+    /**
+     * Number of records the spill file has been reserved for and which haven't been sent yet (including those still
+     * being appended), guarded by {@link #lock}. While it's positive, all messages go to the spill file - to preserve
+     * their order.
+     */
+    private long spillRecords;
+
+    /**
+     * Number of records appended to the spill file and not read yet, guarded by {@link #lock}.
+     */
+    private long readableSpillRecords;
+
+    /**
+     * Total size of {@link #spillRecords}, guarded by {@link #lock}. Limited by
+     * {@link OffHeapBufferSettings#getMaxSpillBytes()}.
+     */
+    private long spillBytes;
+
+    /**
+     * Guarded by {@link #lock}.
+     */
+    private boolean closed;
+
+    private final AtomicLong droppedMessageCount = new AtomicLong();
+    private final AtomicLong failedMessageCount = new AtomicLong();
+
+    private final Thread senderThread;
+
+    public OffHeapBufferedMessagePublisherServiceImpl(StreamOperations streamBridge, ObjectMapper objectMapper,
+            MessageKeyEncoders messageKeyEncoders, @Nullable MessagePartitioner messagePartitioner,
+            OffHeapBufferSettings settings) {
+        super(streamBridge, objectMapper, messageKeyEncoders, messagePartitioner);
+
+        if (settings.getCapacityBytes() <= Integer.BYTES) {
+            throw new IllegalArgumentException("Buffer capacity is too small: " + settings.getCapacityBytes());
+        }
+
+        this.settings = settings;
+        capacity = settings.getCapacityBytes();
+        ring = ByteBuffer.allocateDirect(capacity);
+
+        senderThread = new Thread(this::sendBufferedMessages, "off-heap-message-publisher");
+        senderThread.setDaemon(true);
+        senderThread.start();
+    }
+
+    /**
+     * @return number of bytes in the off-heap buffer (not including spill file)
+     */
+    public long getBufferedBytes() {
+        lock.lock();
+        try {
+            return writePosition - readPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of messages dropped because of {@link OffHeapBufferSettings.OverflowPolicy#DROP}
+     */
+    public long getDroppedMessageCount() {
+        return droppedMessageCount.get();
+    }
+
+    /**
+     * @return number of buffered messages the binder has failed to send
+     */
+    public long getFailedMessageCount() {
+        return failedMessageCount.get();
+    }
+
+    /**
+     * Stops accepting messages and waits (up to {@link OffHeapBufferSettings#getDrainTimeout()}) for the buffered ones
+     * to be sent.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        senderThread.join(settings.getDrainTimeout());
+
+        if (senderThread.isAlive()) {
+            log.warn("Buffered messages haven't been sent in {}, discarding {} bytes", settings.getDrainTimeout(),
+                    getBufferedBytes());
+            senderThread.interrupt();
+        }
+
+        spillLock.lock();
+        try {
+            if (spillFile != null) {
+                spillFile.close();
+                spillFile = null;
+            }
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * Serializes the message into the off-heap buffer (or handles overflow).
+     *
+     * @throws IllegalStateException publisher is closed, or the buffer (or the spill file) is full for longer than
+     *                               {@link OffHeapBufferSettings#getBlockTimeout()}
+     */
+    @Override
+    protected void send(String topic, Message<Map<String, Object>> message) {
+        byte[] record = encode(topic, message);
+        int recordSize = Integer.BYTES + record.length;
+
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Publisher is closed");
+            }
+
+            // once spilling has started, all messages go to the spill file until it's sent - to preserve their order
+            if ((spillRecords == 0) && hasSpace(recordSize)) {
+                writeToRing(record);
+                return;
+            }
+
+            if (!handleOverflow(topic, record, recordSize)) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        appendToSpillFile(record);
+    }
+
+    /**
+     * Must be called under {@link #lock}.
+     *
+     * @return {@code true} if space has been reserved in the spill file, and the record must be appended there
+     */
+    private boolean handleOverflow(String topic, byte[] record, int recordSize) {
+        switch (settings.getOverflowPolicy()) {
+            case BLOCK -> {
+                if (recordSize > capacity) {
+                    throw new IllegalStateException("Message of " + recordSize + " bytes exceeds buffer capacity");
+                }
+
+                long remainingNanos = settings.getBlockTimeout().toNanos();
+                while (!hasSpace(recordSize)) {
+                    remainingNanos = awaitNotFull(remainingNanos, "Off-heap buffer");
+                }
+
+                writeToRing(record);
+                return false;
+            }
+
+            case DROP -> {
+                long dropped = droppedMessageCount.incrementAndGet();
+                log.warn("Off-heap buffer is full, dropped message to topic '{}' ({} dropped so far)", topic,
+                        dropped);
+                return false;
+            }
+
+            case SPILL_TO_DISK -> {
+                if (recordSize > settings.getMaxSpillBytes()) {
+                    throw new IllegalStateException("Message of " + recordSize + " bytes exceeds max. spill size");
+                }
+
+                // when the spill file is full too, wait as in BLOCK mode
+                long remainingNanos = settings.getBlockTimeout().toNanos();
+                while (spillBytes + recordSize > settings.getMaxSpillBytes()) {
+                    remainingNanos = awaitNotFull(remainingNanos, "Off-heap buffer spill file");
+
+                    if ((spillRecords == 0) && hasSpace(recordSize)) {
+                        writeToRing(record);
+                        return false;
+                    }
+                }
+
+                spillRecords++;
+                spillBytes += recordSize;
+                return true;
+            }
+
+            default -> throw new IllegalStateException("Unknown overflow policy: " + settings.getOverflowPolicy());
+        }
+    }
+
+    /**
+     * Must be called under {@link #lock}.
+     *
+     * @return remaining wait time
+     * @throws IllegalStateException wait time is over, or the thread has been interrupted
+     */
+    private long awaitNotFull(long remainingNanos, String bufferName) {
+        if (remainingNanos <= 0) {
+            throw new IllegalStateException(bufferName + " is full for longer than " + settings.getBlockTimeout());
+        }
+
+        try {
+            return notFull.awaitNanos(remainingNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for off-heap buffer space", e);
+        }
+    }
+
+    /**
+     * Must be called NOT under {@link #lock}, with space reserved in the spill file.
+     */
+    private void appendToSpillFile(byte[] record) {
+        spillLock.lock();
+        try {
+            try {
+                if (spillFile == null) {
+                    spillFile = SpillFile.create(settings.getSpillDirectory());
+                    log.warn("Off-heap buffer is full, spilling messages to {}", spillFile.path);
+                }
+
+                spillFile.append(record);
+            } catch (UncheckedIOException e) {
+                // the sender thread would wait for this record forever
+                lock.lock();
+                try {
+                    spillRecords--;
+                    spillBytes -= Integer.BYTES + record.length;
+                    notFull.signalAll();
+                    notEmpty.signal();
+                } finally {
+                    lock.unlock();
+                }
+
+                throw e;
+            }
+
+            lock.lock();
+            try {
+                readableSpillRecords++;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void sendBufferedMessages() {
+        while (true) {
+            byte[] record;
+
+            lock.lock();
+            try {
+                while ((readPosition == writePosition) && (readableSpillRecords == 0)) {
+                    // records being appended to the spill file are still to be sent
+                    if (closed && (spillRecords == 0)) {
+                        return;
+                    }
+
+                    notEmpty.await();
+                }
+
+                // messages in the spill file are newer than the ones in the ring
+                if (readPosition != writePosition) {
+                    record = readFromRing();
+                    notFull.signalAll();
+                } else {
+                    record = null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            if (record == null) {
+                record = readFromSpillFile();
+            }
+
+            if (record != null) {
+                sendRecord(record);
+            }
+        }
+    }
+
+    /**
+     * Must be called by the sender thread NOT under {@link #lock}, with readable records in {@link #spillFile}.
+     *
+     * @return record, {@code null} if the spill file is unreadable (then it's discarded)
+     */
+    @Nullable
+    private byte[] readFromSpillFile() {
+        SpillFile file = spillFile;
+        long recordPosition = file.readPosition;
+
+        byte[] record;
+        try {
+            record = file.read();
+        } catch (UncheckedIOException e) {
+            log.error("Discarding unreadable spill file {}: {}", file.path, e.getMessage(), e);
+            discardSpillFile(file, recordPosition);
+            return null;
+        }
+
+        boolean drained;
+        lock.lock();
+        try {
+            readableSpillRecords--;
+            spillRecords--;
+            spillBytes -= Integer.BYTES + record.length;
+            drained = (spillRecords == 0);
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (drained) {
+            closeSpillFileIfDrained();
+        }
+
+        return record;
+    }
+
+    /**
+     * Drops the records appended to the spill file so far (the ones being appended go to a new file).
+     */
+    private void discardSpillFile(SpillFile file, long unreadPosition) {
+        spillLock.lock();
+        try {
+            // appending is done under spillLock, so these records are the readable ones
+            long discardedBytes = file.writePosition - unreadPosition;
+
+            lock.lock();
+            try {
+                spillRecords -= readableSpillRecords;
+                spillBytes -= discardedBytes;
+                readableSpillRecords = 0;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            file.close();
+            spillFile = null;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void closeSpillFileIfDrained() {
+        spillLock.lock();
+        try {
+            lock.lock();
+            try {
+                // another record may have been reserved meanwhile - then it's appended to the same file
+                if (spillRecords > 0) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (spillFile != null) {
+                spillFile.close();
+                spillFile = null;
+            }
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void sendRecord(byte[] record) {
+        String topic = null;
+
+        try (var in = new DataInputStream(new ByteArrayInputStream(record))) {
+            topic = readString(in);
+
+            int headerCount = in.readInt();
+            Map<String, Object> headers = HashMap.newHashMap(headerCount + 1);
+            for (int i = 0; i < headerCount; i++) {
+                String name = readString(in);
+                headers.put(name, readHeaderValue(in));
+            }
+
+            byte[] payload = in.readNBytes(in.readInt());
+
+            getStreamBridge().send(topic, MessageBuilder.withPayload(payload)
+                    .copyHeaders(headers)
+                    .setHeaderIfAbsent(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON_VALUE)
+                    .build());
+        } catch (IOException | RuntimeException e) {
+            failedMessageCount.incrementAndGet();
+            log.error("Failed to send buffered message to topic '{}': {}", topic, e.getMessage(), e);
+        }
+    }
+
+    private byte[] encode(String topic, Message<Map<String, Object>> message) {
+        var bytes = new ByteArrayOutputStream();
+
+        try (var out = new DataOutputStream(bytes)) {
+            writeString(out, topic);
+
+            MessageHeaders headers = message.getHeaders();
+            // ID and timestamp are assigned to the message actually sent
+            int headerCount = headers.size()
+                    - (headers.containsKey(MessageHeaders.ID) ? 1 : 0)
+                    - (headers.containsKey(MessageHeaders.TIMESTAMP) ? 1 : 0);
+            out.writeInt(headerCount);
+
+            for (Map.Entry<String, Object> header : headers.entrySet()) {
+                if (!MessageHeaders.ID.equals(header.getKey()) && !MessageHeaders.TIMESTAMP.equals(header.getKey())) {
+                    writeString(out, header.getKey());
+                    writeHeaderValue(out, header.getValue());
+                }
+            }
+
+            byte[] payload = getObjectMapper().writeValueAsBytes(message.getPayload());
+            out.writeInt(payload.length);
+            out.write(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize payload: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeHeaderValue(DataOutputStream out, Object value) throws IOException {
+        switch (value) {
+            case byte[] bytes -> {
+                out.writeByte(TYPE_BYTES);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            case Integer i -> {
+                out.writeByte(TYPE_INT);
+                out.writeInt(i);
+            }
+            case Long l -> {
+                out.writeByte(TYPE_LONG);
+                out.writeLong(l);
+            }
+            case Boolean b -> {
+                out.writeByte(TYPE_BOOLEAN);
+                out.writeBoolean(b);
+            }
+            default -> {
+                out.writeByte(TYPE_STRING);
+                writeString(out, value.toString());
+            }
+        }
+    }
+
+    private static Object readHeaderValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+
+        return switch (type) {
+            case TYPE_BYTES -> in.readNBytes(in.readInt());
+            case TYPE_INT -> in.readInt();
+            case TYPE_LONG -> in.readLong();
+            case TYPE_BOOLEAN -> in.readBoolean();
+            case TYPE_STRING -> readString(in);
+            default -> throw new IOException("Unknown header value type: " + type);
+        };
+    }
+
+    /**
+     * Unlike {@link DataOutputStream#writeUTF(String)}, isn't limited to 64 KB.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Must be called under {@link #lock}.
+     */
+    private boolean hasSpace(int recordSize) {
+        return (capacity - (writePosition - readPosition)) >= recordSize;
+    }
+
+    /**
+     * Must be called under {@link #lock}, with enough space in the buffer.
+     */
+    private void writeToRing(byte[] record) {
+        int length = record.length;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            ring.put(ringIndex(writePosition + i), (byte) (length >>> (24 - 8 * i)));
+        }
+
+        copyToRing(writePosition + Integer.BYTES, record);
+        writePosition += Integer.BYTES + length;
+        notEmpty.signal();
+    }
+
+    /**
+     * Must be called under {@link #lock}, with at least one record in the buffer.
+     */
+    private byte[] readFromRing() {
+        int length = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            length = (length << 8) | (ring.get(ringIndex(readPosition + i)) & 0xFF);
+        }
+
+        var record = new byte[length];
+        int index = ringIndex(readPosition + Integer.BYTES);
+        int firstPart = Math.min(length, capacity - index);
+        ring.get(index, record, 0, firstPart);
+        ring.get(0, record, firstPart, length - firstPart);
+
+        readPosition += Integer.BYTES + length;
+        return record;
+    }
+
+    private void copyToRing(long position, byte[] source) {
+        int index = ringIndex(position);
+        int firstPart = Math.min(source.length, capacity - index);
+        ring.put(index, source, 0, firstPart);
+        ring.put(0, source, firstPart, source.length - firstPart);
+    }
+
+    private int ringIndex(long position) {
+        return (int) (position % capacity);
+    }
+
+    /**
+     * Append-only file of length-prefixed records, deleted when closed.
+     */
+    private static class SpillFile {
+
+        private final Path path;
+        private final FileChannel channel;
+
+        /**
+         * Guarded by {@link #spillLock}.
+         */
+        private long writePosition;
+
+        /**
+         * Only accessed by the sender thread.
+         */
+        private long readPosition;
+
+        private SpillFile(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        private static SpillFile create(Path directory) {
+            try {
+                Path path = Files.createTempFile(directory, "message-publisher-", ".spill");
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+                return new SpillFile(path, channel);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create spill file", e);
+            }
+        }
+
+        private void append(byte[] record) {
+            var buffer = ByteBuffer.allocate(Integer.BYTES + record.length)
+                    .putInt(record.length)
+                    .put(record)
+                    .flip();
+
+            try {
+                while (buffer.hasRemaining()) {
+                    writePosition += channel.write(buffer, writePosition);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write spill file", e);
+            }
+        }
+
+        private byte[] read() {
+            try {
+                var lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+                readFully(lengthBuffer);
+
+                var record = ByteBuffer.allocate(lengthBuffer.flip().getInt());
+                readFully(record);
+                return record.array();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read spill file", e);
+            }
+        }
+
+        private void readFully(ByteBuffer target) throws IOException {
+            while (target.hasRemaining()) {
+                int read = channel.read(target, readPosition);
+
+                if (read < 0) {
+                    throw new IOException("Unexpected end of spill file");
+                }
+
+                readPosition += read;
+            }
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to delete spill file {}: {}", path, e.getMessage());
+            }
+        }
+
+    }
+
+}
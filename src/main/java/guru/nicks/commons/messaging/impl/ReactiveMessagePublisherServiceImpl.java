@@ -0,0 +1,69 @@
+package guru.nicks.commons.messaging.impl;
+
+import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
+import guru.nicks.commons.messaging.service.MessagePublisherService;
+import guru.nicks.commons.messaging.service.ReactiveMessagePublisherService;
+
+import jakarta.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+
+/**
+ * Delegates to {@link MessagePublisherService} on a {@link Scheduler} meant for blocking tasks, so that payload
+ * conversion and handing messages over to the binder (which may wait for topic metadata or producer buffer space) never
+ * park event loop threads.
+ */
+@RequiredArgsConstructor
+public class ReactiveMessagePublisherServiceImpl implements ReactiveMessagePublisherService {
+
+    private final MessagePublisherService messagePublisherService;
+    private final Scheduler scheduler;
+
+    /**
+     * Uses {@link Schedulers#boundedElastic()}.
+     *
+     * @param messagePublisherService blocking publisher to delegate to
+     */
+    public ReactiveMessagePublisherServiceImpl(MessagePublisherService messagePublisherService) {
+        this(messagePublisherService, Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Void> publish(String topic, Object payload, @Nullable Object messageKey,
+            MessageTypeResolver messageTypeResolver) {
+        return Mono.<Void>fromRunnable(() ->
+                        messagePublisherService.publish(topic, payload, messageKey, messageTypeResolver))
+                .subscribeOn(scheduler);
+    }
+
+    @Override
+    public Mono<Void> publish(String topic, Object payload, @Nullable byte[] messageKey,
+            MessageTypeResolver messageTypeResolver) {
+        return Mono.<Void>fromRunnable(() ->
+                        messagePublisherService.publish(topic, payload, messageKey, messageTypeResolver))
+                .subscribeOn(scheduler);
+    }
+
+    @Override
+    public Mono<Void> publish(String topic, Object payload, @Nullable byte[] messageKey,
+            MessageTypeResolver messageTypeResolver, Map<String, Object> extraHeaders) {
+        return Mono.<Void>fromRunnable(() ->
+                        messagePublisherService.publish(topic, payload, messageKey, messageTypeResolver,
+                                extraHeaders))
+                .subscribeOn(scheduler);
+    }
+
+    @Override
+    public Mono<Void> publishToPartition(String topic, Object payload, @Nullable Object messageKey, int partition,
+            MessageTypeResolver messageTypeResolver) {
+        return Mono.<Void>fromRunnable(() ->
+                        messagePublisherService.publishToPartition(topic, payload, messageKey, partition,
+                                messageTypeResolver))
+                .subscribeOn(scheduler);
+    }
+
+}
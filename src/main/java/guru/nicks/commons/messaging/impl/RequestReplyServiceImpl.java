@@ -0,0 +1,216 @@
+package guru.nicks.commons.messaging.impl;
+
+import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
+import guru.nicks.commons.messaging.service.MessagePublisherService;
+import guru.nicks.commons.messaging.service.RequestReplyService;
+
+import am.ik.yavi.meta.ConstraintArguments;
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotBlank;
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
+
+/**
+ * Keeps pending requests in a {@link ConcurrentHashMap} keyed by correlation ID, and their timeouts in a
+ * {@link HashedTimerWheel}. Whoever removes a request from the map first - the reply, the timeout, or the caller
+ * cancelling the future - completes it, so there's no locking.
+ * <p>
+ * All replies to this app instance must reach {@link #getReplyTopic()} consumed by THIS instance (for example, a topic
+ * per instance, or a consumer group per instance): replies for unknown correlation IDs are dropped.
+ */
+@Slf4j
+public class RequestReplyServiceImpl implements RequestReplyService, AutoCloseable {
+
+    private final MessagePublisherService messagePublisherService;
+
+    @Getter
+    private final String replyTopic;
+
+    private final HashedTimerWheel timerWheel;
+
+    private final Map<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Makes correlation IDs unique across app instances (and restarts) without generating a UUID per request.
+     */
+    private final String correlationIdPrefix = UUID.randomUUID() + ":";
+    private final AtomicLong correlationIdSequence = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param messagePublisherService publisher for requests and replies
+     * @param replyTopic              topic this app instance receives replies from
+     * @param timerWheel              timer for request timeouts; closed by {@link #close()}
+     */
+    @ConstraintArguments
+    public RequestReplyServiceImpl(MessagePublisherService messagePublisherService, String replyTopic,
+            HashedTimerWheel timerWheel) {
+        this.messagePublisherService = checkNotNull(messagePublisherService,
+                _RequestReplyServiceImplArgumentsMeta.MESSAGEPUBLISHERSERVICE.name());
+        this.replyTopic = checkNotBlank(replyTopic, _RequestReplyServiceImplArgumentsMeta.REPLYTOPIC.name());
+        this.timerWheel = checkNotNull(timerWheel, _RequestReplyServiceImplArgumentsMeta.TIMERWHEEL.name());
+    }
+
+    @ConstraintArguments
+    @Override
+    public CompletableFuture<Message<Map<String, Object>>> request(String topic, Object payload,
+            @Nullable byte[] messageKey, MessageTypeResolver messageTypeResolver, Duration timeout) {
+        checkNotBlank(topic, _RequestReplyServiceImplRequestArgumentsMeta.TOPIC.name());
+        checkNotNull(timeout, _RequestReplyServiceImplRequestArgumentsMeta.TIMEOUT.name());
+
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException(_RequestReplyServiceImplRequestArgumentsMeta.TIMEOUT.name()
+                    + " must be positive");
+        }
+
+        String correlationId = correlationIdPrefix + Long.toString(correlationIdSequence.incrementAndGet(),
+                Character.MAX_RADIX);
+        var request = new PendingRequest(new CompletableFuture<>());
+
+        // register before publishing - the reply may arrive before publish() returns
+        pendingRequests.put(correlationId, request);
+
+        try {
+            request.timeout = timerWheel.schedule(() -> expire(correlationId, request, timeout), timeout);
+        } catch (IllegalStateException e) {
+            pendingRequests.remove(correlationId, request);
+            throw e;
+        }
+
+        // the caller gave up waiting
+        request.future.whenComplete((reply, e) -> {
+            if (e instanceof CancellationException) {
+                pendingRequests.remove(correlationId, request);
+                request.timeout.cancel();
+            }
+        });
+
+        try {
+            messagePublisherService.publish(topic, payload, messageKey, messageTypeResolver, Map.of(
+                    CORRELATION_ID_HEADER, correlationId,
+                    REPLY_TOPIC_HEADER, replyTopic));
+        } catch (RuntimeException e) {
+            if (pendingRequests.remove(correlationId, request)) {
+                request.timeout.cancel();
+                request.future.completeExceptionally(e);
+            }
+        }
+
+        return request.future;
+    }
+
+    @ConstraintArguments
+    @Override
+    public void reply(MessageHeaders requestHeaders, Object payload, @Nullable byte[] messageKey,
+            MessageTypeResolver messageTypeResolver) {
+        checkNotNull(requestHeaders, _RequestReplyServiceImplReplyArgumentsMeta.REQUESTHEADERS.name());
+
+        String correlationId = readHeader(requestHeaders, CORRELATION_ID_HEADER);
+        String topic = readHeader(requestHeaders, REPLY_TOPIC_HEADER);
+
+        if ((correlationId == null) || (topic == null)) {
+            throw new IllegalArgumentException("Request lacks '" + CORRELATION_ID_HEADER + "' or '"
+                    + REPLY_TOPIC_HEADER + "' header");
+        }
+
+        messagePublisherService.publish(topic, payload, messageKey, messageTypeResolver,
+                Map.of(CORRELATION_ID_HEADER, correlationId));
+    }
+
+    @ConstraintArguments
+    @Override
+    public boolean completeRequest(Message<Map<String, Object>> reply) {
+        checkNotNull(reply, _RequestReplyServiceImplCompleteRequestArgumentsMeta.REPLY.name());
+
+        String correlationId = readHeader(reply.getHeaders(), CORRELATION_ID_HEADER);
+        PendingRequest request = (correlationId == null)
+                ? null
+                : pendingRequests.remove(correlationId);
+
+        if (request == null) {
+            log.debug("Dropping reply with unknown correlation ID '{}'", correlationId);
+            return false;
+        }
+
+        request.timeout.cancel();
+        request.future.complete(reply);
+        return true;
+    }
+
+    @Override
+    public int getPendingRequestCount() {
+        return pendingRequests.size();
+    }
+
+    /**
+     * Stops the timer and fails all pending requests with {@link CancellationException}.
+     */
+    @Override
+    public void close() {
+        timerWheel.close();
+
+        pendingRequests.keySet().forEach(correlationId -> {
+            PendingRequest request = pendingRequests.remove(correlationId);
+
+            if (request != null) {
+                request.future.completeExceptionally(new CancellationException("Request-reply service closed"));
+            }
+        });
+    }
+
+    private void expire(String correlationId, PendingRequest request, Duration timeout) {
+        if (pendingRequests.remove(correlationId, request)) {
+            request.future.completeExceptionally(new TimeoutException("No reply within " + timeout
+                    + " for request '" + correlationId + "'"));
+        }
+    }
+
+    /**
+     * Depending on the header mapper, header values may arrive as strings or raw bytes.
+     */
+    @Nullable
+    private static String readHeader(MessageHeaders headers, String name) {
+        String value = switch (headers.get(name)) {
+            case byte[] bytes -> new String(bytes, StandardCharsets.UTF_8);
+            case null -> null;
+            case Object obj -> obj.toString();
+        };
+
+        return StringUtils.isNotBlank(value)
+                ? value
+                : null;
+    }
+
+    private static final class PendingRequest {
+
+        private final CompletableFuture<Message<Map<String, Object>>> future;
+
+        /**
+         * Set right after the request has been registered, before it's published (which is the only way to complete
+         * it other than by the timeout itself).
+         */
+        private volatile HashedTimerWheel.Timeout timeout;
+
+        private PendingRequest(CompletableFuture<Message<Map<String, Object>>> future) {
+            this.future = future;
+        }
+
+    }
+
+}
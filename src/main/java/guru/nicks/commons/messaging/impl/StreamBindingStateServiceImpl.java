@@ -0,0 +1,146 @@
+package guru.nicks.commons.messaging.impl;
+
+import guru.nicks.commons.messaging.service.BindingStateService;
+
+import am.ik.yavi.meta.ConstraintArguments;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.stream.binding.BindingsLifecycleController;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotBlank;
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
+
+/**
+ * Changes binding states with {@link BindingsLifecycleController} (the same one that backs the {@code bindings}
+ * actuator endpoint).
+ */
+@Slf4j
+public class StreamBindingStateServiceImpl implements BindingStateService, AutoCloseable {
+
+    /**
+     * DI. Provider because the controller is created by Spring Cloud Stream auto-configuration which may come later.
+     */
+    private final ObjectProvider<BindingsLifecycleController> bindingsLifecycleControllerProvider;
+
+    /**
+     * Binding name to the number of outstanding pauses. Also makes pausing/resuming cheap (no lookups in Spring Cloud
+     * Stream) when called for each message.
+     */
+    private final Map<String, Integer> pauseCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Bindings whose state has been changed to {@link BindingsLifecycleController.State#PAUSED}. Guarded by itself.
+     */
+    private final Set<String> pausedBindings = new HashSet<>();
+
+    /**
+     * Runs delayed {@link #resume(String)} for {@link #pauseFor(String, Duration)}.
+     */
+    private final ScheduledExecutorService resumeScheduler;
+
+    public StreamBindingStateServiceImpl(
+            ObjectProvider<BindingsLifecycleController> bindingsLifecycleControllerProvider) {
+        this.bindingsLifecycleControllerProvider = bindingsLifecycleControllerProvider;
+
+        resumeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "binding-resume-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @ConstraintArguments
+    @Override
+    public void pause(String bindingName) {
+        checkNotBlank(bindingName, _StreamBindingStateServiceImplPauseArgumentsMeta.BINDINGNAME.name());
+
+        int count = pauseCounts.merge(bindingName, 1, Integer::sum);
+
+        if (count == 1) {
+            applyState(bindingName);
+        }
+    }
+
+    @ConstraintArguments
+    @Override
+    public void resume(String bindingName) {
+        checkNotBlank(bindingName, _StreamBindingStateServiceImplResumeArgumentsMeta.BINDINGNAME.name());
+
+        // returning null removes the mapping
+        Integer count = pauseCounts.computeIfPresent(bindingName, (key, oldCount) -> (oldCount > 1)
+                ? oldCount - 1
+                : null);
+
+        if (count == null) {
+            applyState(bindingName);
+        }
+    }
+
+    @ConstraintArguments
+    @Override
+    public void pauseFor(String bindingName, Duration duration) {
+        checkNotNull(duration, _StreamBindingStateServiceImplPauseForArgumentsMeta.DURATION.name());
+
+        pause(bindingName);
+        resumeScheduler.schedule(() -> resume(bindingName), duration.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean isPaused(String bindingName) {
+        return pauseCounts.containsKey(bindingName);
+    }
+
+    /**
+     * Called by Spring on shutdown (inferred destroy method).
+     */
+    @Override
+    public void close() {
+        resumeScheduler.shutdownNow();
+    }
+
+    /**
+     * Brings the binding state in line with {@link #pauseCounts}. Called outside of {@link ConcurrentHashMap} updates
+     * (they mustn't call foreign code), therefore concurrent pauses and resumes may call this in any order - but the
+     * last call always applies the latest count.
+     */
+    private void applyState(String bindingName) {
+        synchronized (pausedBindings) {
+            boolean shouldBePaused = pauseCounts.containsKey(bindingName);
+
+            if (shouldBePaused == pausedBindings.contains(bindingName)) {
+                return;
+            }
+
+            if (shouldBePaused) {
+                pausedBindings.add(bindingName);
+                changeState(bindingName, BindingsLifecycleController.State.PAUSED);
+            } else {
+                pausedBindings.remove(bindingName);
+                changeState(bindingName, BindingsLifecycleController.State.RESUMED);
+            }
+        }
+    }
+
+    private void changeState(String bindingName, BindingsLifecycleController.State state) {
+        BindingsLifecycleController controller = bindingsLifecycleControllerProvider.getIfAvailable();
+
+        if (controller == null) {
+            log.warn("Can't change binding '{}' state to {}: no {} bean", bindingName, state,
+                    BindingsLifecycleController.class.getSimpleName());
+            return;
+        }
+
+        log.info("Changing binding '{}' state to {}", bindingName, state);
+        controller.changeState(bindingName, state);
+    }
+
+}
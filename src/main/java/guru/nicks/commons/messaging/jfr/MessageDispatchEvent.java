@@ -0,0 +1,106 @@
+package guru.nicks.commons.messaging.jfr;
+
+import jakarta.annotation.Nullable;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering a stage of dispatching a received message to its consumer. Costs next to nothing unless a
+ * recording enables it.
+ */
+@Name(MessageDispatchEvent.NAME)
+@Label("Message Dispatch Stage")
+@Category({"Messaging"})
+@Description("Stage of dispatching a received message to its consumer")
+@StackTrace(false)
+public class MessageDispatchEvent extends Event {
+
+    public static final String NAME = "guru.nicks.messaging.MessageDispatch";
+
+    @Label("Stage")
+    private String stage;
+
+    @Label("Listener ID")
+    private String listenerId;
+
+    @Label("Topic")
+    private String topic;
+
+    @Label("Message Type")
+    private String messageType;
+
+    @Label("Consumer Class")
+    private Class<?> consumerClass;
+
+    @Label("Top-Level Payload Fields")
+    @Description("Number of top-level payload fields (not the serialized size - the binder serializes payloads later)")
+    private int topLevelFieldCount;
+
+    /**
+     * Starts measuring the stage. Fields are only populated if the event is enabled.
+     *
+     * @param stage      stage
+     * @param listenerId listener ID
+     * @param topic      topic, if known
+     * @return event to {@link #finish(String, Class, int)}
+     */
+    public static MessageDispatchEvent start(Stage stage, String listenerId, @Nullable Object topic) {
+        var event = new MessageDispatchEvent();
+
+        if (event.isEnabled()) {
+            event.stage = stage.name();
+            event.listenerId = listenerId;
+            event.topic = (topic == null)
+                    ? null
+                    : topic.toString();
+            event.begin();
+        }
+
+        return event;
+    }
+
+    /**
+     * Commits the event if it's enabled and its duration exceeds the recording threshold.
+     *
+     * @param messageType        message type, if known
+     * @param consumerClass      consumer class, if known
+     * @param topLevelFieldCount number of top-level payload fields
+     */
+    public void finish(@Nullable String messageType, @Nullable Class<?> consumerClass, int topLevelFieldCount) {
+        if (shouldCommit()) {
+            this.messageType = messageType;
+            this.consumerClass = consumerClass;
+            this.topLevelFieldCount = topLevelFieldCount;
+            commit();
+        }
+    }
+
+    public enum Stage {
+
+        /**
+         * Finding consumers for the message.
+         */
+        FIND_CONSUMER,
+
+        /**
+         * Converting raw payload to consumer's payload class.
+         */
+        DESERIALIZE,
+
+        /**
+         * Validating the payload.
+         */
+        VALIDATE,
+
+        /**
+         * Calling the consumer (including retries).
+         */
+        CONSUME
+
+    }
+
+}
@@ -0,0 +1,97 @@
+package guru.nicks.commons.messaging.jfr;
+
+import jakarta.annotation.Nullable;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering a stage of message publishing. Costs next to nothing unless a recording enables it.
+ */
+@Name(MessagePublishEvent.NAME)
+@Label("Message Publish Stage")
+@Category({"Messaging"})
+@Description("Stage of publishing a message to a topic")
+@StackTrace(false)
+public class MessagePublishEvent extends Event {
+
+    public static final String NAME = "guru.nicks.messaging.MessagePublish";
+
+    @Label("Stage")
+    private String stage;
+
+    @Label("Topic")
+    private String topic;
+
+    @Label("Message Type")
+    private String messageType;
+
+    @Label("Top-Level Payload Fields")
+    @Description("Number of top-level payload fields (not the serialized size - the binder serializes payloads later)")
+    private int topLevelFieldCount;
+
+    /**
+     * Lets callers skip computing event fields (such as message type) unless a recording enables this event.
+     *
+     * @return whether a recording enables this event
+     */
+    public static boolean isRecorded() {
+        return new MessagePublishEvent().isEnabled();
+    }
+
+    /**
+     * Starts measuring the stage. Fields are only populated if the event is enabled.
+     *
+     * @param stage       stage
+     * @param topic       topic
+     * @param messageType message type, if known
+     * @return event to {@link #finish(int)}
+     */
+    public static MessagePublishEvent start(Stage stage, String topic, @Nullable String messageType) {
+        var event = new MessagePublishEvent();
+
+        if (event.isEnabled()) {
+            event.stage = stage.name();
+            event.topic = topic;
+            event.messageType = messageType;
+            event.begin();
+        }
+
+        return event;
+    }
+
+    /**
+     * Commits the event if it's enabled and its duration exceeds the recording threshold.
+     *
+     * @param topLevelFieldCount number of top-level payload fields, -1 if unknown
+     */
+    public void finish(int topLevelFieldCount) {
+        if (shouldCommit()) {
+            this.topLevelFieldCount = topLevelFieldCount;
+            commit();
+        }
+    }
+
+    public enum Stage {
+
+        /**
+         * Converting payload to a map.
+         */
+        CONVERT,
+
+        /**
+         * Writing message type with {@link guru.nicks.commons.messaging.resolver.MessageTypeResolver}.
+         */
+        RESOLVE_TYPE,
+
+        /**
+         * Handing the message over to the binder.
+         */
+        SEND
+
+    }
+
+}
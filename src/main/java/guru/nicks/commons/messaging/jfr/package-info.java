@@ -0,0 +1,4 @@
+@NonNullApi
+package guru.nicks.commons.messaging.jfr;
+
+import org.springframework.lang.NonNullApi;
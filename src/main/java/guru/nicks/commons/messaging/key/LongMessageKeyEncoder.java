@@ -0,0 +1,55 @@
+package guru.nicks.commons.messaging.key;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes decimal digits of {@link Long} (same as {@link Long#toString()}) as ASCII bytes.
+ */
+public class LongMessageKeyEncoder implements MessageKeyEncoder<Long> {
+
+    public static final LongMessageKeyEncoder INSTANCE = new LongMessageKeyEncoder();
+
+    @Override
+    public Class<Long> getKeyClass() {
+        return Long.class;
+    }
+
+    @Override
+    public byte[] encode(Long key) {
+        long value = key;
+
+        // Long.MIN_VALUE can't be negated
+        if (value == Long.MIN_VALUE) {
+            return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+        }
+
+        boolean negative = value < 0;
+        if (negative) {
+            value = -value;
+        }
+
+        var bytes = new byte[countDigits(value) + (negative ? 1 : 0)];
+
+        for (int i = bytes.length - 1; i >= (negative ? 1 : 0); i--) {
+            bytes[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+
+        if (negative) {
+            bytes[0] = '-';
+        }
+
+        return bytes;
+    }
+
+    private static int countDigits(long value) {
+        int digits = 1;
+
+        for (long threshold = 10; (digits < 19) && (value >= threshold); threshold *= 10) {
+            digits++;
+        }
+
+        return digits;
+    }
+
+}
@@ -0,0 +1,28 @@
+package guru.nicks.commons.messaging.key;
+
+/**
+ * Converts message keys of a certain class to bytes sent to Kafka. Implementations must produce the same bytes as
+ * {@code key.toString().getBytes(UTF_8)} does, otherwise messages published before and after switching to an encoder
+ * would land in different partitions.
+ * <p>
+ * The resulting array is stored in message headers and outlives the {@code encode} call, therefore it can't come from a
+ * reusable buffer - instead, encoders write directly into an array of the exact size, skipping intermediate strings.
+ *
+ * @param <K> key class
+ */
+public interface MessageKeyEncoder<K> {
+
+    /**
+     * @return key class this encoder accepts (exact match, subclasses are not looked up)
+     */
+    Class<K> getKeyClass();
+
+    /**
+     * Encodes the key.
+     *
+     * @param key message key
+     * @return key bytes
+     */
+    byte[] encode(K key);
+
+}
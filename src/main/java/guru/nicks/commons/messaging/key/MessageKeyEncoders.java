@@ -0,0 +1,58 @@
+package guru.nicks.commons.messaging.key;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks {@link MessageKeyEncoder} by the exact key class. Keys of other classes are encoded as
+ * {@code key.toString().getBytes(UTF_8)}; {@code byte[]} keys are passed as is.
+ */
+public class MessageKeyEncoders {
+
+    /**
+     * Encoders for {@link String}, {@link java.util.UUID}, and {@link Long}.
+     */
+    public static final List<MessageKeyEncoder<?>> BUILT_IN_ENCODERS = List.of(
+            StringMessageKeyEncoder.INSTANCE,
+            UuidMessageKeyEncoder.INSTANCE,
+            LongMessageKeyEncoder.INSTANCE);
+
+    public static final MessageKeyEncoders DEFAULT = new MessageKeyEncoders(List.of());
+
+    private final Map<Class<?>, MessageKeyEncoder<?>> encoders;
+
+    /**
+     * Constructor.
+     *
+     * @param customEncoders encoders which complement (or, for the same key class, replace) {@link #BUILT_IN_ENCODERS}
+     */
+    public MessageKeyEncoders(Collection<? extends MessageKeyEncoder<?>> customEncoders) {
+        var map = new HashMap<Class<?>, MessageKeyEncoder<?>>();
+        BUILT_IN_ENCODERS.forEach(encoder -> map.put(encoder.getKeyClass(), encoder));
+        customEncoders.forEach(encoder -> map.put(encoder.getKeyClass(), encoder));
+        encoders = Map.copyOf(map);
+    }
+
+    /**
+     * Encodes the key.
+     *
+     * @param key message key
+     * @return key bytes
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] encode(Object key) {
+        if (key instanceof byte[] bytes) {
+            return bytes;
+        }
+
+        var encoder = (MessageKeyEncoder<Object>) encoders.get(key.getClass());
+
+        return (encoder != null)
+                ? encoder.encode(key)
+                : key.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,23 @@
+package guru.nicks.commons.messaging.key;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Computes Kafka partition on the publishing side, so that the producer doesn't have to. The result is passed in
+ * {@link org.springframework.kafka.support.KafkaHeaders#PARTITION}.
+ */
+public interface MessagePartitioner {
+
+    /**
+     * Computes partition for the message.
+     *
+     * @param topic           topic
+     * @param messageKey      message key as passed to the publisher (or returned by
+     *                        {@link guru.nicks.commons.messaging.MessageKeyAwareMessage#getRawMessageKey()})
+     * @param messageKeyBytes {@code messageKey} encoded with {@link MessageKeyEncoders}
+     * @return partition, or {@code null} to let the producer pick it
+     */
+    @Nullable
+    Integer getPartition(String topic, Object messageKey, byte[] messageKeyBytes);
+
+}
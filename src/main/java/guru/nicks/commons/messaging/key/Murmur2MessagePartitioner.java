@@ -0,0 +1,75 @@
+package guru.nicks.commons.messaging.key;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.Nullable;
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Picks the same partition as Kafka's default partitioner does for keyed messages (positive murmur2 hash of key bytes
+ * modulo partition count), therefore switching to this partitioner doesn't move keys between partitions. Hashes of hot
+ * keys are cached (keys are compared with {@link Object#equals(Object)}, so {@code byte[]} keys are never cached).
+ * <p>
+ * The partition layout must be known in advance: if a topic's partition count changes, the partition count provider
+ * must reflect it, otherwise messages will keep going to the old set of partitions.
+ */
+public class Murmur2MessagePartitioner implements MessagePartitioner {
+
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    /**
+     * Returns partition count for the given topic, non-positive for unknown topics (then the producer picks the
+     * partition).
+     */
+    private final ToIntFunction<String> partitionCountProvider;
+
+    /**
+     * Message key to its positive murmur2 hash.
+     */
+    private final Cache<Object, Integer> hashCache;
+
+    /**
+     * Constructor.
+     *
+     * @param partitionCountProvider returns partition count for the given topic, non-positive for unknown topics
+     * @param cacheSize              max. number of message keys whose hashes are cached
+     */
+    public Murmur2MessagePartitioner(ToIntFunction<String> partitionCountProvider, int cacheSize) {
+        this.partitionCountProvider = partitionCountProvider;
+        hashCache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param partitionCounts topic to its partition count, topics missing here are partitioned by the producer
+     */
+    public Murmur2MessagePartitioner(Map<String, Integer> partitionCounts) {
+        this(topic -> partitionCounts.getOrDefault(topic, 0), DEFAULT_CACHE_SIZE);
+    }
+
+    @Nullable
+    @Override
+    public Integer getPartition(String topic, Object messageKey, byte[] messageKeyBytes) {
+        int partitionCount = partitionCountProvider.applyAsInt(topic);
+        if (partitionCount <= 0) {
+            return null;
+        }
+
+        int hash = (messageKey instanceof byte[])
+                ? hash(messageKeyBytes)
+                : hashCache.get(messageKey, key -> hash(messageKeyBytes));
+
+        return hash % partitionCount;
+    }
+
+    private static int hash(byte[] messageKeyBytes) {
+        return Utils.toPositive(Utils.murmur2(messageKeyBytes));
+    }
+
+}
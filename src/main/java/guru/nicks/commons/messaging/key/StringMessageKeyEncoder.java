@@ -0,0 +1,23 @@
+package guru.nicks.commons.messaging.key;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes strings as UTF-8. {@link String#getBytes(java.nio.charset.Charset)} is already intrinsified for compact
+ * (Latin-1) strings, so nothing beats it here; the class exists to keep all key classes behind the same SPI.
+ */
+public class StringMessageKeyEncoder implements MessageKeyEncoder<String> {
+
+    public static final StringMessageKeyEncoder INSTANCE = new StringMessageKeyEncoder();
+
+    @Override
+    public Class<String> getKeyClass() {
+        return String.class;
+    }
+
+    @Override
+    public byte[] encode(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,52 @@
+package guru.nicks.commons.messaging.key;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Writes the canonical 36-character form of {@link UUID} (same as {@link UUID#toString()}) as ASCII bytes.
+ */
+public class UuidMessageKeyEncoder implements MessageKeyEncoder<UUID> {
+
+    public static final UuidMessageKeyEncoder INSTANCE = new UuidMessageKeyEncoder();
+
+    private static final int UUID_LENGTH = 36;
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @Override
+    public Class<UUID> getKeyClass() {
+        return UUID.class;
+    }
+
+    @Override
+    public byte[] encode(UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        var bytes = new byte[UUID_LENGTH];
+
+        // 8-4-4-4-12 hex digits
+        writeHex(bytes, 0, msb >>> 32, 8);
+        bytes[8] = '-';
+        writeHex(bytes, 9, msb >>> 16, 4);
+        bytes[13] = '-';
+        writeHex(bytes, 14, msb, 4);
+        bytes[18] = '-';
+        writeHex(bytes, 19, lsb >>> 48, 4);
+        bytes[23] = '-';
+        writeHex(bytes, 24, lsb, 12);
+
+        return bytes;
+    }
+
+    /**
+     * Writes the lowest {@code digits} hex digits of {@code value}, most significant first.
+     */
+    private static void writeHex(byte[] target, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            target[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+}
@@ -0,0 +1,4 @@
+@NonNullApi
+package guru.nicks.commons.messaging.key;
+
+import org.springframework.lang.NonNullApi;
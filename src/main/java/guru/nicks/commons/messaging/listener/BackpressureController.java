@@ -0,0 +1,115 @@
+package guru.nicks.commons.messaging.listener;
+
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
+
+/**
+ * Tracks message processing time (as an exponentially weighted moving average) and tells
+ * {@link DispatchingMessageListener} when to pause its binding according to {@link BackpressurePolicy}. The number of
+ * messages being processed is tracked for diagnostics only: it can't exceed the binding concurrency, so it says nothing
+ * about how many records are waiting. Thread-safe, takes a lock only when deciding to pause.
+ */
+public class BackpressureController {
+
+    /**
+     * Used for listeners having no {@link BackpressurePolicy} - to avoid storing {@code null}.
+     */
+    public static final BackpressureController DISABLED = new BackpressureController(null);
+
+    @Getter
+    @Nullable
+    private final BackpressurePolicy policy;
+
+    private final long latencyThresholdNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Smoothed processing time. Races between threads updating it may lose a sample, which is fine for an average.
+     */
+    private volatile double averageLatencyNanos;
+
+    /**
+     * {@link System#nanoTime()} until which the binding is paused - no point in pausing it again before that.
+     */
+    private volatile long pausedUntilNanos;
+
+    public BackpressureController(@Nullable BackpressurePolicy policy) {
+        this.policy = policy;
+
+        if (policy != null) {
+            checkNotNull(policy.getLatencyThreshold(), "latencyThreshold");
+            checkNotNull(policy.getPauseDuration(), "pauseDuration");
+        }
+
+        latencyThresholdNanos = (policy == null)
+                ? Long.MAX_VALUE
+                : policy.getLatencyThreshold().toNanos();
+    }
+
+    public boolean isEnabled() {
+        return policy != null;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public double getAverageLatencyNanos() {
+        return averageLatencyNanos;
+    }
+
+    /**
+     * Must be called before processing each message, and each call must be followed by
+     * {@link #onComplete(long)}.
+     *
+     * @return {@link System#nanoTime()} to pass to {@link #onComplete(long)}
+     */
+    public long onStart() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records message processing time and decides whether the binding should be paused.
+     *
+     * @param startNanos value returned by {@link #onStart()}
+     * @return {@code true} if the caller should pause the binding for {@link BackpressurePolicy#getPauseDuration()}
+     */
+    public boolean onComplete(long startNanos) {
+        long now = System.nanoTime();
+        inFlight.decrementAndGet();
+
+        if (policy == null) {
+            return false;
+        }
+
+        double alpha = policy.getSmoothingFactor();
+        double average = averageLatencyNanos;
+        average = (average == 0)
+                ? (now - startNanos)
+                : (alpha * (now - startNanos) + (1 - alpha) * average);
+        averageLatencyNanos = average;
+
+        if ((average <= latencyThresholdNanos) || (now - pausedUntilNanos < 0)) {
+            return false;
+        }
+
+        synchronized (this) {
+            // another thread has just decided to pause
+            if (now - pausedUntilNanos < 0) {
+                return false;
+            }
+
+            pausedUntilNanos = now + policy.getPauseDuration().toNanos();
+            // measure afresh after resuming, otherwise the stale average would pause the binding again right away
+            averageLatencyNanos = 0;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package guru.nicks.commons.messaging.listener;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Defines when {@link DispatchingMessageListener} pauses its binding because consumers can't keep up.
+ *
+ * @see BackpressureController
+ */
+@Value
+@Builder(toBuilder = true)
+public class BackpressurePolicy {
+
+    /**
+     * If the smoothed message processing time exceeds this, the binding is paused. Should be well below Kafka's
+     * {@code max.poll.interval.ms} divided by {@code max.poll.records}.
+     */
+    Duration latencyThreshold;
+
+    /**
+     * How long to pause the binding for. If consumers are still slow after resuming, the binding is paused again.
+     */
+    @Builder.Default
+    Duration pauseDuration = Duration.ofSeconds(1);
+
+    /**
+     * Weight of the latest sample in the exponentially weighted moving average of processing time, between 0 and 1.
+     * Greater values react to latency changes faster, but also to occasional outliers.
+     */
+    @Builder.Default
+    double smoothingFactor = 0.2;
+
+}
@@ -0,0 +1,51 @@
+package guru.nicks.commons.messaging.listener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory {@link MessageCompletionStore}. Entries expire, so messages that are never redelivered (for example,
+ * because the binder has sent them to the DLQ) don't leak memory.
+ */
+public class CaffeineMessageCompletionStore implements MessageCompletionStore {
+
+    /**
+     * Message key to IDs of consumers that have completed the message.
+     */
+    private final Cache<String, Set<String>> completions;
+
+    /**
+     * Constructor.
+     *
+     * @param maxMessages max. number of partially processed messages to remember
+     * @param expiration  how long to remember partially processed messages
+     */
+    public CaffeineMessageCompletionStore(long maxMessages, Duration expiration) {
+        completions = Caffeine.newBuilder()
+                .maximumSize(maxMessages)
+                .expireAfterWrite(expiration)
+                .build();
+    }
+
+    @Override
+    public boolean isCompleted(String messageKey, String consumerId) {
+        Set<String> consumerIds = completions.getIfPresent(messageKey);
+        return (consumerIds != null) && consumerIds.contains(consumerId);
+    }
+
+    @Override
+    public void markCompleted(String messageKey, String consumerId) {
+        completions.get(messageKey, key -> ConcurrentHashMap.newKeySet())
+                .add(consumerId);
+    }
+
+    @Override
+    public void forget(String messageKey) {
+        completions.invalidate(messageKey);
+    }
+
+}
@@ -0,0 +1,47 @@
+package guru.nicks.commons.messaging.listener;
+
+import jakarta.annotation.Nullable;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.function.BinaryOperator;
+
+/**
+ * Defines how messages having the same key are coalesced before being passed to a {@link MessageConsumer} - for
+ * consumers that only care about the latest state of each key and receive bursts of updates.
+ *
+ * @param <P> payload type
+ * @see MessageCoalescer
+ */
+@Value
+@Builder(toBuilder = true)
+public class CoalescingPolicy<P> {
+
+    /**
+     * How long to buffer messages since the first message of each key arrives.
+     */
+    @Builder.Default
+    Duration window = Duration.ofMillis(500);
+
+    /**
+     * Buffered messages are delivered as soon as there are this many of them for a key (even if {@link #getWindow()}
+     * hasn't elapsed yet). Non-positive means unlimited.
+     */
+    int maxMessages;
+
+    /**
+     * Bounds memory used by buffers: while this many keys have buffered messages, messages of other keys are delivered
+     * without coalescing.
+     */
+    @Builder.Default
+    int maxKeys = 10_000;
+
+    /**
+     * Merges the buffered payload (first argument) with the newly arrived one (second argument). If {@code null}, the
+     * latest payload wins.
+     */
+    @Nullable
+    BinaryOperator<P> merger;
+
+}
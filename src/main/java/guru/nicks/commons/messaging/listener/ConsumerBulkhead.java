@@ -0,0 +1,98 @@
+package guru.nicks.commons.messaging.listener;
+
+import com.google.common.util.concurrent.RateLimiter;
+import jakarta.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces {@link MessageConsumer#getMaxRate()} and {@link MessageConsumer#getMaxConcurrency()} for a single consumer
+ * (within the current app instance).
+ */
+public class ConsumerBulkhead {
+
+    /**
+     * Used for consumers having no limits - to avoid storing {@code null} in maps.
+     */
+    public static final ConsumerBulkhead UNLIMITED = new ConsumerBulkhead(0, 0);
+
+    @Nullable
+    private final RateLimiter rateLimiter;
+
+    @Nullable
+    private final Semaphore semaphore;
+
+    /**
+     * Constructor.
+     *
+     * @param maxRate        max. number of messages per second, non-positive means unlimited
+     * @param maxConcurrency max. number of messages processed at the same time, non-positive means unlimited
+     */
+    public ConsumerBulkhead(double maxRate, int maxConcurrency) {
+        rateLimiter = (maxRate > 0)
+                ? RateLimiter.create(maxRate)
+                : null;
+        // fair - to process messages in their arrival order
+        semaphore = (maxConcurrency > 0)
+                ? new Semaphore(maxConcurrency, true)
+                : null;
+    }
+
+    /**
+     * Creates a bulkhead for the given consumer.
+     *
+     * @param messageConsumer message consumer
+     * @return {@link #UNLIMITED} if the consumer declares no limits
+     */
+    public static ConsumerBulkhead of(MessageConsumer<?> messageConsumer) {
+        double maxRate = messageConsumer.getMaxRate();
+        int maxConcurrency = messageConsumer.getMaxConcurrency();
+
+        return ((maxRate > 0) || (maxConcurrency > 0))
+                ? new ConsumerBulkhead(maxRate, maxConcurrency)
+                : UNLIMITED;
+    }
+
+    public boolean isUnlimited() {
+        return (rateLimiter == null) && (semaphore == null);
+    }
+
+    /**
+     * Tries to get permission for processing a message. If {@code true} is returned, the caller MUST call
+     * {@link #release()} after processing the message.
+     *
+     * @param timeout max. time to wait for the permission
+     * @return {@code true} if permission has been obtained
+     * @throws InterruptedException thread interrupted while waiting
+     */
+    public boolean tryAcquire(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        if ((semaphore != null) && !semaphore.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+
+        if ((rateLimiter != null)
+                && !rateLimiter.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            if (semaphore != null) {
+                semaphore.release();
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Releases the permission obtained with {@link #tryAcquire(Duration)}.
+     */
+    public void release() {
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+}
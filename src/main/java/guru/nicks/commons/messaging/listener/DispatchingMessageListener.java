@@ -2,34 +2,55 @@ package guru.nicks.commons.messaging.listener;
 
 import guru.nicks.commons.condition.ConditionalOnPropertyNotBlank;
 import guru.nicks.commons.log.domain.LogContext;
-import guru.nicks.commons.utils.ReflectionUtils;
+import guru.nicks.commons.messaging.DeadLetterMetadata;
+import guru.nicks.commons.messaging.MessageType;
+import guru.nicks.commons.messaging.jfr.MessageDispatchEvent;
+import guru.nicks.commons.messaging.service.BindingStateService;
+import guru.nicks.commons.messaging.service.DeadLetterPublisherService;
 import guru.nicks.commons.utils.json.JsonUtils;
 import guru.nicks.commons.validation.AnnotationValidator;
 
 import am.ik.yavi.meta.ConstraintArguments;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Suppliers;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
 import jakarta.validation.ValidationException;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
 
 /**
- * Dispatches messages to consumers based on {@link #findMessageConsumer(Message)} result. One message type may have
- * only one consumer within the same {@link #getId()}. Otherwise, if one consumer succeeds and another fails, the
- * message would be redelivered to ALL of them, which may cause side effects.
+ * Dispatches messages to consumers based on {@link #findMessageConsumers(Message)} result. By default, one message type
+ * may have only one consumer within the same {@link #getId()}. Otherwise, if one consumer succeeds and another fails,
+ * the message would be redelivered to ALL of them, which may cause side effects. Multiple consumers are only safe with
+ * {@link #fanOut(Message, List)} which tracks completion per consumer.
  * <p>
  * Consider annotating concrete listener beans with
  * {@code @ConditionalOnPropertyNotBlank("PREFIX.concreteListenerBeanNameSUFFIX")} (where PREFIX is
@@ -48,7 +69,17 @@ public abstract class DispatchingMessageListener implements Consumer<Message<Map
      * @see ConditionalOnPropertyNotBlank
      */
     public static final String CONDITIONAL_PROPERTY_PREFIX = "spring.cloud.stream.bindings.";
-    public static final String CONDITIONAL_PROPERTY_SUFFIX = "-in-0.destination";
+    /**
+     * Listener bean name + this suffix constitute the (input) binding name.
+     */
+    public static final String BINDING_NAME_SUFFIX = "-in-0";
+    public static final String CONDITIONAL_PROPERTY_SUFFIX = BINDING_NAME_SUFFIX + ".destination";
+    /**
+     * Counter of messages dropped because of {@link MessageConsumer#getMaxMessageAge()}, tagged with listener ID and
+     * consumer class.
+     */
+    public static final String SHED_MESSAGES_METER = "messaging.message.shed";
+    public static final String CONSUMER_TAG = "consumer";
 
     @Getter
     @NonNull // Lombok creates runtime nullness check for this own annotation only
@@ -66,33 +97,173 @@ public abstract class DispatchingMessageListener implements Consumer<Message<Map
     @NonNull // Lombok creates runtime nullness check for this own annotation only
     private final ObjectMapper objectMapper;
 
+    /**
+     * Created lazily, {@link ConsumerBulkhead#UNLIMITED} for consumers having no limits.
+     */
+    private final Map<MessageConsumer, ConsumerBulkhead> consumerBulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * {@link System#nanoTime()} when the current throttling pause (see {@link #getThrottlePauseDuration()}) ends. While
+     * it lasts, throttled messages don't pause the binding again.
+     */
+    private final AtomicLong throttlePauseEndNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Number of messages dropped because they exceeded their consumers' {@link MessageConsumer#getMaxMessageAge()}.
+     */
+    private final AtomicLong shedMessageCount = new AtomicLong();
+
+    /**
+     * Per-consumer counters of shed messages, only populated if {@link #setMeterRegistry(MeterRegistry)} was called.
+     */
+    private final Map<MessageConsumer, Counter> shedMessageCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Created lazily because {@link #getBackpressurePolicy()} may depend on subclass fields.
+     */
+    private final Supplier<BackpressureController> backpressureController = Suppliers.memoize(() ->
+            Optional.ofNullable(getBackpressurePolicy())
+                    .map(BackpressureController::new)
+                    .orElse(BackpressureController.DISABLED));
+
+    /**
+     * Created lazily, only for consumers having {@link MessageConsumer#useSpecializedDeserialization()}.
+     */
+    private final Supplier<PayloadConverter> payloadConverter = Suppliers.memoize(() ->
+            new PayloadConverter(objectMapper));
+
+    /**
+     * Created lazily, only for consumers having {@link MessageConsumer#isPayloadReusable()}.
+     */
+    private final Supplier<PayloadPool> payloadPool = Suppliers.memoize(() ->
+            new PayloadPool(objectMapper, isPayloadLeakDetectionEnabled()));
+
+    /**
+     * Created lazily, only for consumers having {@link MessageConsumer#getCoalescingPolicy()}.
+     */
+    private final Map<MessageConsumer, MessageCoalescer> consumerCoalescers = new ConcurrentHashMap<>();
+
+    /**
+     * Delivers coalesced messages when their windows expire. Created lazily because it's only needed for consumers
+     * having {@link MessageConsumer#getCoalescingPolicy()}.
+     */
+    private final Supplier<ScheduledExecutorService> coalescingScheduler = Suppliers.memoize(() ->
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, getClass().getSimpleName() + "-coalescer");
+                thread.setDaemon(true);
+                return thread;
+            }));
+
+    /**
+     * Used if no {@link #setMessageCompletionStore(MessageCompletionStore)} has been called. Created lazily because
+     * it's only needed in fan-out mode.
+     */
+    private final Supplier<MessageCompletionStore> defaultMessageCompletionStore = Suppliers.memoize(() ->
+            new CaffeineMessageCompletionStore(10_000, Duration.ofHours(1)));
+
+    /**
+     * Optional DI (see {@link #setMessageCompletionStore(MessageCompletionStore)}).
+     */
+    @Nullable
+    private MessageCompletionStore messageCompletionStore;
+
+    /**
+     * Set if the listener was created with
+     * {@link #DispatchingMessageListener(String, MessageConsumerIndex, AnnotationValidator, ObjectMapper)}.
+     */
+    @Getter
+    @Nullable
+    private MessageConsumerIndex messageConsumerIndex;
+
+    /**
+     * Optional DI (see {@link #setBindingStateService(BindingStateService)}).
+     */
+    @Getter
+    @Nullable
+    private BindingStateService bindingStateService;
+
+    /**
+     * Optional DI (see {@link #setDeadLetterPublisherService(DeadLetterPublisherService)}).
+     */
+    @Getter
+    @Nullable
+    private DeadLetterPublisherService deadLetterPublisherService;
+
+    /**
+     * Optional DI (see {@link #setMeterRegistry(MeterRegistry)}).
+     */
+    @Getter
+    @Nullable
+    private MeterRegistry meterRegistry;
+
+    @Getter
+    @Nullable
+    private MessageLatencyRecorder latencyRecorder;
+
+    /**
+     * Takes consumers out of the index shared by all listeners, instead of scanning all consumers and analyzing their
+     * classes in each listener - makes a difference in apps having many listeners and consumers.
+     *
+     * @param appName              app name
+     * @param messageConsumerIndex shared consumer index
+     * @param annotationValidator  annotation validator
+     * @param objectMapper         object mapper
+     */
+    protected DispatchingMessageListener(String appName, MessageConsumerIndex messageConsumerIndex,
+            AnnotationValidator annotationValidator, ObjectMapper objectMapper) {
+        this(appName, messageConsumerIndex.getAllMessageConsumers(), annotationValidator, objectMapper);
+        this.messageConsumerIndex = messageConsumerIndex;
+    }
+
     /**
      * Performs the following flow:
      * <ul>
      *     <li>stores {@link #getAppName()} in {@link LogContext#APP_NAME}</li>
-     *     <li>stores {@link KafkaHeaders#RECEIVED_TOPIC} in {@link LogContext#MESSAGE_TOPIC}</li>
-     *     <li>stores {@link MessageHeaders#ID} in {@link LogContext#MESSAGE_ID}</li>
+     *     <li>stores {@link KafkaHeaders#RECEIVED_TOPIC} in {@link LogContext#MESSAGE_TOPIC} and
+     *         {@link MessageHeaders#ID} in {@link LogContext#MESSAGE_ID} - until the message has been processed, see
+     *         {@link MessageLogScope}</li>
      *     <li>logs message (what's exactly logged depends on its {@code toString()})</li>
-     *     <li>find message consumer with {@link #findMessageConsumer(Message)}</li>
+     *     <li>calls {@link #tryShedLoad(Message)} - if it returns {@code true}, the message isn't dispatched</li>
+     *     <li>if {@link #getBackpressurePolicy()} is set, measures processing time and pauses the binding if consumers
+     *         can't keep up</li>
+     *     <li>find message consumers with {@link #findMessageConsumers(Message)}</li>
      *     <li>no consumer found - calls {@link #ignoreMessage(Message)}</li>
+     *     <li>multiple consumers found - calls {@link #fanOut(Message, List)}</li>
+     *     <li>consumer failed and {@link #getDeadLetterTopic()} is set - publishes the message there instead of
+     *         rethrowing the exception (unless publishing fails too)</li>
      *     <li>consumers found - calls {@link #consumeMessage(Message, MessageConsumer)} which, for each consumer:
      *          <ul>
      *              <li>deserializes message payload to {@link #getExpectedPayloadClass(MessageConsumer)}</li>
      *              <li>validates payload with {@link #validatePayload(Object)}</li>
-     *              <li>passes control on to consumer's ({@link MessageConsumer#accept(Object, Object)})</li>
+     *              <li>if {@link MessageConsumer#getCoalescingPolicy()} is set, buffers payload with
+     *                  {@link MessageCoalescer}</li>
+     *              <li>passes control on to consumer's ({@link MessageConsumer#accept(Object, Object)}), retrying it
+     *                  according to {@link MessageConsumer#getRetryPolicy()}</li>
      *          </ul>
      *     </li>
+     *     <li>acknowledges {@link KafkaHeaders#ACKNOWLEDGMENT} (present if the binding uses manual acknowledgments)
+     *         once the message has been handled - consumed, ignored, shed or dead-lettered; messages buffered by
+     *         {@link MessageCoalescer} are acknowledged once it has delivered them; failed messages are not
+     *         acknowledged, so consumers must not acknowledge messages themselves</li>
      * </ul>
      *
      * @param message message
      */
     @Override
     public void accept(Message<Map<String, Object>> message) {
-        try {
-            LogContext.APP_NAME.put(appName);
-            LogContext.MESSAGE_TOPIC.put(message.getHeaders().get(KafkaHeaders.RECEIVED_TOPIC));
-            LogContext.MESSAGE_ID.put(message.getHeaders().get(MessageHeaders.ID));
+        try (var ignored = MessageLogScope.open(appName, message.getHeaders().get(KafkaHeaders.RECEIVED_TOPIC),
+                message.getHeaders().get(MessageHeaders.ID))) {
+            dispatch(message);
+        }
+    }
 
+    /**
+     * Called by {@link #accept(Message)} within the message's log context.
+     *
+     * @param message message
+     */
+    private void dispatch(Message<Map<String, Object>> message) {
+        try {
             // don't log raw payload, rather mask it (convert to JSON first)
             try {
                 String json = objectMapper.writeValueAsString(message);
@@ -103,9 +274,70 @@ public abstract class DispatchingMessageListener implements Consumer<Message<Map
                         getClass().getName());
             }
 
-            findMessageConsumer(message).ifPresentOrElse(
-                    consumer -> consumeMessage(message, consumer),
-                    () -> ignoreMessage(message));
+            MessageLatencyRecorder latency = latencyRecorder;
+            Long publishTimestampMicros = (latency == null)
+                    ? null
+                    : MessageLatencyRecorder.readPublishTimestampMicros(message.getHeaders());
+            String messageType = (publishTimestampMicros == null)
+                    ? null
+                    : getMessageTypeForMetrics(message);
+
+            if (publishTimestampMicros != null) {
+                latency.recordDispatch(publishTimestampMicros, messageType);
+            }
+
+            Acknowledgment acknowledgment = message.getHeaders().get(KafkaHeaders.ACKNOWLEDGMENT,
+                    Acknowledgment.class);
+
+            if (tryShedLoad(message)) {
+                acknowledge(acknowledgment);
+                return;
+            }
+
+            BackpressureController backpressure = backpressureController.get();
+            // DISABLED is shared by all listeners, so it mustn't count their messages
+            long startNanos = backpressure.isEnabled()
+                    ? backpressure.onStart()
+                    : 0;
+
+            try {
+                var findEvent = MessageDispatchEvent.start(MessageDispatchEvent.Stage.FIND_CONSUMER, getId(),
+                        message.getHeaders().get(KafkaHeaders.RECEIVED_TOPIC));
+                List<MessageConsumer> consumers = findMessageConsumers(message);
+                finishDispatchEvent(findEvent, message, (consumers.size() == 1)
+                        ? consumers.getFirst()
+                        : null);
+
+                Message<Map<String, Object>> dispatchedMessage = message;
+
+                // coalescers hold the acknowledgment of messages they buffer until they deliver them
+                if ((acknowledgment != null) && hasCoalescingConsumer(consumers)) {
+                    acknowledgment = new SharedAcknowledgment(acknowledgment);
+                    dispatchedMessage = MessageBuilder.fromMessage(message)
+                            .setHeader(KafkaHeaders.ACKNOWLEDGMENT, acknowledgment)
+                            .build();
+                }
+
+                switch (consumers.size()) {
+                    case 0 -> ignoreMessage(dispatchedMessage);
+                    case 1 -> consumeMessageOrDeadLetter(dispatchedMessage, consumers.getFirst());
+                    default -> fanOut(dispatchedMessage, consumers);
+                }
+
+                acknowledge(acknowledgment);
+
+                if (publishTimestampMicros != null) {
+                    latency.recordCompletion(publishTimestampMicros, messageType);
+                }
+            } finally {
+                if (backpressure.isEnabled() && backpressure.onComplete(startNanos)) {
+                    pauseOnBackpressure(backpressure);
+                }
+            }
+        } catch (NonRetryableMessageException e) {
+            log.error("Message consumption failed, not retrying; see DLQ. Reason: {}. Payload: {}.",
+                    e.getMessage(), message.getPayload());
+            throw e;
         } catch (RuntimeException e) {
             log.error("Message consumption failed, retrying; see DLQ if retries don't help. Reason: {}. Payload: {}.",
                     e.getMessage(), message.getPayload());
@@ -121,6 +353,77 @@ public abstract class DispatchingMessageListener implements Consumer<Message<Map
      */
     public abstract String getId();
 
+    /**
+     * Returns input binding name, which is needed to pause/resume message consumption. Default implementation assumes
+     * that {@link #getId()} is the listener bean name, and appends {@link #BINDING_NAME_SUFFIX} to it.
+     *
+     * @return binding name
+     */
+    public String getBindingName() {
+        return getId() + BINDING_NAME_SUFFIX;
+    }
+
+    /**
+     * Needed for pausing the binding when consumers are throttled. Without this service, throttled messages just wait
+     * for their consumers, and more records keep being fetched.
+     *
+     * @param bindingStateService binding state service
+     */
+    @Autowired(required = false)
+    public void setBindingStateService(@Nullable BindingStateService bindingStateService) {
+        this.bindingStateService = bindingStateService;
+    }
+
+    /**
+     * Needed for publishing failed messages to {@link #getDeadLetterTopic()}.
+     *
+     * @param deadLetterPublisherService dead letter publisher service
+     */
+    @Autowired(required = false)
+    public void setDeadLetterPublisherService(@Nullable DeadLetterPublisherService deadLetterPublisherService) {
+        this.deadLetterPublisherService = deadLetterPublisherService;
+    }
+
+    /**
+     * Needed for fan-out mode if completions should survive restarts or be shared by app instances (so that a message
+     * redelivered after a rebalancing isn't passed to consumers that have already processed it). Can be shared by
+     * listeners: completion keys include the listener ID.
+     *
+     * @param messageCompletionStore message completion store
+     */
+    @Autowired(required = false)
+    public void setMessageCompletionStore(@Nullable MessageCompletionStore messageCompletionStore) {
+        this.messageCompletionStore = messageCompletionStore;
+    }
+
+    /**
+     * Needed for recording end-to-end latency histograms (see {@link MessageLatencyRecorder}) and counting shed
+     * messages (see {@link #SHED_MESSAGES_METER}).
+     *
+     * @param meterRegistry meter registry
+     */
+    @Autowired(required = false)
+    public void setMeterRegistry(@Nullable MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        latencyRecorder = (meterRegistry == null)
+                ? null
+                : new MessageLatencyRecorder(meterRegistry, getId());
+    }
+
+    /**
+     * Returns topic for messages that failed to be consumed (after in-process retries, see
+     * {@link MessageConsumer#getRetryPolicy()}). Such messages are published there with failure metadata headers
+     * (see {@link DeadLetterPublisherService}), and are not handed back to the binder. Therefore, they leave the
+     * partition as soon as the dead letter has been published, and don't block subsequent messages. If publishing
+     * fails, the original exception is rethrown, so the binder doesn't commit the offset.
+     *
+     * @return default implementation returns {@code null} which means dead-lettering is up to the binder
+     */
+    @Nullable
+    protected String getDeadLetterTopic() {
+        return null;
+    }
+
     /**
      * Finds a consumer for the given message. Why not multiple consumers? Because if one consumer succeeds and the
      * other fails, the message would be re-delivered to BOTH of them, which may cause side effects.
@@ -130,15 +433,111 @@ public abstract class DispatchingMessageListener implements Consumer<Message<Map
      */
     protected abstract Optional<MessageConsumer> findMessageConsumer(Message<Map<String, Object>> message);
 
+    /**
+     * Finds all consumers for the given message. More than one consumer is only returned in fan-out mode.
+     *
+     * @param message message
+     * @return consumers, possibly empty; default implementation wraps {@link #findMessageConsumer(Message)}
+     */
+    protected List<MessageConsumer> findMessageConsumers(Message<Map<String, Object>> message) {
+        return findMessageConsumer(message)
+                .map(List::of)
+                .orElse(List.of());
+    }
+
+    /**
+     * Passes message to each of the given consumers, skipping those that have already processed it (according to
+     * {@link #getMessageCompletionStore()}) during a previous delivery. If some consumers fail, the first failure is
+     * rethrown (others are attached as suppressed) after all consumers have been called - so the message is
+     * redelivered, but only failed consumers process it again.
+     *
+     * @param message   message
+     * @param consumers message consumers
+     */
+    protected void fanOut(Message<Map<String, Object>> message, List<MessageConsumer> consumers) {
+        String completionKey = getCompletionKey(message);
+        MessageCompletionStore completionStore = getMessageCompletionStore();
+        RuntimeException failure = null;
+
+        for (MessageConsumer consumer : consumers) {
+            String consumerId = consumer.getConsumerId();
+
+            if ((completionKey != null) && completionStore.isCompleted(completionKey, consumerId)) {
+                log.debug("Consumer [{}] has already processed message '{}', skipping it", consumerId,
+                        completionKey);
+                continue;
+            }
+
+            try {
+                consumeMessageOrDeadLetter(message, consumer);
+
+                if (completionKey != null) {
+                    completionStore.markCompleted(completionKey, consumerId);
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        if (completionKey != null) {
+            completionStore.forget(completionKey);
+        }
+    }
+
+    /**
+     * Returns store for tracking message completion per consumer in {@link #fanOut(Message, List)}.
+     *
+     * @return store passed to {@link #setMessageCompletionStore(MessageCompletionStore)}, otherwise an in-memory
+     *         store remembering up to 10,000 partially processed messages for up to 1 hour
+     */
+    protected MessageCompletionStore getMessageCompletionStore() {
+        return (messageCompletionStore == null)
+                ? defaultMessageCompletionStore.get()
+                : messageCompletionStore;
+    }
+
+    /**
+     * Returns the key which identifies the message across redeliveries.
+     *
+     * @param message message
+     * @return {@link #getId()}, topic, partition and offset joined with ':', or {@code null} if the message has no
+     *         such headers (then completion can't be tracked)
+     */
+    @Nullable
+    protected String getCompletionKey(Message<Map<String, Object>> message) {
+        MessageHeaders headers = message.getHeaders();
+        Object topic = headers.get(KafkaHeaders.RECEIVED_TOPIC);
+        Object partition = headers.get(KafkaHeaders.RECEIVED_PARTITION);
+        Object offset = headers.get(KafkaHeaders.OFFSET);
+
+        if ((topic == null) || (partition == null) || (offset == null)) {
+            return null;
+        }
+
+        return getId() + ":" + topic + ":" + partition + ":" + offset;
+    }
+
     /**
      * Finds {@link #getAllMessageConsumers()} having {@link MessageConsumer#getMessageListenerId()} equal to
-     * {@link #getId()}.
+     * {@link #getId()} - in {@link #getMessageConsumerIndex()}, if it's set.
      *
      * @return message consumers bound to this message listener
      */
     protected List<MessageConsumer> findLinkedMessageConsumers() {
         checkNotNull(getId(), "listener ID should not be null");
 
+        if (messageConsumerIndex != null) {
+            return messageConsumerIndex.getMessageConsumers(getId());
+        }
+
         return allMessageConsumers.stream()
                 .filter(consumer -> getId().equals(consumer.getMessageListenerId()))
                 .toList();
@@ -152,13 +551,532 @@ public abstract class DispatchingMessageListener implements Consumer<Message<Map
      */
     @ConstraintArguments
     protected void consumeMessage(Message<Map<String, Object>> message, MessageConsumer consumer) {
-        Object payload = objectMapper.convertValue(message.getPayload(), getExpectedPayloadClass(consumer));
+        // coalescing retains payloads, so they can't be reused
+        boolean pooled = consumer.isPayloadReusable() && (consumer.getCoalescingPolicy() == null);
+        Object payload = null;
+        Object topic = message.getHeaders().get(KafkaHeaders.RECEIVED_TOPIC);
+
+        // stale messages aren't worth deserializing
+        if (isExpired(message, consumer)) {
+            shedMessage(message, consumer);
+            return;
+        }
+
+        try {
+            // retrying won't fix malformed or invalid payloads
+            try {
+                var deserializeEvent = MessageDispatchEvent.start(MessageDispatchEvent.Stage.DESERIALIZE, getId(),
+                        topic);
+                payload = deserializePayload(message, consumer, pooled);
+                finishDispatchEvent(deserializeEvent, message, consumer);
+
+                log.debug("Deserialized message in listener [{}] for consumer [{}]: {}",
+                        getClass().getName(), consumer.getClass().getName(), payload);
+
+                var validateEvent = MessageDispatchEvent.start(MessageDispatchEvent.Stage.VALIDATE, getId(), topic);
+                validatePayload(payload);
+                finishDispatchEvent(validateEvent, message, consumer);
+            } catch (IllegalArgumentException | ValidationException e) {
+                throw new NonRetryableMessageException("Invalid payload for consumer ["
+                        + consumer.getClass().getName() + "]: " + e.getMessage(), e, 1);
+            }
+
+            var consumeEvent = MessageDispatchEvent.start(MessageDispatchEvent.Stage.CONSUME, getId(), topic);
 
-        log.debug("Deserialized message in listener [{}] for consumer [{}]: {}",
-                getClass().getName(), consumer.getClass().getName(), payload);
+            if (consumer.getCoalescingPolicy() != null) {
+                offerToCoalescer(consumer, payload, message.getHeaders());
+            } else {
+                invokeConsumerWithRetries(consumer, payload, message.getHeaders());
+            }
+
+            finishDispatchEvent(consumeEvent, message, consumer);
+        } finally {
+            if (pooled && (payload != null)) {
+                payloadPool.get().release(payload);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of messages dropped because they exceeded their consumers'
+     * {@link MessageConsumer#getMaxMessageAge()}.
+     *
+     * @return shed message count (since app startup)
+     */
+    public long getShedMessageCount() {
+        return shedMessageCount.get();
+    }
+
+    /**
+     * Checks message age (see {@link #getMessageTimestampMillis(Message)}) against
+     * {@link #getMaxMessageAge(MessageConsumer)}. Messages having no timestamp are never considered expired.
+     *
+     * @param message  message
+     * @param consumer consumer
+     * @return {@code true} if the message is too old for the consumer
+     */
+    protected boolean isExpired(Message<Map<String, Object>> message, MessageConsumer consumer) {
+        Duration maxAge = getMaxMessageAge(consumer);
+        if (!maxAge.isPositive()) {
+            return false;
+        }
+
+        Long timestampMillis = getMessageTimestampMillis(message);
+        return (timestampMillis != null) && (System.currentTimeMillis() - timestampMillis > maxAge.toMillis());
+    }
+
+    /**
+     * Returns {@link MessageConsumer#getMaxMessageAge()} or, if it's {@code null},
+     * {@link MessageType#getMaxMessageAge()} of {@link MessageConsumer#getMessageType()}. Called for each message, so
+     * subclasses overriding this must cache the result.
+     *
+     * @param consumer consumer
+     * @return max. message age, non-positive means unlimited
+     */
+    protected Duration getMaxMessageAge(MessageConsumer consumer) {
+        Duration maxAge = consumer.getMaxMessageAge();
+        if (maxAge != null) {
+            return maxAge;
+        }
 
-        validatePayload(payload);
-        consumer.accept(payload, message.getHeaders());
+        MessageType messageType = consumer.getMessageType();
+        return (messageType == null)
+                ? Duration.ZERO
+                : messageType.getMaxMessageAge();
+    }
+
+    /**
+     * Returns message creation time: {@link KafkaHeaders#RECEIVED_TIMESTAMP} or, if it's missing,
+     * {@link guru.nicks.commons.messaging.service.MessagePublisherService#PUBLISH_TIMESTAMP_HEADER}.
+     *
+     * @param message message
+     * @return milliseconds since the epoch, {@code null} if the message has no timestamp
+     */
+    @Nullable
+    protected Long getMessageTimestampMillis(Message<Map<String, Object>> message) {
+        if (message.getHeaders().get(KafkaHeaders.RECEIVED_TIMESTAMP) instanceof Number number) {
+            return number.longValue();
+        }
+
+        Long publishTimestampMicros = MessageLatencyRecorder.readPublishTimestampMicros(message.getHeaders());
+        return (publishTimestampMicros == null)
+                ? null
+                : publishTimestampMicros / 1000;
+    }
+
+    /**
+     * Called for each message before looking for its consumers, lets subclasses skip (or reroute) messages when the
+     * listener is overloaded.
+     *
+     * @param message message
+     * @return {@code true} if the message has been handled and must not be dispatched; default implementation returns
+     *         {@code false}
+     */
+    protected boolean tryShedLoad(Message<Map<String, Object>> message) {
+        return false;
+    }
+
+    private void shedMessage(Message<Map<String, Object>> message, MessageConsumer consumer) {
+        shedMessageCount.incrementAndGet();
+
+        if (meterRegistry != null) {
+            shedMessageCounters.computeIfAbsent(consumer, key -> Counter.builder(SHED_MESSAGES_METER)
+                            .tag(MessageLatencyRecorder.LISTENER_TAG, getId())
+                            .tag(CONSUMER_TAG, key.getClass().getName())
+                            .register(meterRegistry))
+                    .increment();
+        }
+
+        log.debug("Dropping message older than {} for consumer [{}]: topic '{}', offset {}",
+                getMaxMessageAge(consumer), consumer.getClass().getName(),
+                message.getHeaders().get(KafkaHeaders.RECEIVED_TOPIC), message.getHeaders().get(KafkaHeaders.OFFSET));
+    }
+
+    /**
+     * Returns message type for diagnostics, such as JFR events and latency metrics. Called only when they're being
+     * recorded.
+     *
+     * @param message message
+     * @return default implementation returns {@code null}
+     */
+    @Nullable
+    protected String getMessageTypeForDiagnostics(Message<Map<String, Object>> message) {
+        return null;
+    }
+
+    /**
+     * Returns message type for tagging metrics, such as latency histograms. Unlike
+     * {@link #getMessageTypeForDiagnostics(Message)}, the number of distinct values must be bounded: message types come
+     * from incoming messages, and each new value would create new time series.
+     *
+     * @param message message
+     * @return default implementation returns {@code null}, which is tagged as
+     *         {@link MessageLatencyRecorder#UNKNOWN_MESSAGE_TYPE}
+     */
+    @Nullable
+    protected String getMessageTypeForMetrics(Message<Map<String, Object>> message) {
+        return null;
+    }
+
+    /**
+     * Resolves the (relatively costly) event fields only if the event is being recorded.
+     */
+    private void finishDispatchEvent(MessageDispatchEvent event, Message<Map<String, Object>> message,
+            @Nullable MessageConsumer consumer) {
+        if (event.isEnabled()) {
+            event.finish(getMessageTypeForDiagnostics(message),
+                    (consumer == null)
+                            ? null
+                            : consumer.getClass(),
+                    message.getPayload().size());
+        }
+    }
+
+    /**
+     * Whether {@link PayloadPool} should, instead of reusing payloads, check if consumers retain them. Meant for
+     * debugging consumers having {@link MessageConsumer#isPayloadReusable()}.
+     *
+     * @return default implementation returns {@code false}
+     */
+    protected boolean isPayloadLeakDetectionEnabled() {
+        return false;
+    }
+
+    private Object deserializePayload(Message<Map<String, Object>> message, MessageConsumer consumer,
+            boolean pooled) {
+        Class<?> payloadClass = getExpectedPayloadClass(consumer);
+
+        if (pooled) {
+            return payloadPool.get().acquire(message.getPayload(), payloadClass);
+        }
+
+        return consumer.useSpecializedDeserialization()
+                ? payloadConverter.get().convert(message.getPayload(), payloadClass)
+                : objectMapper.convertValue(message.getPayload(), payloadClass);
+    }
+
+    /**
+     * Creates coalescer which delivers payloads with
+     * {@link #invokeConsumerWithRetries(MessageConsumer, Object, MessageHeaders)}. Failed deliveries are sent to
+     * {@link #getDeadLetterTopic()}, if it's set.
+     *
+     * @param consumer consumer having {@link MessageConsumer#getCoalescingPolicy()}
+     * @return coalescer
+     */
+    protected MessageCoalescer createCoalescer(MessageConsumer consumer) {
+        return new MessageCoalescer(consumer.getCoalescingPolicy(), (payload, headers) -> {
+            // the original message is gone, so re-create it for the DLQ (if any)
+            Message<Map<String, Object>> coalescedMessage = MessageBuilder
+                    .withPayload(objectMapper.convertValue(payload, new TypeReference<Map<String, Object>>() {
+                    }))
+                    .copyHeaders(headers)
+                    .build();
+
+            handleConsumerFailure(coalescedMessage, consumer, () ->
+                    invokeConsumerWithRetries(consumer, payload, headers));
+        }, getCoalescingScheduler());
+    }
+
+    /**
+     * Returns scheduler delivering coalesced messages when their windows expire.
+     *
+     * @return default implementation returns a single daemon thread, shut down by {@link #closeCoalescers()}
+     */
+    protected ScheduledExecutorService getCoalescingScheduler() {
+        return coalescingScheduler.get();
+    }
+
+    /**
+     * Holds the message's {@link SharedAcknowledgment} (if any) while the coalescer buffers the message, so the message
+     * is only acknowledged once the coalescer has delivered it.
+     */
+    private void offerToCoalescer(MessageConsumer consumer, Object payload, MessageHeaders headers) {
+        SharedAcknowledgment acknowledgment = null;
+
+        if (headers.get(KafkaHeaders.ACKNOWLEDGMENT) instanceof SharedAcknowledgment shared) {
+            acknowledgment = shared;
+            acknowledgment.retain();
+        }
+
+        boolean buffered = false;
+        try {
+            buffered = consumerCoalescers.computeIfAbsent(consumer, this::createCoalescer)
+                    .offer(payload, headers);
+        } finally {
+            if (!buffered && (acknowledgment != null)) {
+                acknowledgment.acknowledge();
+            }
+        }
+    }
+
+    private static boolean hasCoalescingConsumer(List<MessageConsumer> consumers) {
+        for (MessageConsumer consumer : consumers) {
+            if (consumer.getCoalescingPolicy() != null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The message has been handled already, so acknowledgment failures (for example, because the container has
+     * stopped) are only logged - such messages will be redelivered.
+     */
+    private static void acknowledge(@Nullable Acknowledgment acknowledgment) {
+        if (acknowledgment == null) {
+            return;
+        }
+
+        try {
+            acknowledgment.acknowledge();
+        } catch (RuntimeException e) {
+            log.warn("Failed to acknowledge message: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Delivers messages buffered by {@link MessageCoalescer}s (on the current thread) and stops their scheduler. Called
+     * when the listener bean is destroyed, which happens after the bindings have been stopped.
+     */
+    @PreDestroy
+    public void closeCoalescers() {
+        if (consumerCoalescers.isEmpty()) {
+            return;
+        }
+
+        consumerCoalescers.values().forEach(MessageCoalescer::close);
+        coalescingScheduler.get().shutdownNow();
+    }
+
+    /**
+     * Calls {@link #consumeMessage(Message, MessageConsumer)}. If it fails, publishes the message to
+     * {@link #getDeadLetterTopic()} (if it's set) instead of rethrowing the exception.
+     */
+    private void consumeMessageOrDeadLetter(Message<Map<String, Object>> message, MessageConsumer consumer) {
+        handleConsumerFailure(message, consumer, () -> consumeMessage(message, consumer));
+    }
+
+    /**
+     * Runs the given action. If it fails, publishes the message to {@link #getDeadLetterTopic()} (if it's set) instead
+     * of rethrowing the exception. Dead letters are published synchronously: if that fails too, the original exception
+     * is rethrown (with the publishing failure suppressed), so the message isn't acknowledged and gets redelivered.
+     */
+    private void handleConsumerFailure(Message<Map<String, Object>> message, MessageConsumer consumer,
+            Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            String deadLetterTopic = getDeadLetterTopic();
+
+            if ((deadLetterTopic == null) || (deadLetterPublisherService == null)) {
+                throw e;
+            }
+
+            int attempts = (e instanceof NonRetryableMessageException nonRetryable)
+                    ? nonRetryable.getAttempts()
+                    : consumer.getRetryPolicy().getMaxAttempts();
+
+            log.error("Message consumption failed after {} attempt(s), publishing to DLQ '{}'. Reason: {}. "
+                    + "Payload: {}.", attempts, deadLetterTopic, e.getMessage(), message.getPayload());
+
+            try {
+                deadLetterPublisherService.publish(deadLetterTopic, message, DeadLetterMetadata.builder()
+                        .listenerId(getId())
+                        .consumerClass(consumer.getClass().getName())
+                        // original exception is more informative than the wrapper
+                        .exception((e instanceof NonRetryableMessageException) && (e.getCause() != null)
+                                ? e.getCause()
+                                : e)
+                        .attempts(attempts)
+                        .build());
+            } catch (RuntimeException dlqException) {
+                log.error("Failed to publish to DLQ '{}', rethrowing consumer failure: {}", deadLetterTopic,
+                        dlqException.getMessage(), dlqException);
+                e.addSuppressed(dlqException);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Calls {@link #invokeConsumer(MessageConsumer, Object, MessageHeaders)} until it succeeds or
+     * {@link MessageConsumer#getRetryPolicy()} is exhausted. Retries happen on the current thread, therefore
+     * {@link RetryPolicy#getMaxBackoff()} multiplied by {@link RetryPolicy#getMaxAttempts()} must be well below Kafka's
+     * {@code max.poll.interval.ms} divided by {@code max.poll.records}.
+     *
+     * @param consumer message consumer
+     * @param payload  deserialized payload
+     * @param headers  message headers
+     * @throws NonRetryableMessageException consumer failed with a non-retryable exception
+     * @throws RuntimeException             consumer's last attempt failed with a retryable exception (so the binder may
+     *                                      redeliver the message)
+     */
+    protected void invokeConsumerWithRetries(MessageConsumer consumer, Object payload, MessageHeaders headers) {
+        RetryPolicy retryPolicy = consumer.getRetryPolicy();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                invokeConsumer(consumer, payload, headers);
+                return;
+            } catch (RuntimeException e) {
+                if (!retryPolicy.isRetryable(e)) {
+                    throw new NonRetryableMessageException("Consumer [" + consumer.getClass().getName()
+                            + "] failed with non-retryable exception: " + e.getMessage(), e, attempt);
+                }
+
+                if (attempt >= retryPolicy.getMaxAttempts()) {
+                    throw e;
+                }
+
+                Duration backoff = retryPolicy.getBackoff(attempt);
+                log.warn("Consumer [{}] attempt {}/{} failed, retrying in {}: {}", consumer.getClass().getName(),
+                        attempt, retryPolicy.getMaxAttempts(), backoff, e.getMessage());
+
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls {@link MessageConsumer#accept(Object, Object)} within the consumer's {@link ConsumerBulkhead}. If the
+     * bulkhead doesn't let the message in within {@link #getThrottlePauseThreshold()}, the binding is paused for
+     * {@link #getThrottlePauseDuration()} (no more records are fetched, but the broker keeps seeing this consumer
+     * alive), once per such period - so the binding isn't paused and resumed for each throttled message. Records
+     * fetched before the pause still wait for their consumer (up to {@link #getMaxThrottleWait()} each).
+     *
+     * @param consumer message consumer
+     * @param payload  deserialized payload
+     * @param headers  message headers
+     * @throws IllegalStateException bulkhead didn't let the message in within {@link #getMaxThrottleWait()} (so the
+     *                               binder should redeliver it)
+     */
+    @SuppressWarnings("unchecked")
+    protected void invokeConsumer(MessageConsumer consumer, Object payload, MessageHeaders headers) {
+        ConsumerBulkhead bulkhead = consumerBulkheads.computeIfAbsent(consumer, ConsumerBulkhead::of);
+
+        if (bulkhead.isUnlimited()) {
+            consumer.accept(payload, headers);
+            return;
+        }
+
+        enterBulkhead(consumer, bulkhead);
+        try {
+            consumer.accept(payload, headers);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Defines when the binding is paused because consumers are too slow - in order to avoid rebalancing caused by
+     * exceeding Kafka's {@code max.poll.interval.ms}. Requires {@link BindingStateService}.
+     *
+     * @return default implementation returns {@code null} which means no backpressure
+     */
+    @Nullable
+    protected BackpressurePolicy getBackpressurePolicy() {
+        return null;
+    }
+
+    /**
+     * Returns backpressure statistics (average processing time, messages in flight).
+     *
+     * @return backpressure controller, {@link BackpressureController#DISABLED} if there's no
+     *         {@link #getBackpressurePolicy()}
+     */
+    public BackpressureController getBackpressureController() {
+        return backpressureController.get();
+    }
+
+    /**
+     * If a throttled message waits for its consumer longer than this, the binding is paused.
+     *
+     * @return default implementation returns 100 milliseconds
+     */
+    protected Duration getThrottlePauseThreshold() {
+        return Duration.ofMillis(100);
+    }
+
+    /**
+     * How long the binding stays paused once a message has been throttled. Throttled messages don't pause it again
+     * until this time has passed.
+     *
+     * @return default implementation returns 1 second
+     */
+    protected Duration getThrottlePauseDuration() {
+        return Duration.ofSeconds(1);
+    }
+
+    /**
+     * Max. time a throttled message waits for its consumer. Must be well below Kafka's {@code max.poll.interval.ms}
+     * divided by {@code max.poll.records}.
+     *
+     * @return default implementation returns 5 seconds
+     */
+    protected Duration getMaxThrottleWait() {
+        return Duration.ofSeconds(5);
+    }
+
+    /**
+     * Waits for the bulkhead permission, pausing the binding if it takes longer than
+     * {@link #getThrottlePauseThreshold()}.
+     */
+    private void enterBulkhead(MessageConsumer<?> consumer, ConsumerBulkhead bulkhead) {
+        try {
+            if (bulkhead.tryAcquire(getThrottlePauseThreshold())) {
+                return;
+            }
+
+            pauseOnThrottling(consumer);
+
+            if (!bulkhead.tryAcquire(getMaxThrottleWait())) {
+                throw new IllegalStateException("Consumer [" + consumer.getClass().getName()
+                        + "] limits exceeded for longer than " + getMaxThrottleWait());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for consumer ["
+                    + consumer.getClass().getName() + "]", e);
+        }
+    }
+
+    /**
+     * Pauses the binding for {@link #getThrottlePauseDuration()} unless it's been paused by another throttled message
+     * within this period.
+     */
+    private void pauseOnThrottling(MessageConsumer<?> consumer) {
+        long now = System.nanoTime();
+        long pauseEnd = throttlePauseEndNanos.get();
+        Duration pauseDuration = getThrottlePauseDuration();
+
+        // compareAndSet() lets only one of concurrently throttled messages pause the binding
+        if ((now - pauseEnd < 0) || !throttlePauseEndNanos.compareAndSet(pauseEnd, now + pauseDuration.toNanos())) {
+            return;
+        }
+
+        log.info("Consumer [{}] limits exceeded, pausing binding '{}' for {}", consumer.getClass().getName(),
+                getBindingName(), pauseDuration);
+        Optional.ofNullable(bindingStateService).ifPresent(service ->
+                service.pauseFor(getBindingName(), pauseDuration));
+    }
+
+    private void pauseOnBackpressure(BackpressureController backpressure) {
+        if (bindingStateService == null) {
+            log.warn("Listener [{}] consumers are too slow, but binding '{}' can't be paused: no {}",
+                    getClass().getName(), getBindingName(), BindingStateService.class.getSimpleName());
+            return;
+        }
+
+        log.info("Listener [{}] consumers are slower than {} per message, pausing binding '{}' for {}",
+                getClass().getName(), backpressure.getPolicy().getLatencyThreshold(), getBindingName(),
+                backpressure.getPolicy().getPauseDuration());
+        bindingStateService.pauseFor(getBindingName(), backpressure.getPolicy().getPauseDuration());
     }
 
     /**
@@ -184,23 +1102,46 @@ public abstract class DispatchingMessageListener implements Consumer<Message<Map
     /**
      * Returns class to deserialize message payload to.
      * <p>
-     * WARNING: this method assumes that the class in question is the FIRST generic type in {@link MessageConsumer}.
+     * Prefers {@link MessageConsumer#getPayloadClass()}. Otherwise, assumes that the class in question is the FIRST
+     * generic type in {@link MessageConsumer}. Cached in {@link #getMessageConsumerIndex()}, if it's set.
      *
      * @return payload class
      * @throws NoSuchElementException class not found
      */
     protected Class<?> getExpectedPayloadClass(MessageConsumer<?> messageConsumer) {
-        Class<?> payloadClass = ReflectionUtils
-                .findFirstMaterializedGenericType(messageConsumer.getClass(), MessageConsumer.class)
-                .orElseThrow(() -> new NoSuchElementException("Failed to guess message payload class for "
-                        + messageConsumer.getClass().getName()));
+        return (messageConsumerIndex == null)
+                ? MessageConsumerIndex.resolvePayloadClass(messageConsumer)
+                : messageConsumerIndex.getPayloadClass(messageConsumer);
+    }
+
+    /**
+     * Acknowledges the original message when both the listener and all coalescers buffering the message have
+     * acknowledged it.
+     */
+    private static final class SharedAcknowledgment implements Acknowledgment {
+
+        private final Acknowledgment delegate;
+
+        /**
+         * The listener holds the acknowledgment until it has dispatched the message.
+         */
+        private final AtomicInteger holders = new AtomicInteger(1);
 
-        if (log.isTraceEnabled()) {
-            log.trace("Message consumer [{}} expects payload class [{}]", messageConsumer.getClass().getName(),
-                    payloadClass.getName());
+        private SharedAcknowledgment(Acknowledgment delegate) {
+            this.delegate = delegate;
+        }
+
+        private void retain() {
+            holders.incrementAndGet();
+        }
+
+        @Override
+        public void acknowledge() {
+            if (holders.decrementAndGet() == 0) {
+                delegate.acknowledge();
+            }
         }
 
-        return payloadClass;
     }
 
 }
@@ -0,0 +1,106 @@
+package guru.nicks.commons.messaging.listener;
+
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
+
+/**
+ * Tracks message lag (as an exponentially weighted moving average) and tells
+ * {@link TypeBasedDispatchingMessageListener} which messages to shed according to {@link LoadSheddingPolicy}. Shedding
+ * starts when the lag exceeds {@link LoadSheddingPolicy#getLagThreshold()} and stops when it falls below
+ * {@link LoadSheddingPolicy#getRecoveryLagThreshold()}, so the listener doesn't flip between the modes on each message.
+ * Thread-safe and lock-free.
+ */
+@Slf4j
+public class LoadSheddingController {
+
+    /**
+     * Used for listeners having no {@link LoadSheddingPolicy} - to avoid storing {@code null}.
+     */
+    public static final LoadSheddingController DISABLED = new LoadSheddingController(null);
+
+    @Getter
+    @Nullable
+    private final LoadSheddingPolicy policy;
+
+    private final long lagThresholdMillis;
+    private final long recoveryLagThresholdMillis;
+
+    /**
+     * Smoothed lag. Races between threads updating it may lose a sample, which is fine for an average.
+     */
+    private volatile double averageLagMillis;
+
+    @Getter
+    private volatile boolean shedding;
+
+    public LoadSheddingController(@Nullable LoadSheddingPolicy policy) {
+        this.policy = policy;
+
+        if (policy == null) {
+            lagThresholdMillis = Long.MAX_VALUE;
+            recoveryLagThresholdMillis = Long.MAX_VALUE;
+            return;
+        }
+
+        checkNotNull(policy.getLagThreshold(), "lagThreshold");
+        lagThresholdMillis = policy.getLagThreshold().toMillis();
+        recoveryLagThresholdMillis = (policy.getRecoveryLagThreshold() == null)
+                ? lagThresholdMillis / 2
+                : policy.getRecoveryLagThreshold().toMillis();
+
+        if (recoveryLagThresholdMillis > lagThresholdMillis) {
+            throw new IllegalArgumentException("recoveryLagThreshold must not be greater than lagThreshold");
+        }
+    }
+
+    public boolean isEnabled() {
+        return policy != null;
+    }
+
+    public double getAverageLagMillis() {
+        return averageLagMillis;
+    }
+
+    /**
+     * Records message lag. Must be called for every message, including shed ones - that's how the listener notices it
+     * has caught up.
+     *
+     * @param lagMillis time between message creation and now
+     */
+    public void onMessage(long lagMillis) {
+        if (policy == null) {
+            return;
+        }
+
+        double alpha = policy.getSmoothingFactor();
+        double average = averageLagMillis;
+        average = (average == 0)
+                ? lagMillis
+                : (alpha * lagMillis + (1 - alpha) * average);
+        averageLagMillis = average;
+
+        if (!shedding && (average > lagThresholdMillis)) {
+            shedding = true;
+            log.warn("Message lag of {} ms exceeds {} ms, shedding message types {}", Math.round(average),
+                    lagThresholdMillis, policy.getSheddableMessageTypes());
+        } else if (shedding && (average < recoveryLagThresholdMillis)) {
+            shedding = false;
+            log.info("Message lag of {} ms is below {} ms, stopped shedding", Math.round(average),
+                    recoveryLagThresholdMillis);
+        }
+    }
+
+    /**
+     * Checks whether the message should be shed.
+     *
+     * @param messageType message type
+     * @return {@code true} if the listener is overloaded, and the message type is sheddable
+     */
+    public boolean shouldShed(String messageType) {
+        return shedding && (policy != null) && policy.getSheddableMessageTypes().contains(messageType);
+    }
+
+}
@@ -0,0 +1,53 @@
+package guru.nicks.commons.messaging.listener;
+
+import jakarta.annotation.Nullable;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Defines when {@link TypeBasedDispatchingMessageListener} stops processing low-value message types because it has
+ * fallen too far behind - so that important messages catch up faster.
+ *
+ * @see LoadSheddingController
+ */
+@Value
+@Builder(toBuilder = true)
+public class LoadSheddingPolicy {
+
+    /**
+     * If the smoothed message lag (time between message creation and its dispatching) exceeds this, shedding starts.
+     */
+    Duration lagThreshold;
+
+    /**
+     * Once shedding, it stops only when the smoothed lag falls below this. Must not be greater than
+     * {@link #getLagThreshold()}; {@code null} means half of it.
+     */
+    @Nullable
+    Duration recoveryLagThreshold;
+
+    /**
+     * Message types (as in {@link guru.nicks.commons.messaging.MessageType#getMessageBrokerValue()}) that may be shed.
+     */
+    @Singular
+    Set<String> sheddableMessageTypes;
+
+    /**
+     * If set, shed messages are republished to this topic (to be processed later, for example by another listener)
+     * instead of being dropped. Requires a {@link guru.nicks.commons.messaging.service.MessagePublisherService} in the
+     * listener, otherwise the messages are dropped.
+     */
+    @Nullable
+    String deferredTopic;
+
+    /**
+     * Weight of the latest sample in the exponentially weighted moving average of message lag, between 0 and 1.
+     */
+    @Builder.Default
+    double smoothingFactor = 0.2;
+
+}
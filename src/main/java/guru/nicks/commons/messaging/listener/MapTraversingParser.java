@@ -0,0 +1,413 @@
+package guru.nicks.commons.messaging.listener;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.core.base.ParserMinimalBase;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Nullable;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Exposes a raw payload (maps, collections, and JSON scalars, as produced by JSON deserialization) as JSON tokens, so
+ * that it can be deserialized into a payload class directly - unlike {@link ObjectMapper#convertValue(Object, Class)}
+ * which first serializes the whole map into a token buffer. Values of other types are exposed as
+ * {@link JsonToken#VALUE_EMBEDDED_OBJECT}.
+ */
+class MapTraversingParser extends ParserMinimalBase {
+
+    private final Object root;
+    private final Context rootContext = new Context(null, JsonStreamContext.TYPE_ROOT, null);
+
+    private ObjectCodec codec;
+
+    /**
+     * Innermost object or array, {@code null} outside the root value.
+     */
+    @Nullable
+    private Context context;
+
+    /**
+     * Value of the current scalar token.
+     */
+    @Nullable
+    private Object currentValue;
+
+    private boolean rootStarted;
+    private boolean closed;
+
+    MapTraversingParser(ObjectCodec codec, Object root) {
+        this.codec = codec;
+        this.root = root;
+    }
+
+    @Override
+    public JsonToken nextToken() {
+        if (closed) {
+            return (_currToken = null);
+        }
+
+        if (context == null) {
+            if (rootStarted) {
+                return (_currToken = null);
+            }
+
+            rootStarted = true;
+            return (_currToken = startValue(root));
+        }
+
+        if (context.inObject()) {
+            if (context.fieldValuePending) {
+                context.fieldValuePending = false;
+                return (_currToken = startValue(context.fieldValue));
+            }
+
+            if (context.values.hasNext()) {
+                var entry = (Map.Entry<?, ?>) context.values.next();
+                context.advance();
+                context.fieldName = String.valueOf(entry.getKey());
+                context.fieldValue = entry.getValue();
+                context.fieldValuePending = true;
+                return (_currToken = JsonToken.FIELD_NAME);
+            }
+
+            context = context.parent;
+            return (_currToken = JsonToken.END_OBJECT);
+        }
+
+        if (context.values.hasNext()) {
+            context.advance();
+            return (_currToken = startValue(context.values.next()));
+        }
+
+        context = context.parent;
+        return (_currToken = JsonToken.END_ARRAY);
+    }
+
+    @Override
+    public String getCurrentName() {
+        if (context == null) {
+            return null;
+        }
+
+        // name of the object or array being started belongs to the enclosing object
+        if ((_currToken == JsonToken.START_OBJECT) || (_currToken == JsonToken.START_ARRAY)) {
+            return (context.parent == null)
+                    ? null
+                    : context.parent.fieldName;
+        }
+
+        return context.fieldName;
+    }
+
+    @Override
+    public void overrideCurrentName(String name) {
+        if (context != null) {
+            context.fieldName = name;
+        }
+    }
+
+    @Override
+    public JsonStreamContext getParsingContext() {
+        return (context == null)
+                ? rootContext
+                : context;
+    }
+
+    @Override
+    public String getText() {
+        if (_currToken == null) {
+            return null;
+        }
+
+        return switch (_currToken) {
+            case FIELD_NAME -> context.fieldName;
+            case VALUE_STRING, VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT, VALUE_EMBEDDED_OBJECT ->
+                    String.valueOf(currentValue);
+            default -> _currToken.asString();
+        };
+    }
+
+    @Override
+    public char[] getTextCharacters() {
+        String text = getText();
+
+        return (text == null)
+                ? null
+                : text.toCharArray();
+    }
+
+    @Override
+    public boolean hasTextCharacters() {
+        return false;
+    }
+
+    @Override
+    public int getTextLength() {
+        String text = getText();
+
+        return (text == null)
+                ? 0
+                : text.length();
+    }
+
+    @Override
+    public int getTextOffset() {
+        return 0;
+    }
+
+    @Override
+    public Number getNumberValue() throws IOException {
+        if (currentValue instanceof Number number) {
+            return number;
+        }
+
+        throw _constructError("Current token (" + _currToken + ") is not numeric");
+    }
+
+    @Override
+    public NumberType getNumberType() {
+        // instanceof chains are faster than pattern switches here
+        if (!(currentValue instanceof Number number)) {
+            return null;
+        }
+
+        if ((number instanceof Integer) || (number instanceof Short) || (number instanceof Byte)) {
+            return NumberType.INT;
+        }
+
+        if (number instanceof Long) {
+            return NumberType.LONG;
+        }
+
+        if (number instanceof BigInteger) {
+            return NumberType.BIG_INTEGER;
+        }
+
+        if (number instanceof Float) {
+            return NumberType.FLOAT;
+        }
+
+        return (number instanceof BigDecimal)
+                ? NumberType.BIG_DECIMAL
+                : NumberType.DOUBLE;
+    }
+
+    @Override
+    public int getIntValue() throws IOException {
+        Number number = getNumberValue();
+        boolean overflow = (number instanceof BigInteger bigInteger)
+                ? (bigInteger.bitLength() > 31)
+                : ((number instanceof Long) && (number.longValue() != number.intValue()));
+
+        if (overflow) {
+            reportOverflowInt();
+        }
+
+        return number.intValue();
+    }
+
+    @Override
+    public long getLongValue() throws IOException {
+        Number number = getNumberValue();
+
+        if ((number instanceof BigInteger bigInteger) && (bigInteger.bitLength() > 63)) {
+            reportOverflowLong();
+        }
+
+        return number.longValue();
+    }
+
+    @Override
+    public BigInteger getBigIntegerValue() throws IOException {
+        Number number = getNumberValue();
+
+        if (number instanceof BigInteger bigInteger) {
+            return bigInteger;
+        }
+
+        return (number instanceof BigDecimal bigDecimal)
+                ? bigDecimal.toBigInteger()
+                : BigInteger.valueOf(number.longValue());
+    }
+
+    @Override
+    public float getFloatValue() throws IOException {
+        return getNumberValue().floatValue();
+    }
+
+    @Override
+    public double getDoubleValue() throws IOException {
+        return getNumberValue().doubleValue();
+    }
+
+    @Override
+    public BigDecimal getDecimalValue() throws IOException {
+        Number number = getNumberValue();
+
+        if (number instanceof BigDecimal bigDecimal) {
+            return bigDecimal;
+        }
+
+        if (number instanceof BigInteger bigInteger) {
+            return new BigDecimal(bigInteger);
+        }
+
+        return isIntegral(number)
+                ? BigDecimal.valueOf(number.longValue())
+                : BigDecimal.valueOf(number.doubleValue());
+    }
+
+    @Override
+    public Object getEmbeddedObject() {
+        return (_currToken == JsonToken.VALUE_EMBEDDED_OBJECT)
+                ? currentValue
+                : null;
+    }
+
+    @Override
+    public byte[] getBinaryValue(Base64Variant b64variant) throws IOException {
+        if (currentValue instanceof byte[] bytes) {
+            return bytes;
+        }
+
+        if (_currToken != JsonToken.VALUE_STRING) {
+            throw _constructError("Current token (" + _currToken + ") is not binary");
+        }
+
+        try {
+            return b64variant.decode((String) currentValue);
+        } catch (IllegalArgumentException e) {
+            throw _constructError(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public ObjectCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public void setCodec(ObjectCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public Version version() {
+        return Version.unknownVersion();
+    }
+
+    @Override
+    public JsonLocation getCurrentLocation() {
+        return JsonLocation.NA;
+    }
+
+    @Override
+    public JsonLocation getTokenLocation() {
+        return JsonLocation.NA;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        context = null;
+        currentValue = null;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    protected void _handleEOF() {
+        // tokens never end prematurely
+    }
+
+    private JsonToken startValue(@Nullable Object value) {
+        currentValue = value;
+
+        if (value instanceof String) {
+            return JsonToken.VALUE_STRING;
+        }
+
+        if (value instanceof Number number) {
+            return isIntegral(number)
+                    ? JsonToken.VALUE_NUMBER_INT
+                    : JsonToken.VALUE_NUMBER_FLOAT;
+        }
+
+        if (value instanceof Boolean bool) {
+            return bool
+                    ? JsonToken.VALUE_TRUE
+                    : JsonToken.VALUE_FALSE;
+        }
+
+        if (value == null) {
+            return JsonToken.VALUE_NULL;
+        }
+
+        if (value instanceof Map<?, ?> map) {
+            context = new Context(context, JsonStreamContext.TYPE_OBJECT, map.entrySet().iterator());
+            return JsonToken.START_OBJECT;
+        }
+
+        if (value instanceof Collection<?> collection) {
+            context = new Context(context, JsonStreamContext.TYPE_ARRAY, collection.iterator());
+            return JsonToken.START_ARRAY;
+        }
+
+        return JsonToken.VALUE_EMBEDDED_OBJECT;
+    }
+
+    private static boolean isIntegral(Number number) {
+        return (number instanceof Integer) || (number instanceof Long) || (number instanceof BigInteger)
+                || (number instanceof Short) || (number instanceof Byte);
+    }
+
+    private static final class Context extends JsonStreamContext {
+
+        @Nullable
+        private final Context parent;
+
+        /**
+         * Map entries for objects, elements for arrays.
+         */
+        private final Iterator<?> values;
+
+        private String fieldName;
+        private Object fieldValue;
+        private boolean fieldValuePending;
+
+        private Context(@Nullable Context parent, int type, Iterator<?> values) {
+            super(type, -1);
+            this.parent = parent;
+            this.values = values;
+        }
+
+        private void advance() {
+            _index++;
+        }
+
+        @Override
+        public JsonStreamContext getParent() {
+            return parent;
+        }
+
+        @Override
+        public String getCurrentName() {
+            return fieldName;
+        }
+
+    }
+
+}
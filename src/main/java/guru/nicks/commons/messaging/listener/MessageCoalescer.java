@@ -0,0 +1,321 @@
+package guru.nicks.commons.messaging.listener;
+
+import com.google.common.util.concurrent.Striped;
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.MessageHeaders;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+
+/**
+ * Buffers payloads per {@link KafkaHeaders#RECEIVED_KEY} according to {@link CoalescingPolicy} and delivers only the
+ * latest (or merged) payload of each key.
+ * <p>
+ * Offsets must only be committed after delivery, otherwise buffered messages would be lost if the app stops. Therefore,
+ * only messages having {@link KafkaHeaders#ACKNOWLEDGMENT} (i.e. consumed by a binding with {@code ackMode: MANUAL} and
+ * out-of-order commits enabled, i.e. {@code asyncAcks}) are buffered; they're acknowledged after the delivery succeeds.
+ * Messages without an acknowledgment or without a key, and messages of new keys when there are already
+ * {@link CoalescingPolicy#getMaxKeys()} keys buffered, are delivered immediately, on the current thread - and
+ * acknowledging them is up to the caller (see {@link #offer(Object, MessageHeaders)}).
+ * <p>
+ * If a buffered delivery fails (that is, the consumer failed and the message couldn't be dead-lettered either), its
+ * messages are not acknowledged but put back into the buffer of their key - merged with messages that have arrived
+ * meanwhile - and delivered again when the next window expires. If the app stops before that, they're redelivered by
+ * Kafka after a restart or rebalancing.
+ * <p>
+ * Deliveries of each key are serialized (they happen both on the listener thread and on the scheduler thread), so newer
+ * payloads of a key never overtake older ones. Deliveries of different keys run concurrently, subject to the consumer's
+ * own limits.
+ */
+@Slf4j
+public class MessageCoalescer implements AutoCloseable {
+
+    @Getter
+    private final CoalescingPolicy<Object> policy;
+
+    /**
+     * Called with the coalesced payload and the headers of the latest message. Expected to throw an exception if the
+     * payload hasn't been processed.
+     */
+    private final BiConsumer<Object, MessageHeaders> delivery;
+
+    /**
+     * Delivers buffers when their windows expire.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Message key to pending messages. Guarded by itself.
+     */
+    private final Map<Object, Buffer> buffers = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes deliveries per key. Locks are created lazily and garbage-collected when no longer used.
+     */
+    private final Striped<Lock> deliveryLocks;
+
+    private volatile boolean missingAcknowledgmentReported;
+    private volatile boolean maxKeysReported;
+    private volatile boolean closed;
+
+    @SuppressWarnings("unchecked")
+    public MessageCoalescer(CoalescingPolicy<?> policy, BiConsumer<Object, MessageHeaders> delivery,
+            ScheduledExecutorService scheduler) {
+        this.policy = (CoalescingPolicy<Object>) policy;
+        this.delivery = delivery;
+        this.scheduler = scheduler;
+        deliveryLocks = Striped.lazyWeakLock(Math.max(policy.getMaxKeys(), 1));
+    }
+
+    /**
+     * Buffers the payload or, if it can't be buffered (see class description), delivers it immediately (on the current
+     * thread).
+     *
+     * @param payload deserialized payload
+     * @param headers message headers
+     * @return {@code true} if the message has been buffered, then its {@link KafkaHeaders#ACKNOWLEDGMENT} is
+     *         acknowledged after delivery; {@code false} if it has been delivered immediately, then it's not
+     *         acknowledged by the coalescer
+     */
+    public boolean offer(Object payload, MessageHeaders headers) {
+        Object key = toMapKey(headers.get(KafkaHeaders.RECEIVED_KEY));
+        Acknowledgment acknowledgment = headers.get(KafkaHeaders.ACKNOWLEDGMENT, Acknowledgment.class);
+
+        if ((key == null) || (acknowledgment == null) || closed) {
+            if ((key != null) && (acknowledgment == null) && !missingAcknowledgmentReported) {
+                missingAcknowledgmentReported = true;
+                log.warn("Messages have no '{}' header (binding doesn't use manual acknowledgments), delivering them "
+                        + "without coalescing", KafkaHeaders.ACKNOWLEDGMENT);
+            }
+
+            deliver(key, payload, headers);
+            return false;
+        }
+
+        Buffer buffer;
+        boolean ready = false;
+
+        // buffering is cheap, so a single lock is fine
+        synchronized (buffers) {
+            buffer = buffers.get(key);
+
+            if (buffer != null) {
+                buffer.add(payload, headers, policy.getMerger());
+            } else if (buffers.size() < policy.getMaxKeys()) {
+                buffer = new Buffer(payload, headers);
+                buffers.put(key, buffer);
+                scheduleFlush(key, buffer);
+            }
+
+            if (buffer != null) {
+                buffer.acknowledgments.add(acknowledgment);
+
+                if ((policy.getMaxMessages() > 0) && (buffer.count >= policy.getMaxMessages())) {
+                    ready = buffers.remove(key, buffer);
+                }
+            }
+        }
+
+        if (buffer == null) {
+            if (!maxKeysReported) {
+                maxKeysReported = true;
+                log.warn("{} keys are already buffered, delivering messages of new keys without coalescing",
+                        policy.getMaxKeys());
+            }
+
+            deliver(key, payload, headers);
+            return false;
+        }
+
+        if (ready) {
+            // deliver outside the lock
+            deliverBuffered(key, buffer);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return number of keys having buffered messages
+     */
+    public int getPendingKeyCount() {
+        return buffers.size();
+    }
+
+    /**
+     * Delivers all buffered messages on the current thread. Messages offered afterwards are delivered immediately.
+     * Buffers whose delivery fails remain unacknowledged, so they're redelivered by Kafka.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        List<Map.Entry<Object, Buffer>> remaining;
+
+        synchronized (buffers) {
+            remaining = new ArrayList<>(buffers.entrySet());
+            buffers.clear();
+        }
+
+        for (var entry : remaining) {
+            Buffer buffer = entry.getValue();
+
+            try {
+                deliver(entry.getKey(), buffer.payload, buffer.headers);
+                acknowledge(buffer.acknowledgments);
+            } catch (RuntimeException e) {
+                log.error("Failed to deliver {} coalesced message(s) of key '{}' on close, not acknowledging them: {}",
+                        buffer.count, entry.getKey(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Delivers the buffer unless it has already been delivered because of {@link CoalescingPolicy#getMaxMessages()}
+     * (then a newer buffer of the same key may exist, it has its own flush scheduled) or by {@link #close()}.
+     */
+    private void flush(Object key, Buffer buffer) {
+        boolean removed;
+
+        synchronized (buffers) {
+            removed = buffers.remove(key, buffer);
+        }
+
+        if (removed) {
+            deliverBuffered(key, buffer);
+        }
+    }
+
+    /**
+     * Delivers and acknowledges the buffer; on failure, puts it back.
+     */
+    private void deliverBuffered(Object key, Buffer buffer) {
+        try {
+            deliver(key, buffer.payload, buffer.headers);
+        } catch (RuntimeException e) {
+            log.error("Failed to deliver {} coalesced message(s), will retry in {}: {}", buffer.count,
+                    policy.getWindow(), e.getMessage(), e);
+            rebuffer(key, buffer);
+            return;
+        }
+
+        acknowledge(buffer.acknowledgments);
+    }
+
+    /**
+     * Puts the failed buffer back, before messages of the same key that have arrived meanwhile (if any).
+     */
+    private void rebuffer(Object key, Buffer failedBuffer) {
+        if (closed) {
+            return;
+        }
+
+        synchronized (buffers) {
+            Buffer newerBuffer = buffers.get(key);
+
+            if (newerBuffer == null) {
+                buffers.put(key, failedBuffer);
+                scheduleFlush(key, failedBuffer);
+            } else {
+                newerBuffer.prepend(failedBuffer, policy.getMerger());
+            }
+        }
+    }
+
+    private void scheduleFlush(Object key, Buffer buffer) {
+        try {
+            scheduler.schedule(() -> flush(key, buffer), policy.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // scheduler has been shut down - the buffer will be delivered by close()
+            log.debug("Can't schedule coalesced message delivery: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Messages without a key have no order to preserve, and they're delivered on the listener thread only.
+     */
+    private void deliver(@Nullable Object key, Object payload, MessageHeaders headers) {
+        if (key == null) {
+            delivery.accept(payload, headers);
+            return;
+        }
+
+        Lock lock = deliveryLocks.get(key);
+        lock.lock();
+
+        try {
+            delivery.accept(payload, headers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The messages have been processed already, so acknowledgment failures (for example, because the container has
+     * stopped) are only logged - such messages will be redelivered.
+     */
+    private static void acknowledge(List<Acknowledgment> acknowledgments) {
+        try {
+            acknowledgments.forEach(Acknowledgment::acknowledge);
+        } catch (RuntimeException e) {
+            log.warn("Failed to acknowledge coalesced messages: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Converts message key to something having proper {@link Object#equals(Object)} and {@link Object#hashCode()}.
+     */
+    @Nullable
+    static Object toMapKey(@Nullable Object messageKey) {
+        return (messageKey instanceof byte[] bytes)
+                ? ByteBuffer.wrap(bytes)
+                : messageKey;
+    }
+
+    /**
+     * Compared by identity, so a scheduled flush never delivers a newer buffer of the same key.
+     */
+    private static class Buffer {
+
+        private final List<Acknowledgment> acknowledgments = new ArrayList<>();
+        private Object payload;
+        private MessageHeaders headers;
+        private int count = 1;
+
+        private Buffer(Object payload, MessageHeaders headers) {
+            this.payload = payload;
+            this.headers = headers;
+        }
+
+        private void add(Object newerPayload, MessageHeaders newerHeaders, @Nullable BinaryOperator<Object> merger) {
+            payload = (merger == null)
+                    ? newerPayload
+                    : merger.apply(payload, newerPayload);
+            headers = newerHeaders;
+            count++;
+        }
+
+        private void prepend(Buffer older, @Nullable BinaryOperator<Object> merger) {
+            if (merger != null) {
+                payload = merger.apply(older.payload, payload);
+            }
+
+            acknowledgments.addAll(0, older.acknowledgments);
+            count += older.count;
+        }
+
+    }
+
+}
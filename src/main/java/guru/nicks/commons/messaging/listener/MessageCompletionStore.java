@@ -0,0 +1,39 @@
+package guru.nicks.commons.messaging.listener;
+
+/**
+ * Remembers which consumers have already processed which messages - for fan-out mode (see
+ * {@link TypeBasedDispatchingMessageListener#isFanOutEnabled()}), where redelivered messages must only be passed to
+ * consumers that failed to process them.
+ * <p>
+ * The default store ({@link CaffeineMessageCompletionStore}) is local to the app instance: if a partition is reassigned
+ * to another instance, redelivered messages are passed to all consumers there. To avoid that, define a bean backed by
+ * shared storage - listeners pick it up (see
+ * {@link DispatchingMessageListener#setMessageCompletionStore(MessageCompletionStore)}).
+ */
+public interface MessageCompletionStore {
+
+    /**
+     * Checks if the consumer has already processed the message.
+     *
+     * @param messageKey message key, such as listener ID + topic + partition + offset
+     * @param consumerId {@link MessageConsumer#getConsumerId()}
+     * @return {@code true} if completed
+     */
+    boolean isCompleted(String messageKey, String consumerId);
+
+    /**
+     * Remembers that the consumer has processed the message.
+     *
+     * @param messageKey message key, such as listener ID + topic + partition + offset
+     * @param consumerId {@link MessageConsumer#getConsumerId()}
+     */
+    void markCompleted(String messageKey, String consumerId);
+
+    /**
+     * Forgets the message - called when all consumers have processed it, so it won't be redelivered.
+     *
+     * @param messageKey message key, such as listener ID + topic + partition + offset
+     */
+    void forget(String messageKey);
+
+}
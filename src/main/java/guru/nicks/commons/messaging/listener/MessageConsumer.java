@@ -1,7 +1,12 @@
 package guru.nicks.commons.messaging.listener;
 
+import guru.nicks.commons.messaging.MessageType;
+import guru.nicks.commons.messaging.TypeAwareMessage;
+
+import jakarta.annotation.Nullable;
 import org.springframework.messaging.MessageHeaders;
 
+import java.time.Duration;
 import java.util.function.BiConsumer;
 
 /**
@@ -9,7 +14,7 @@ import java.util.function.BiConsumer;
  * <p>
  * WARNING: one message type may have only one consumer within the same {@link #getMessageListenerId()}. Otherwise, if
  * one consumer succeeds and the other fails, the message would be re-delivered to BOTH of them, which may cause side
- * effects.
+ * effects. The only exception is fan-out mode, see {@link TypeBasedDispatchingMessageListener#isFanOutEnabled()}.
  *
  * @param <P> payload type
  */
@@ -20,6 +25,18 @@ public interface MessageConsumer<P> extends BiConsumer<P, MessageHeaders> {
      */
     String getMessageListenerId();
 
+    /**
+     * Identifies this consumer in {@link MessageCompletionStore} in fan-out mode (see
+     * {@link TypeBasedDispatchingMessageListener#isFanOutEnabled()}). Must be unique among consumers bound to the same
+     * message type, and shouldn't change across restarts if the store is persistent.
+     *
+     * @return default implementation returns the class name, which is enough unless the same class is instantiated
+     *         for several consumers
+     */
+    default String getConsumerId() {
+        return getClass().getName();
+    }
+
     /**
      * If {@code true}, this consumer is called by the bound listener for:
      * <ol>
@@ -33,4 +50,119 @@ public interface MessageConsumer<P> extends BiConsumer<P, MessageHeaders> {
         return false;
     }
 
+    /**
+     * Payload class to deserialize messages to. Returning it explicitly spares the listener the reflective analysis of
+     * this class' generic types (which also needs extra configuration in GraalVM native images).
+     *
+     * @return default implementation returns {@code null}, which means the first generic type of
+     *         {@link MessageConsumer} is found with reflection
+     */
+    @Nullable
+    default Class<?> getPayloadClass() {
+        return null;
+    }
+
+    /**
+     * Message type this consumer is bound to. Returning it explicitly spares the listener the instantiation of the
+     * payload class for calling {@link TypeAwareMessage#getType()} on it. Ignored if
+     * {@link #consumeUnknownMessageTypes()} is {@code true}.
+     *
+     * @return default implementation returns {@code null}, which means the message type is taken from a payload
+     *         instance
+     */
+    @Nullable
+    default MessageType getMessageType() {
+        return null;
+    }
+
+    /**
+     * Max. number of messages per second passed to this consumer (within each app instance) - to protect databases and
+     * APIs behind it. When exceeded, the bound listener pauses its binding (see
+     * {@link DispatchingMessageListener#getThrottlePauseThreshold()}) instead of letting messages pile up.
+     *
+     * @return default implementation returns 0 which means unlimited
+     */
+    default double getMaxRate() {
+        return 0;
+    }
+
+    /**
+     * Max. number of messages processed by this consumer at the same time (within each app instance), makes sense if
+     * the binding has concurrency greater than 1. When exceeded, the bound listener pauses its binding (see
+     * {@link DispatchingMessageListener#getThrottlePauseThreshold()}).
+     *
+     * @return default implementation returns 0 which means unlimited
+     */
+    default int getMaxConcurrency() {
+        return 0;
+    }
+
+    /**
+     * Messages older than this (by their Kafka record timestamp) are dropped before deserialization - for messages that
+     * are worthless once stale, such as cache invalidations or presence pings, so that a backlog accumulated during an
+     * outage is skipped rather than processed.
+     *
+     * @return default implementation returns {@code null} which means {@link MessageType#getMaxMessageAge()} of the
+     *         message type this consumer is bound to ({@link #getMessageType()} or, if it's not declared, the one
+     *         resolved by the listener); non-positive values mean unlimited
+     */
+    @Nullable
+    default Duration getMaxMessageAge() {
+        return null;
+    }
+
+    /**
+     * Defines how failures of {@link #accept(Object, Object)} are retried in-process, before the message is handed back
+     * to the binder.
+     *
+     * @return default implementation returns {@link RetryPolicy#NONE}
+     */
+    default RetryPolicy getRetryPolicy() {
+        return RetryPolicy.NONE;
+    }
+
+    /**
+     * Priority of messages dispatched to this consumer, honored by {@link PriorityBatchMessageListener} only.
+     *
+     * @return default implementation returns 0; higher values mean more urgent messages
+     */
+    default int getPriority() {
+        return 0;
+    }
+
+    /**
+     * Whether payloads should be deserialized with {@link PayloadConverter}: a reader cached for the payload class and
+     * (if Jackson Blackbird module is on the classpath) generated property accessors. Worth enabling for consumers of
+     * high-volume message types.
+     *
+     * @return default implementation returns {@code false}
+     */
+    default boolean useSpecializedDeserialization() {
+        return false;
+    }
+
+    /**
+     * Whether the listener may reuse payload instances (one per thread) instead of creating a new one for each message.
+     * If so, the payload class must implement {@link guru.nicks.commons.messaging.ReusableMessage}, and this consumer
+     * must not retain the payload after {@link #accept(Object, Object)} returns. Ignored if
+     * {@link #getCoalescingPolicy()} is set, because coalescing retains payloads.
+     *
+     * @return default implementation returns {@code false}
+     * @see PayloadPool
+     */
+    default boolean isPayloadReusable() {
+        return false;
+    }
+
+    /**
+     * If not {@code null}, messages having the same key are buffered and only the latest (or merged) payload is passed
+     * to this consumer, see {@link MessageCoalescer}.
+     *
+     * @return default implementation returns {@code null} which means each message is passed to this consumer
+     */
+    @Nullable
+    default CoalescingPolicy<P> getCoalescingPolicy() {
+        return null;
+    }
+
 }
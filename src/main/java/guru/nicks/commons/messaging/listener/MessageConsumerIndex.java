@@ -0,0 +1,208 @@
+package guru.nicks.commons.messaging.listener;
+
+import guru.nicks.commons.messaging.MessageType;
+import guru.nicks.commons.messaging.TypeAwareMessage;
+import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
+import guru.nicks.commons.utils.ReflectionUtils;
+
+import am.ik.yavi.meta.ConstraintArguments;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
+
+/**
+ * Groups all {@link MessageConsumer}s by {@link MessageConsumer#getMessageListenerId()} once, so each listener finds
+ * its consumers without scanning all of them. Also caches payload classes and message types, so reflective analysis
+ * (and payload instantiation) happens once per consumer, not once per listener or per lookup. Meant to be shared
+ * between all listeners of an app as a bean. Thread-safe.
+ */
+@Slf4j
+public class MessageConsumerIndex {
+
+    @Getter
+    private final List<MessageConsumer> allMessageConsumers;
+
+    private final Map<String, List<MessageConsumer>> listenerIdToConsumers;
+
+    private final Map<MessageConsumer, Class<?>> payloadClasses = new ConcurrentHashMap<>();
+    private final Map<MessageConsumer, String> messageTypes = new ConcurrentHashMap<>();
+    private final Map<MessageConsumer, Duration> maxMessageAges = new ConcurrentHashMap<>();
+
+    @ConstraintArguments
+    public MessageConsumerIndex(List<MessageConsumer> allMessageConsumers) {
+        checkNotNull(allMessageConsumers, _MessageConsumerIndexArgumentsMeta.ALLMESSAGECONSUMERS.name());
+        this.allMessageConsumers = List.copyOf(allMessageConsumers);
+
+        // keep the original order within each listener - it defines the order of fan-out
+        listenerIdToConsumers = this.allMessageConsumers.stream()
+                .collect(Collectors.groupingBy(MessageConsumer::getMessageListenerId, LinkedHashMap::new,
+                        Collectors.toUnmodifiableList()));
+        log.debug("Indexed {} message consumer(s) of {} listener(s)", this.allMessageConsumers.size(),
+                listenerIdToConsumers.size());
+    }
+
+    /**
+     * Returns payload class of the given consumer - {@link MessageConsumer#getPayloadClass()} if it's declared,
+     * otherwise the FIRST generic type in {@link MessageConsumer}.
+     *
+     * @param messageConsumer message consumer
+     * @return payload class
+     * @throws NoSuchElementException class not found
+     */
+    public static Class<?> resolvePayloadClass(MessageConsumer<?> messageConsumer) {
+        Class<?> declaredPayloadClass = messageConsumer.getPayloadClass();
+        if (declaredPayloadClass != null) {
+            return declaredPayloadClass;
+        }
+
+        Class<?> payloadClass = ReflectionUtils
+                .findFirstMaterializedGenericType(messageConsumer.getClass(), MessageConsumer.class)
+                .orElseThrow(() -> new NoSuchElementException("Failed to guess message payload class for "
+                        + messageConsumer.getClass().getName()));
+
+        if (log.isTraceEnabled()) {
+            log.trace("Message consumer [{}} expects payload class [{}]", messageConsumer.getClass().getName(),
+                    payloadClass.getName());
+        }
+
+        return payloadClass;
+    }
+
+    /**
+     * Returns message type the given consumer is bound to:
+     * <ul>
+     *  <li>if {@link MessageConsumer#consumeUnknownMessageTypes()} is {@code true}, it's
+     *      {@link MessageTypeResolver#UNKNOWN_MESSAGE_TYPE}</li>
+     *  <li>if {@link MessageConsumer#getMessageType()} is not {@code null}, it's its
+     *      {@link MessageType#getMessageBrokerValue()}</li>
+     *  <li>otherwise {@link MessageType#getMessageBrokerValue()} is called on the payload object instantiated for that
+     *      purpose (its class must inherit from {@link TypeAwareMessage} in that case)</li>
+     * </ul>
+     *
+     * @param messageConsumer message consumer
+     * @param payloadClass    consumer's payload class
+     * @return message type the consumer expects
+     * @throws IllegalStateException if payload class doesn't inherit from {@link TypeAwareMessage} or can't be
+     *                               instantiated
+     */
+    public static String resolveMessageType(MessageConsumer<?> messageConsumer, Class<?> payloadClass) {
+        if (messageConsumer.consumeUnknownMessageTypes()) {
+            return MessageTypeResolver.UNKNOWN_MESSAGE_TYPE;
+        }
+
+        MessageType declaredMessageType = messageConsumer.getMessageType();
+        if (declaredMessageType != null) {
+            return checkNotNull(declaredMessageType.getMessageBrokerValue(),
+                    messageConsumer.getClass().getName() + ".messageType.messageBrokerValue");
+        }
+
+        @SuppressWarnings("java:S1488") // redundant local variable, for debugging
+        String messageType = checkNotNull(instantiateMessageType(payloadClass).getMessageBrokerValue(),
+                payloadClass.getName() + ".type.messageBrokerValue");
+        return messageType;
+    }
+
+    /**
+     * Returns {@link MessageConsumer#getMaxMessageAge()} or, if it's {@code null},
+     * {@link MessageType#getMaxMessageAge()} of the message type the consumer is bound to (see
+     * {@link #resolveMessageType(MessageConsumer, Class)}). Consumers of unknown message types aren't bound to any, so
+     * for them it's {@link Duration#ZERO}.
+     *
+     * @param messageConsumer message consumer
+     * @param payloadClass    consumer's payload class
+     * @return max. message age, non-positive means unlimited
+     * @throws IllegalStateException if payload class doesn't inherit from {@link TypeAwareMessage} or can't be
+     *                               instantiated
+     */
+    public static Duration resolveMaxMessageAge(MessageConsumer<?> messageConsumer, Class<?> payloadClass) {
+        Duration maxMessageAge = messageConsumer.getMaxMessageAge();
+        if (maxMessageAge != null) {
+            return maxMessageAge;
+        }
+
+        if (messageConsumer.consumeUnknownMessageTypes()) {
+            return Duration.ZERO;
+        }
+
+        MessageType declaredMessageType = messageConsumer.getMessageType();
+        return (declaredMessageType == null)
+                ? instantiateMessageType(payloadClass).getMaxMessageAge()
+                : declaredMessageType.getMaxMessageAge();
+    }
+
+    private static MessageType instantiateMessageType(Class<?> payloadClass) {
+        if (!TypeAwareMessage.class.isAssignableFrom(payloadClass)) {
+            throw new IllegalStateException("Payload class must inherit from " + TypeAwareMessage.class.getName()
+                    + ": " + payloadClass.getName());
+        }
+
+        // it's OK to have empty message type (which by design means unknown/unbound), but never null
+        TypeAwareMessage<?> payload;
+        try {
+            payload = (TypeAwareMessage<?>) ReflectionUtils.instantiateEvenWithoutDefaultConstructor(payloadClass);
+        } catch (Exception e) {
+            throw new IllegalStateException(String.format(
+                    "Failed to instantiate payload class [%s] for message type extraction: %s",
+                    payloadClass.getName(), e.getMessage()), e);
+        }
+
+        return checkNotNull(payload.getType(), payloadClass.getName() + ".type");
+    }
+
+    /**
+     * Returns consumers bound to the given listener.
+     *
+     * @param listenerId listener ID
+     * @return consumers (possibly empty), in their original order
+     */
+    public List<MessageConsumer> getMessageConsumers(String listenerId) {
+        return listenerIdToConsumers.getOrDefault(listenerId, List.of());
+    }
+
+    /**
+     * Same as {@link #resolvePayloadClass(MessageConsumer)}, but resolved once per consumer.
+     *
+     * @param messageConsumer message consumer (not necessarily indexed, for example registered at runtime)
+     * @return payload class
+     * @throws NoSuchElementException class not found
+     */
+    public Class<?> getPayloadClass(MessageConsumer<?> messageConsumer) {
+        return payloadClasses.computeIfAbsent(messageConsumer, MessageConsumerIndex::resolvePayloadClass);
+    }
+
+    /**
+     * Same as {@link #resolveMessageType(MessageConsumer, Class)}, but resolved once per consumer.
+     *
+     * @param messageConsumer message consumer (not necessarily indexed, for example registered at runtime)
+     * @return message type the consumer expects
+     * @throws IllegalStateException if payload class doesn't inherit from {@link TypeAwareMessage} or can't be
+     *                               instantiated
+     */
+    public String getMessageType(MessageConsumer<?> messageConsumer) {
+        return messageTypes.computeIfAbsent(messageConsumer, consumer ->
+                resolveMessageType(consumer, getPayloadClass(consumer)));
+    }
+
+    /**
+     * Same as {@link #resolveMaxMessageAge(MessageConsumer, Class)}, but resolved once per consumer.
+     *
+     * @param messageConsumer message consumer (not necessarily indexed, for example registered at runtime)
+     * @return max. message age, non-positive means unlimited
+     * @throws IllegalStateException if payload class doesn't inherit from {@link TypeAwareMessage} or can't be
+     *                               instantiated
+     */
+    public Duration getMaxMessageAge(MessageConsumer<?> messageConsumer) {
+        return maxMessageAges.computeIfAbsent(messageConsumer, consumer ->
+                resolveMaxMessageAge(consumer, getPayloadClass(consumer)));
+    }
+
+}
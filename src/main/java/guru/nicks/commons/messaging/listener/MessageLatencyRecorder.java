@@ -0,0 +1,104 @@
+package guru.nicks.commons.messaging.listener;
+
+import guru.nicks.commons.messaging.service.MessagePublisherService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Nullable;
+import org.springframework.messaging.MessageHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records end-to-end latency based on {@link MessagePublisherService#PUBLISH_TIMESTAMP_HEADER}: from publishing to
+ * dispatching ({@link #DISPATCH_LATENCY_METER}) and from publishing to successful consumption
+ * ({@link #COMPLETION_LATENCY_METER}). Both are histograms tagged with listener ID and message type, so consumer lag
+ * can be seen in time units rather than in offsets.
+ * <p>
+ * Publisher and consumer clocks may differ - negative latencies (consumer clock behind) are recorded as zero.
+ */
+public class MessageLatencyRecorder {
+
+    public static final String DISPATCH_LATENCY_METER = "messaging.message.dispatch.latency";
+    public static final String COMPLETION_LATENCY_METER = "messaging.message.completion.latency";
+    public static final String LISTENER_TAG = "listener";
+    public static final String MESSAGE_TYPE_TAG = "messageType";
+
+    /**
+     * Tag value for messages whose type can't be determined.
+     */
+    public static final String UNKNOWN_MESSAGE_TYPE = "unknown";
+
+    private final MeterRegistry meterRegistry;
+    private final String listenerId;
+
+    private final Map<String, Timer> dispatchTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> completionTimers = new ConcurrentHashMap<>();
+
+    public MessageLatencyRecorder(MeterRegistry meterRegistry, String listenerId) {
+        this.meterRegistry = meterRegistry;
+        this.listenerId = listenerId;
+    }
+
+    /**
+     * Parses {@link MessagePublisherService#PUBLISH_TIMESTAMP_HEADER}. Depending on the header mapper, the value may
+     * arrive as a number, a string, or raw bytes.
+     *
+     * @param headers message headers
+     * @return publish timestamp (microseconds since the epoch), or {@code null} if the header is missing or malformed
+     */
+    @Nullable
+    public static Long readPublishTimestampMicros(MessageHeaders headers) {
+        try {
+            return switch (headers.get(MessagePublisherService.PUBLISH_TIMESTAMP_HEADER)) {
+                case Number number -> number.longValue();
+                case String str -> Long.parseLong(str);
+                case byte[] bytes -> Long.parseLong(new String(bytes, StandardCharsets.US_ASCII));
+                case null, default -> null;
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records latency from publishing to now, which is when the message is being dispatched.
+     *
+     * @param publishTimestampMicros see {@link #readPublishTimestampMicros(MessageHeaders)}
+     * @param messageType            message type, {@code null} if unknown; must be one of a bounded set of values
+     *                               because each one creates a new histogram
+     */
+    public void recordDispatch(long publishTimestampMicros, @Nullable String messageType) {
+        record(dispatchTimers, DISPATCH_LATENCY_METER, publishTimestampMicros, messageType);
+    }
+
+    /**
+     * Records latency from publishing to now, which is when the message has been consumed.
+     *
+     * @param publishTimestampMicros see {@link #readPublishTimestampMicros(MessageHeaders)}
+     * @param messageType            message type, {@code null} if unknown; must be one of a bounded set of values
+     *                               because each one creates a new histogram
+     */
+    public void recordCompletion(long publishTimestampMicros, @Nullable String messageType) {
+        record(completionTimers, COMPLETION_LATENCY_METER, publishTimestampMicros, messageType);
+    }
+
+    private void record(Map<String, Timer> timers, String meterName, long publishTimestampMicros,
+            @Nullable String messageType) {
+        long latencyMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now()) - publishTimestampMicros;
+
+        timers.computeIfAbsent((messageType == null) ? UNKNOWN_MESSAGE_TYPE : messageType, type ->
+                        Timer.builder(meterName)
+                                .tag(LISTENER_TAG, listenerId)
+                                .tag(MESSAGE_TYPE_TAG, type)
+                                .publishPercentileHistogram()
+                                .register(meterRegistry))
+                .record(Math.max(0, latencyMicros), TimeUnit.MICROSECONDS);
+    }
+
+}
@@ -0,0 +1,159 @@
+package guru.nicks.commons.messaging.listener;
+
+import guru.nicks.commons.log.domain.LogContext;
+
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.MDC;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Log context of a single message: {@link LogContext#MESSAGE_TOPIC} and {@link LogContext#MESSAGE_ID} are set when
+ * the scope is opened and restored to their previous values when it's closed, so they don't leak to whatever the
+ * thread does next. {@link LogContext#APP_NAME} is constant, therefore it's only put if the thread doesn't have it yet.
+ * MDC entries are only written if their values change - consecutive messages from the same topic don't touch the topic
+ * entry at all.
+ * <p>
+ * MDC is thread-local, so the scope must be closed by the thread that has opened it (which is what try-with-resources
+ * does). This also makes it work on virtual threads: each of them has its own MDC, and nothing is copied between
+ * threads.
+ */
+@Slf4j
+public final class MessageLogScope implements AutoCloseable {
+
+    /**
+     * MDC keys declared by {@link LogContext} constants, resolved once. Empty if the key can't be found - then the
+     * entry is set with {@link LogContext} API and not restored.
+     */
+    private static final Map<LogContext, Optional<String>> MDC_KEYS = new ConcurrentHashMap<>();
+
+    @Nullable
+    private final String topicKey;
+    @Nullable
+    private final String previousTopic;
+    @Nullable
+    private final String messageIdKey;
+    @Nullable
+    private final String previousMessageId;
+
+    private MessageLogScope(@Nullable String topicKey, @Nullable String previousTopic,
+            @Nullable String messageIdKey, @Nullable String previousMessageId) {
+        this.topicKey = topicKey;
+        this.previousTopic = previousTopic;
+        this.messageIdKey = messageIdKey;
+        this.previousMessageId = previousMessageId;
+    }
+
+    /**
+     * Opens the scope.
+     *
+     * @param appName   app name
+     * @param topic     message topic
+     * @param messageId message ID
+     * @return scope to close when the message has been processed
+     */
+    public static MessageLogScope open(String appName, @Nullable Object topic, @Nullable Object messageId) {
+        String appNameKey = getMdcKey(LogContext.APP_NAME);
+        if (appNameKey == null) {
+            LogContext.APP_NAME.put(appName);
+        } else {
+            putIfChanged(appNameKey, appName);
+        }
+
+        String topicKey = getMdcKey(LogContext.MESSAGE_TOPIC);
+        String previousTopic = null;
+        if (topicKey == null) {
+            LogContext.MESSAGE_TOPIC.put(topic);
+        } else {
+            previousTopic = MDC.get(topicKey);
+            putIfChanged(topicKey, topic);
+        }
+
+        String messageIdKey = getMdcKey(LogContext.MESSAGE_ID);
+        String previousMessageId = null;
+        if (messageIdKey == null) {
+            LogContext.MESSAGE_ID.put(messageId);
+        } else {
+            previousMessageId = MDC.get(messageIdKey);
+            putIfChanged(messageIdKey, messageId);
+        }
+
+        return new MessageLogScope(topicKey, previousTopic, messageIdKey, previousMessageId);
+    }
+
+    /**
+     * Restores the previous message topic and message ID.
+     */
+    @Override
+    public void close() {
+        if (topicKey != null) {
+            putIfChanged(topicKey, previousTopic);
+        }
+
+        if (messageIdKey != null) {
+            putIfChanged(messageIdKey, previousMessageId);
+        }
+    }
+
+    private static void putIfChanged(String key, @Nullable Object value) {
+        String newValue = (value == null)
+                ? null
+                : value.toString();
+
+        if (Objects.equals(MDC.get(key), newValue)) {
+            return;
+        }
+
+        if (newValue == null) {
+            MDC.remove(key);
+        } else {
+            MDC.put(key, newValue);
+        }
+    }
+
+    @Nullable
+    private static String getMdcKey(LogContext field) {
+        return MDC_KEYS.computeIfAbsent(field, MessageLogScope::findMdcKey)
+                .orElse(null);
+    }
+
+    /**
+     * Reads the MDC key declared by the {@link LogContext} constant: its only instance field of type {@link String}.
+     * Doesn't touch MDC.
+     */
+    private static Optional<String> findMdcKey(LogContext field) {
+        List<Field> keyFields = Arrays.stream(LogContext.class.getDeclaredFields())
+                .filter(candidate -> !Modifier.isStatic(candidate.getModifiers()))
+                .filter(candidate -> candidate.getType() == String.class)
+                .toList();
+
+        Optional<String> key = Optional.empty();
+
+        if (keyFields.size() == 1) {
+            try {
+                Field keyField = keyFields.getFirst();
+                keyField.setAccessible(true);
+                key = Optional.ofNullable((String) keyField.get(field))
+                        .filter(StringUtils::isNotBlank);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.debug("Failed to read MDC key of {}: {}", field, e.getMessage());
+            }
+        }
+
+        if (key.isEmpty()) {
+            log.warn("Can't find MDC key of {}, it won't be restored after each message", field);
+        }
+
+        return key;
+    }
+
+}
@@ -0,0 +1,28 @@
+package guru.nicks.commons.messaging.listener;
+
+import lombok.Getter;
+
+/**
+ * Thrown by {@link DispatchingMessageListener} for messages that can never be consumed successfully (invalid payload,
+ * non-retryable consumer failure, see {@link RetryPolicy#getNonRetryableExceptions()}). Configure the binder to skip its
+ * retries for this exception, so such messages go straight to the DLQ:
+ * <pre>
+ * spring.cloud.stream.bindings.someListener-in-0.consumer.retryable-exceptions
+ *     [guru.nicks.commons.messaging.listener.NonRetryableMessageException]=false
+ * </pre>
+ * The original exception is available as {@link #getCause()}.
+ */
+@Getter
+public class NonRetryableMessageException extends RuntimeException {
+
+    /**
+     * Number of consumption attempts made.
+     */
+    private final int attempts;
+
+    public NonRetryableMessageException(String message, Throwable cause, int attempts) {
+        super(message, cause);
+        this.attempts = attempts;
+    }
+
+}
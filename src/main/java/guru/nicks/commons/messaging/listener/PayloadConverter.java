@@ -0,0 +1,86 @@
+package guru.nicks.commons.messaging.listener;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts raw payloads to payload classes with {@link ObjectReader}s cached per payload class, so that the root
+ * deserializer isn't looked up for each message. The reader consumes the raw payload map directly (see
+ * {@link MapTraversingParser}) instead of a copy of it in a token buffer. If Jackson Blackbird module is on the
+ * classpath, it's registered in a copy of the object mapper: bean properties are then set via generated lambdas instead
+ * of reflection.
+ *
+ * @see MessageConsumer#useSpecializedDeserialization()
+ */
+@Slf4j
+public class PayloadConverter {
+
+    public static final String BLACKBIRD_MODULE_CLASS = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+
+    @Getter
+    private final ObjectMapper objectMapper;
+
+    @Getter
+    private final boolean blackbirdEnabled;
+
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param sourceObjectMapper object mapper to copy (it's not modified)
+     */
+    public PayloadConverter(ObjectMapper sourceObjectMapper) {
+        blackbirdEnabled = ClassUtils.isPresent(BLACKBIRD_MODULE_CLASS, PayloadConverter.class.getClassLoader());
+
+        if (blackbirdEnabled) {
+            objectMapper = sourceObjectMapper.copy()
+                    .registerModule(BlackbirdModuleFactory.create());
+        } else {
+            log.warn("{} is not on the classpath, specialized deserialization relies on reflection",
+                    BLACKBIRD_MODULE_CLASS);
+            objectMapper = sourceObjectMapper;
+        }
+    }
+
+    /**
+     * Does the same as {@link ObjectMapper#convertValue(Object, Class)}, but with a cached reader and without copying
+     * the source.
+     *
+     * @param source       raw payload
+     * @param payloadClass payload class
+     * @return payload
+     * @throws IllegalArgumentException conversion failed
+     */
+    public Object convert(Map<String, Object> source, Class<?> payloadClass) {
+        ObjectReader reader = readers.computeIfAbsent(payloadClass, objectMapper::readerFor);
+
+        try (JsonParser parser = new MapTraversingParser(objectMapper, source)) {
+            return reader.readValue(parser);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Separate class - to load {@link BlackbirdModule} only if it's on the classpath.
+     */
+    private static final class BlackbirdModuleFactory {
+
+        private static Module create() {
+            return new BlackbirdModule();
+        }
+
+    }
+
+}
@@ -0,0 +1,186 @@
+package guru.nicks.commons.messaging.listener;
+
+import guru.nicks.commons.messaging.ReusableMessage;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps one instance of each {@link ReusableMessage} class per thread and fills it with
+ * {@link ObjectMapper#readerForUpdating(Object)} (reading straight from the raw payload map, see
+ * {@link MapTraversingParser}) instead of creating a new payload for each message. Each
+ * {@link #acquire(Map, Class)} must be followed by {@link #release(Object)} when the consumer returns. If the pooled
+ * instance is still in use (e.g. the consumer processes another message of the same class on the same thread), a new
+ * instance is created.
+ * <p>
+ * In leak detection mode (for debugging), instances are not reused. Instead, released instances are tracked with weak
+ * references: if one survives a garbage collection after being released, a consumer must have retained it, which would
+ * corrupt its data in pooled mode, so a warning is logged (once per payload class). This is a heuristic - an instance
+ * retained only briefly, e.g. by an asynchronous logger, is reported too.
+ *
+ * @see MessageConsumer#isPayloadReusable()
+ */
+@Slf4j
+public class PayloadPool {
+
+    /**
+     * Max. number of released instances tracked in leak detection mode.
+     */
+    public static final int MAX_TRACKED_INSTANCES = 10_000;
+
+    private final ObjectMapper objectMapper;
+    private final boolean leakDetection;
+
+    private final ThreadLocal<Map<Class<?>, Slot>> slots = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Used in leak detection mode only, guarded by {@code this}.
+     */
+    private final Deque<TrackedInstance> trackedInstances = new ArrayDeque<>();
+    private final Set<Class<?>> leakingClasses = new HashSet<>();
+
+    /**
+     * Constructor.
+     *
+     * @param objectMapper  object mapper
+     * @param leakDetection if {@code true}, instances are not reused, but checked for being retained after release
+     */
+    public PayloadPool(ObjectMapper objectMapper, boolean leakDetection) {
+        this.objectMapper = objectMapper;
+        this.leakDetection = leakDetection;
+    }
+
+    /**
+     * Fills the pooled instance of the given class with the given data.
+     *
+     * @param source       raw payload
+     * @param payloadClass payload class, must implement {@link ReusableMessage} and have a no-arg constructor
+     * @return payload
+     * @throws IllegalArgumentException conversion failed
+     * @throws IllegalStateException    payload class doesn't implement {@link ReusableMessage}
+     */
+    public Object acquire(Map<String, Object> source, Class<?> payloadClass) {
+        if (!ReusableMessage.class.isAssignableFrom(payloadClass)) {
+            throw new IllegalStateException("Reusable payload class must implement "
+                    + ReusableMessage.class.getName() + ": " + payloadClass.getName());
+        }
+
+        if (leakDetection) {
+            return read(objectMapper.readerForUpdating(BeanUtils.instantiateClass(payloadClass)), source);
+        }
+
+        Slot slot = slots.get().computeIfAbsent(payloadClass, this::createSlot);
+
+        // reentrant call on the same thread
+        if (slot.inUse) {
+            return read(objectMapper.readerFor(payloadClass), source);
+        }
+
+        slot.instance.reset();
+        Object payload = read(slot.reader, source);
+        slot.inUse = true;
+        return payload;
+    }
+
+    /**
+     * Returns the instance to the pool.
+     *
+     * @param payload payload returned by {@link #acquire(Map, Class)}
+     */
+    public void release(Object payload) {
+        if (leakDetection) {
+            track(payload);
+            return;
+        }
+
+        Slot slot = slots.get().get(payload.getClass());
+
+        if ((slot != null) && (slot.instance == payload)) {
+            slot.inUse = false;
+        }
+    }
+
+    /**
+     * Returns payload classes whose instances have been found retained after release (in leak detection mode).
+     *
+     * @return payload classes
+     */
+    public synchronized Set<Class<?>> getLeakingPayloadClasses() {
+        return Set.copyOf(leakingClasses);
+    }
+
+    private Slot createSlot(Class<?> payloadClass) {
+        var instance = (ReusableMessage) BeanUtils.instantiateClass(payloadClass);
+        return new Slot(instance, objectMapper.readerForUpdating(instance));
+    }
+
+    /**
+     * Does the same as {@link ObjectMapper#convertValue(Object, Class)}, but with the given reader and without copying
+     * the source.
+     */
+    private Object read(ObjectReader reader, Map<String, Object> source) {
+        try (JsonParser parser = new MapTraversingParser(objectMapper, source)) {
+            return reader.readValue(parser);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    // performance doesn't matter in leak detection mode
+    private synchronized void track(Object payload) {
+        long gcCount = getGcCount();
+
+        // check instances released before the latest GC
+        while (!trackedInstances.isEmpty() && (trackedInstances.peekFirst().gcCount < gcCount)) {
+            Object retained = trackedInstances.pollFirst().reference.get();
+
+            if ((retained != null) && leakingClasses.add(retained.getClass())) {
+                log.warn("Reusable payload of class [{}] is still referenced after its consumer returned - it "
+                        + "would be overwritten by the next message in pooled mode", retained.getClass().getName());
+            }
+        }
+
+        if (trackedInstances.size() < MAX_TRACKED_INSTANCES) {
+            trackedInstances.addLast(new TrackedInstance(new WeakReference<>(payload), gcCount));
+        }
+    }
+
+    private static long getGcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans()
+                .stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .filter(count -> count > 0)
+                .sum();
+    }
+
+    private static class Slot {
+
+        private final ReusableMessage instance;
+        private final ObjectReader reader;
+        private boolean inUse;
+
+        private Slot(ReusableMessage instance, ObjectReader reader) {
+            this.instance = instance;
+            this.reader = reader;
+        }
+
+    }
+
+    private record TrackedInstance(WeakReference<Object> reference, long gcCount) {
+    }
+
+}
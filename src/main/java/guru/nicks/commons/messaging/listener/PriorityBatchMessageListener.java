@@ -0,0 +1,181 @@
+package guru.nicks.commons.messaging.listener;
+
+import am.ik.yavi.meta.ConstraintArguments;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
+
+/**
+ * Batch front-end for a {@link DispatchingMessageListener}: splits the records of a poll into separate messages and
+ * dispatches them with the delegate (which means the same consumers, deserialization, validation, retries and
+ * dead-lettering), higher {@link #getPriority(Message)} first. Therefore, urgent message types sharing a topic with bulk
+ * ones don't wait behind them for longer than one poll.
+ * <p>
+ * Order of messages having the same {@link KafkaHeaders#RECEIVED_KEY} is preserved: each message inherits the highest
+ * priority of the later messages having the same key, so it's never overtaken by them. Messages without a key may be
+ * reordered freely. Messages having equal priorities keep their arrival order.
+ * <p>
+ * The binding must be in batch mode ({@code spring.cloud.stream.bindings.<binding>.consumer.batch-mode: true}).
+ * {@link KafkaHeaders#ACKNOWLEDGMENT} is not passed to individual messages because it acknowledges the whole batch.
+ * If a message fails (and the delegate has no dead letter topic), the exception is rethrown and the whole batch is
+ * redelivered, including the messages already processed - consumers should be idempotent.
+ */
+@Slf4j
+public abstract class PriorityBatchMessageListener implements Consumer<Message<List<Map<String, Object>>>> {
+
+    /**
+     * Batch headers having one value per record.
+     */
+    public static final Set<String> PER_RECORD_HEADERS = Set.of(
+            KafkaHeaders.RECEIVED_KEY,
+            KafkaHeaders.RECEIVED_PARTITION,
+            KafkaHeaders.RECEIVED_TOPIC,
+            KafkaHeaders.OFFSET,
+            KafkaHeaders.RECEIVED_TIMESTAMP,
+            KafkaHeaders.TIMESTAMP_TYPE,
+            KafkaHeaders.NATIVE_HEADERS);
+
+    /**
+     * Batch headers not copied to individual messages.
+     */
+    public static final Set<String> EXCLUDED_HEADERS = Set.of(
+            KafkaHeaders.ACKNOWLEDGMENT,
+            KafkaHeaders.BATCH_CONVERTED_HEADERS,
+            MessageHeaders.ID,
+            MessageHeaders.TIMESTAMP);
+
+    @Getter
+    private final DispatchingMessageListener delegate;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate listener to dispatch messages with
+     */
+    @ConstraintArguments
+    protected PriorityBatchMessageListener(DispatchingMessageListener delegate) {
+        this.delegate = checkNotNull(delegate, _PriorityBatchMessageListenerArgumentsMeta.DELEGATE.name());
+    }
+
+    @Override
+    public void accept(Message<List<Map<String, Object>>> batch) {
+        List<Message<Map<String, Object>>> messages = splitBatch(batch);
+
+        for (Message<Map<String, Object>> message : prioritize(messages)) {
+            delegate.accept(message);
+        }
+    }
+
+    /**
+     * Returns message priority.
+     *
+     * @param message message
+     * @return default implementation returns the highest {@link MessageConsumer#getPriority()} of the consumers the
+     *         delegate would dispatch the message to, or 0 if there are no such consumers
+     */
+    protected int getPriority(Message<Map<String, Object>> message) {
+        return delegate.findMessageConsumers(message)
+                .stream()
+                .mapToInt(MessageConsumer::getPriority)
+                .max()
+                .orElse(0);
+    }
+
+    /**
+     * Sorts messages by their priorities (highest first), preserving per-key order.
+     *
+     * @param messages messages in their arrival order
+     * @return messages in their processing order
+     */
+    protected List<Message<Map<String, Object>>> prioritize(List<Message<Map<String, Object>>> messages) {
+        int[] priorities = new int[messages.size()];
+        boolean samePriority = true;
+
+        for (int i = 0; i < priorities.length; i++) {
+            priorities[i] = getPriority(messages.get(i));
+            samePriority &= (priorities[i] == priorities[0]);
+        }
+
+        if (samePriority) {
+            return messages;
+        }
+
+        // backward pass: each message inherits the highest priority of the later messages having the same key
+        Map<Object, Integer> maxPriorityByKey = new HashMap<>();
+        for (int i = priorities.length - 1; i >= 0; i--) {
+            Object key = MessageCoalescer.toMapKey(messages.get(i).getHeaders().get(KafkaHeaders.RECEIVED_KEY));
+
+            if (key != null) {
+                priorities[i] = maxPriorityByKey.merge(key, priorities[i], Math::max);
+            }
+        }
+
+        // List.sort() is stable, so equal priorities keep their arrival order
+        List<Integer> order = new ArrayList<>(IntStream.range(0, priorities.length).boxed().toList());
+        order.sort(Comparator.comparingInt((Integer i) -> priorities[i]).reversed());
+
+        log.debug("Reordered batch of {} messages by priority in listener [{}]", messages.size(),
+                getClass().getName());
+        return order.stream()
+                .map(messages::get)
+                .toList();
+    }
+
+    /**
+     * Splits batch into separate messages, each with its own headers (see {@link #PER_RECORD_HEADERS} and
+     * {@link KafkaHeaders#BATCH_CONVERTED_HEADERS}) and batch-wide headers except {@link #EXCLUDED_HEADERS}.
+     *
+     * @param batch batch
+     * @return messages in their arrival order
+     */
+    protected List<Message<Map<String, Object>>> splitBatch(Message<List<Map<String, Object>>> batch) {
+        List<Map<String, Object>> payloads = batch.getPayload();
+        MessageHeaders batchHeaders = batch.getHeaders();
+
+        Map<String, Object> commonHeaders = new HashMap<>();
+        batchHeaders.forEach((name, value) -> {
+            if (!PER_RECORD_HEADERS.contains(name) && !EXCLUDED_HEADERS.contains(name)) {
+                commonHeaders.put(name, value);
+            }
+        });
+
+        List<?> convertedHeaders = batchHeaders.get(KafkaHeaders.BATCH_CONVERTED_HEADERS, List.class);
+        List<Message<Map<String, Object>>> messages = new ArrayList<>(payloads.size());
+
+        for (int i = 0; i < payloads.size(); i++) {
+            var builder = MessageBuilder.withPayload(payloads.get(i))
+                    .copyHeaders(commonHeaders);
+
+            for (String name : PER_RECORD_HEADERS) {
+                if ((batchHeaders.get(name) instanceof List<?> values) && (i < values.size())
+                        && (values.get(i) != null)) {
+                    builder.setHeader(name, values.get(i));
+                }
+            }
+
+            if ((convertedHeaders != null) && (i < convertedHeaders.size())
+                    && (convertedHeaders.get(i) instanceof Map<?, ?> recordHeaders)) {
+                recordHeaders.forEach((name, value) -> builder.setHeader(name.toString(), value));
+            }
+
+            messages.add(builder.build());
+        }
+
+        return messages;
+    }
+
+}
@@ -0,0 +1,122 @@
+package guru.nicks.commons.messaging.listener;
+
+import am.ik.yavi.meta.ConstraintArguments;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
+
+/**
+ * Reactive front-end for a {@link DispatchingMessageListener} (such as {@link TypeBasedDispatchingMessageListener}):
+ * messages are dispatched to the same consumers, with the same deserialization, validation, retries and dead-lettering.
+ * Consumers are blocking, therefore they're called on {@link #getScheduler()}, never on event loop threads.
+ * <p>
+ * Demand is bounded: at most {@link #getConcurrency()} messages are processed at the same time, and messages from the
+ * same partition are always processed sequentially, in their arrival order.
+ * <p>
+ * WARNING: in reactive mode, binders don't retry failed messages, and an error cancels the whole subscription. Failed
+ * messages are not skipped though (that would lose them silently): the error is propagated, so the binding stops and
+ * the message is redelivered once the app is restarted. To keep consuming, configure
+ * {@link DispatchingMessageListener#getDeadLetterTopic()} in the delegate - then only messages that couldn't be
+ * dead-lettered either end up here.
+ */
+@Slf4j
+public abstract class ReactiveDispatchingMessageListener
+        implements Function<Flux<Message<Map<String, Object>>>, Mono<Void>> {
+
+    /**
+     * Number of messages requested from upstream in advance, per partition group.
+     */
+    public static final int PREFETCH = 32;
+
+    @Getter
+    private final DispatchingMessageListener delegate;
+
+    @Getter
+    private final int concurrency;
+
+    @Getter
+    private final Scheduler scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate    listener to dispatch messages with
+     * @param concurrency max. number of messages processed at the same time
+     * @param scheduler   where consumers are called
+     */
+    @ConstraintArguments
+    protected ReactiveDispatchingMessageListener(DispatchingMessageListener delegate, int concurrency,
+            Scheduler scheduler) {
+        this.delegate = checkNotNull(delegate, _ReactiveDispatchingMessageListenerArgumentsMeta.DELEGATE.name());
+        this.scheduler = checkNotNull(scheduler, _ReactiveDispatchingMessageListenerArgumentsMeta.SCHEDULER.name());
+
+        if (concurrency < 1) {
+            throw new IllegalArgumentException(_ReactiveDispatchingMessageListenerArgumentsMeta.CONCURRENCY.name()
+                    + " must be positive");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Calls consumers on {@link Schedulers#boundedElastic()}.
+     *
+     * @param delegate    listener to dispatch messages with
+     * @param concurrency max. number of messages processed at the same time
+     */
+    protected ReactiveDispatchingMessageListener(DispatchingMessageListener delegate, int concurrency) {
+        this(delegate, concurrency, Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Void> apply(Flux<Message<Map<String, Object>>> messages) {
+        if (concurrency == 1) {
+            return messages
+                    .concatMap(this::dispatch, PREFETCH)
+                    .then();
+        }
+
+        // exactly 'concurrency' groups - otherwise groupBy() would stall waiting for more groups to be drained
+        return messages
+                .groupBy(this::getGroup, PREFETCH)
+                .flatMap(group -> group.concatMap(this::dispatch, PREFETCH), concurrency)
+                .then();
+    }
+
+    /**
+     * Dispatches the message with {@link #getDelegate()} on {@link #getScheduler()}.
+     *
+     * @param message message
+     * @return completes when the consumer has finished, or errors if neither the consumer nor dead-lettering has
+     *         succeeded
+     */
+    protected Mono<Void> dispatch(Message<Map<String, Object>> message) {
+        return Mono.<Void>fromRunnable(() -> delegate.accept(message))
+                .subscribeOn(scheduler)
+                .doOnError(e -> log.error("Message failed in reactive listener [{}], stopping: {}",
+                        getClass().getName(), e.getMessage()));
+    }
+
+    /**
+     * Maps the message partition to one of {@link #getConcurrency()} groups processed in parallel. Messages from the
+     * same partition always fall into the same group.
+     *
+     * @param message message
+     * @return group number
+     */
+    protected int getGroup(Message<Map<String, Object>> message) {
+        Object partition = message.getHeaders().get(KafkaHeaders.RECEIVED_PARTITION);
+        return Math.floorMod(Objects.hashCode(partition), concurrency);
+    }
+
+}
@@ -0,0 +1,73 @@
+package guru.nicks.commons.messaging.listener;
+
+import guru.nicks.commons.messaging.service.RequestReplyService;
+import guru.nicks.commons.validation.AnnotationValidator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Built-in listener passing all incoming messages, as raw maps, to
+ * {@link RequestReplyService#completeRequest(Message)}. Created by auto-configuration if {@link #REPLY_TOPIC_PROPERTY}
+ * is not blank (the bean name is {@link #BEAN_NAME}, which also has to be listed in
+ * {@code spring.cloud.function.definition}).
+ */
+public class ReplyMessageListener extends DispatchingMessageListener {
+
+    public static final String BEAN_NAME = "messageReplyListener";
+
+    /**
+     * Input binding destination of this listener, which is where replies are published to.
+     */
+    public static final String REPLY_TOPIC_PROPERTY = CONDITIONAL_PROPERTY_PREFIX + BEAN_NAME
+            + CONDITIONAL_PROPERTY_SUFFIX;
+
+    @Getter
+    private final RequestReplyService requestReplyService;
+
+    private final ReplyConsumer replyConsumer;
+
+    public ReplyMessageListener(String appName, AnnotationValidator annotationValidator, ObjectMapper objectMapper,
+            RequestReplyService requestReplyService) {
+        super(appName, List.of(), annotationValidator, objectMapper);
+        this.requestReplyService = requestReplyService;
+        replyConsumer = new ReplyConsumer(requestReplyService);
+    }
+
+    @Override
+    public String getId() {
+        return BEAN_NAME;
+    }
+
+    @Override
+    protected Optional<MessageConsumer> findMessageConsumer(Message<Map<String, Object>> message) {
+        return Optional.of(replyConsumer);
+    }
+
+    private record ReplyConsumer(RequestReplyService requestReplyService) implements RawMessageConsumer {
+
+        @Override
+        public String getMessageListenerId() {
+            return BEAN_NAME;
+        }
+
+        @Override
+        public Class<?> getPayloadClass() {
+            return Map.class;
+        }
+
+        @Override
+        public void accept(Map<String, Object> payload, MessageHeaders headers) {
+            requestReplyService.completeRequest(MessageBuilder.createMessage(payload, headers));
+        }
+
+    }
+
+}
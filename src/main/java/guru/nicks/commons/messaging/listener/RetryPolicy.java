@@ -0,0 +1,104 @@
+package guru.nicks.commons.messaging.listener;
+
+import jakarta.validation.ValidationException;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Defines how {@link DispatchingMessageListener} retries {@link MessageConsumer#accept(Object, Object)} in-process,
+ * before the message is handed back to the binder (which would redeliver it, re-running logging, deserialization and
+ * validation).
+ */
+@Value
+@Builder(toBuilder = true)
+public class RetryPolicy {
+
+    /**
+     * No in-process retries.
+     */
+    public static final RetryPolicy NONE = RetryPolicy.builder()
+            .maxAttempts(1)
+            .build();
+
+    /**
+     * Total number of attempts, including the first one.
+     */
+    @Builder.Default
+    int maxAttempts = 1;
+
+    /**
+     * Delay before the first retry.
+     */
+    @Builder.Default
+    Duration initialBackoff = Duration.ofMillis(100);
+
+    /**
+     * Delay limit for retries.
+     */
+    @Builder.Default
+    Duration maxBackoff = Duration.ofSeconds(2);
+
+    /**
+     * Delay multiplier for each subsequent retry.
+     */
+    @Builder.Default
+    double multiplier = 2;
+
+    /**
+     * Random deviation of each delay, as a fraction of it (0.2 means +/-20%) - to prevent retries of different app
+     * instances from hitting the same downstream dependency at the same time.
+     */
+    @Builder.Default
+    double jitter = 0.2;
+
+    /**
+     * If not empty, only these exceptions (and their subclasses) are retried.
+     */
+    @Singular
+    Set<Class<? extends Throwable>> retryableExceptions;
+
+    /**
+     * These exceptions (and their subclasses) are never retried - neither in-process nor by the binder, see
+     * {@link NonRetryableMessageException}. Defaults to {@link ValidationException}.
+     */
+    @Builder.Default
+    Set<Class<? extends Throwable>> nonRetryableExceptions = Set.of(ValidationException.class);
+
+    /**
+     * Checks if the given exception should be retried.
+     *
+     * @param e exception
+     * @return {@code true} if retryable
+     */
+    public boolean isRetryable(Throwable e) {
+        if (nonRetryableExceptions.stream().anyMatch(clazz -> clazz.isInstance(e))) {
+            return false;
+        }
+
+        return retryableExceptions.isEmpty()
+                || retryableExceptions.stream().anyMatch(clazz -> clazz.isInstance(e));
+    }
+
+    /**
+     * Computes delay before the given retry.
+     *
+     * @param failedAttempts number of attempts made so far (1 for the first retry)
+     * @return exponential delay with jitter, not exceeding {@link #getMaxBackoff()}
+     */
+    public Duration getBackoff(int failedAttempts) {
+        double nanos = initialBackoff.toNanos() * Math.pow(multiplier, Math.max(0, failedAttempts - 1));
+        nanos = Math.min(nanos, maxBackoff.toNanos());
+
+        if (jitter > 0) {
+            nanos *= 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        }
+
+        return Duration.ofNanos((long) nanos);
+    }
+
+}
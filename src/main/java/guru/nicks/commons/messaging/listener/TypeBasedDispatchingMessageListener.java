@@ -2,22 +2,38 @@ package guru.nicks.commons.messaging.listener;
 
 import guru.nicks.commons.messaging.MessageType;
 import guru.nicks.commons.messaging.TypeAwareMessage;
+import guru.nicks.commons.messaging.impl.DeadLetterPublisherServiceImpl;
+import guru.nicks.commons.messaging.impl.NoOpMessageTypeResolver;
 import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
-import guru.nicks.commons.utils.ReflectionUtils;
+import guru.nicks.commons.messaging.service.MessagePublisherService;
 import guru.nicks.commons.validation.AnnotationValidator;
 
 import am.ik.yavi.meta.ConstraintArguments;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotNull;
@@ -26,21 +42,59 @@ import static java.util.function.Predicate.not;
 /**
  * Dispatches messages to consumers based on {@link MessageTypeResolver#readMessageType(Message)}.
  * <p>
- * Finds message consumers by their {@link TypeAwareMessage#getType()}.
+ * Finds message consumers by their {@link TypeAwareMessage#getType()}. If {@link #isFanOutEnabled()}, one message type
+ * may be bound to multiple consumers.
  */
 @Slf4j
 public abstract class TypeBasedDispatchingMessageListener extends DispatchingMessageListener
         implements MessageTypeResolver {
 
     /**
-     * Each key is {@link #getExpectedMessageType(MessageConsumer)}.
+     * Counter of messages skipped (or deferred) because of {@link #getLoadSheddingPolicy()}, tagged with listener ID
+     * and message type.
      */
-    @Getter(AccessLevel.PROTECTED)
-    private final Map<String, MessageConsumer> messageTypeToConsumer;
+    public static final String LOAD_SHED_MESSAGES_METER = "messaging.message.load.shed";
+
+    /**
+     * Replaced as a whole (copy-on-write) when consumers are registered, replaced, or disabled at runtime, so
+     * dispatching never takes a lock.
+     */
+    private volatile DispatchTable dispatchTable;
+
+    /**
+     * Serializes dispatch table updates - otherwise concurrent ones could overwrite each other.
+     */
+    private final Object dispatchTableLock = new Object();
 
     @Getter(AccessLevel.PROTECTED)
     private final MessageTypeResolver messageTypeResolver;
 
+    /**
+     * Created lazily because {@link #getLoadSheddingPolicy()} may depend on subclass fields.
+     */
+    private final Supplier<LoadSheddingController> loadSheddingController = Suppliers.memoize(() ->
+            Optional.ofNullable(getLoadSheddingPolicy())
+                    .map(LoadSheddingController::new)
+                    .orElse(LoadSheddingController.DISABLED));
+
+    /**
+     * Number of messages skipped (or deferred) because of {@link #getLoadSheddingPolicy()}.
+     */
+    private final AtomicLong loadShedMessageCount = new AtomicLong();
+
+    /**
+     * Per-message-type counters of shed messages, only populated if a meter registry is set. Keys are limited to
+     * {@link LoadSheddingPolicy#getSheddableMessageTypes()} and {@link MessageLatencyRecorder#UNKNOWN_MESSAGE_TYPE}.
+     */
+    private final Map<String, Counter> loadShedMessageCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Optional DI (see {@link #setMessagePublisherService(MessagePublisherService)}).
+     */
+    @Getter
+    @Nullable
+    private MessagePublisherService messagePublisherService;
+
     @ConstraintArguments
     protected TypeBasedDispatchingMessageListener(String appName,
             List<MessageConsumer> allMessageConsumers, MessageTypeResolver messageTypeResolver,
@@ -49,25 +103,29 @@ public abstract class TypeBasedDispatchingMessageListener extends DispatchingMes
 
         this.messageTypeResolver = checkNotNull(messageTypeResolver,
                 _TypeBasedDispatchingMessageListenerArgumentsMeta.MESSAGETYPERESOLVER.name());
-        var tmpMessageTypeToConsumer = new TreeMap<String, MessageConsumer>();
-
-        findLinkedMessageConsumers().forEach(consumer -> {
-            String messageType = getExpectedMessageType(consumer);
+        initDispatchTable();
+    }
 
-            if (tmpMessageTypeToConsumer.containsKey(messageType)) {
-                throw new IllegalStateException("Can't bind message consumer [" + consumer.getClass().getName() + "]: "
-                        + "message type '" + messageType + "' is already bound to consumer ["
-                        + tmpMessageTypeToConsumer.get(messageType).getClass().getName() + "]");
-            }
+    /**
+     * Same as {@link #TypeBasedDispatchingMessageListener(String, List, MessageTypeResolver, AnnotationValidator,
+     * ObjectMapper)}, but takes consumers (and their message types) out of the index shared by all listeners.
+     */
+    protected TypeBasedDispatchingMessageListener(String appName, MessageConsumerIndex messageConsumerIndex,
+            MessageTypeResolver messageTypeResolver, AnnotationValidator annotationValidator,
+            ObjectMapper objectMapper) {
+        super(appName, messageConsumerIndex, annotationValidator, objectMapper);
 
-            tmpMessageTypeToConsumer.put(messageType, consumer);
-        });
+        // same argument name as in the other constructor (annotating both would generate the same meta class twice)
+        this.messageTypeResolver = checkNotNull(messageTypeResolver,
+                _TypeBasedDispatchingMessageListenerArgumentsMeta.MESSAGETYPERESOLVER.name());
+        initDispatchTable();
+    }
 
-        // immutability and sorting (for readability)
-        messageTypeToConsumer = ImmutableSortedMap.copyOf(tmpMessageTypeToConsumer);
+    private void initDispatchTable() {
+        dispatchTable = buildDispatchTable(findLinkedMessageConsumers());
 
         // no exception, though
-        if (messageTypeToConsumer.isEmpty()) {
+        if (dispatchTable.messageTypeToConsumer().isEmpty()) {
             log.warn("Message listener [{}] accepts messages, but doesn't dispatch them: no consumers registered",
                     getClass().getName());
         } else {
@@ -85,6 +143,7 @@ public abstract class TypeBasedDispatchingMessageListener extends DispatchingMes
     @Override
     protected Optional<MessageConsumer> findMessageConsumer(Message<Map<String, Object>> message) {
         String messageType = readMessageType(message);
+        Map<String, MessageConsumer> messageTypeToConsumer = dispatchTable.messageTypeToConsumer();
         MessageConsumer consumer = messageTypeToConsumer.get(messageType);
 
         if (consumer == null) {
@@ -94,6 +153,351 @@ public abstract class TypeBasedDispatchingMessageListener extends DispatchingMes
         return Optional.ofNullable(consumer);
     }
 
+    /**
+     * Same as {@link #findMessageConsumer(Message)}, but returns all consumers bound to the message type.
+     *
+     * @param message message
+     * @return consumers, possibly empty
+     */
+    @Override
+    protected List<MessageConsumer> findMessageConsumers(Message<Map<String, Object>> message) {
+        String messageType = readMessageType(message);
+        Map<String, List<MessageConsumer>> messageTypeToConsumers = dispatchTable.messageTypeToConsumers();
+        List<MessageConsumer> consumers = messageTypeToConsumers.get(messageType);
+
+        if (consumers == null) {
+            consumers = messageTypeToConsumers.getOrDefault(UNKNOWN_MESSAGE_TYPE, List.of());
+        }
+
+        return consumers;
+    }
+
+    /**
+     * Each key is {@link #getExpectedMessageType(MessageConsumer)}. In fan-out mode, the value is the first consumer
+     * bound to the message type.
+     *
+     * @return current snapshot (immutable)
+     */
+    protected Map<String, MessageConsumer> getMessageTypeToConsumer() {
+        return dispatchTable.messageTypeToConsumer();
+    }
+
+    /**
+     * Each key is {@link #getExpectedMessageType(MessageConsumer)}. Each value has exactly one element, unless in
+     * fan-out mode.
+     *
+     * @return current snapshot (immutable)
+     */
+    protected Map<String, List<MessageConsumer>> getMessageTypeToConsumers() {
+        return dispatchTable.messageTypeToConsumers();
+    }
+
+    /**
+     * Binds one more consumer to this listener at runtime (for example, when a feature flag is turned on). Messages
+     * already being dispatched are not affected.
+     *
+     * @param consumer consumer whose {@link MessageConsumer#getMessageListenerId()} is {@link #getId()}
+     * @throws IllegalArgumentException consumer belongs to another listener or is already registered
+     * @throws IllegalStateException    consumer's message type is already bound to another consumer, and fan-out mode
+     *                                  is off
+     */
+    public void registerMessageConsumer(MessageConsumer consumer) {
+        checkNotNull(consumer, "consumer");
+        checkListenerId(consumer);
+
+        synchronized (dispatchTableLock) {
+            List<MessageConsumer> consumers = dispatchTable.consumers();
+            if (consumers.contains(consumer)) {
+                throw new IllegalArgumentException("Message consumer [" + consumer.getClass().getName()
+                        + "] is already registered");
+            }
+
+            var newConsumers = new ArrayList<>(consumers);
+            newConsumers.add(consumer);
+            dispatchTable = buildDispatchTable(newConsumers);
+        }
+
+        log.info("Registered message consumer [{}] in listener [{}]", consumer.getClass().getName(),
+                getClass().getName());
+        logRegisteredMessageConsumers();
+    }
+
+    /**
+     * Puts another consumer in place of a registered one at runtime (for example, for a canary release). The message
+     * type may change too.
+     *
+     * @param existingConsumer    registered consumer
+     * @param replacementConsumer consumer whose {@link MessageConsumer#getMessageListenerId()} is {@link #getId()}
+     * @throws IllegalArgumentException existing consumer is not registered, or replacement consumer belongs to another
+     *                                  listener or is already registered
+     * @throws IllegalStateException    replacement consumer's message type is already bound to another consumer, and
+     *                                  fan-out mode is off
+     */
+    public void replaceMessageConsumer(MessageConsumer existingConsumer, MessageConsumer replacementConsumer) {
+        checkNotNull(existingConsumer, "existingConsumer");
+        checkNotNull(replacementConsumer, "replacementConsumer");
+        checkListenerId(replacementConsumer);
+
+        synchronized (dispatchTableLock) {
+            List<MessageConsumer> consumers = dispatchTable.consumers();
+            int index = consumers.indexOf(existingConsumer);
+
+            if (index < 0) {
+                throw new IllegalArgumentException("Message consumer [" + existingConsumer.getClass().getName()
+                        + "] is not registered");
+            }
+
+            if (consumers.contains(replacementConsumer)) {
+                throw new IllegalArgumentException("Message consumer [" + replacementConsumer.getClass().getName()
+                        + "] is already registered");
+            }
+
+            // keep the position - it defines the order of fan-out
+            var newConsumers = new ArrayList<>(consumers);
+            newConsumers.set(index, replacementConsumer);
+            dispatchTable = buildDispatchTable(newConsumers);
+        }
+
+        log.info("Replaced message consumer [{}] with [{}] in listener [{}]", existingConsumer.getClass().getName(),
+                replacementConsumer.getClass().getName(), getClass().getName());
+        logRegisteredMessageConsumers();
+    }
+
+    /**
+     * Unbinds consumer from this listener at runtime (for example, when a feature flag is turned off). Its messages are
+     * then handled as unknown ones (see {@link #findMessageConsumers(Message)}). Messages already being dispatched are
+     * not affected.
+     *
+     * @param consumer consumer
+     * @return {@code false} if the consumer wasn't registered
+     */
+    public boolean disableMessageConsumer(MessageConsumer consumer) {
+        checkNotNull(consumer, "consumer");
+
+        synchronized (dispatchTableLock) {
+            List<MessageConsumer> consumers = dispatchTable.consumers();
+            if (!consumers.contains(consumer)) {
+                return false;
+            }
+
+            var newConsumers = new ArrayList<>(consumers);
+            newConsumers.remove(consumer);
+            dispatchTable = buildDispatchTable(newConsumers);
+        }
+
+        log.info("Disabled message consumer [{}] in listener [{}]", consumer.getClass().getName(),
+                getClass().getName());
+        logRegisteredMessageConsumers();
+        return true;
+    }
+
+    private void checkListenerId(MessageConsumer consumer) {
+        if (!getId().equals(consumer.getMessageListenerId())) {
+            throw new IllegalArgumentException("Message consumer [" + consumer.getClass().getName()
+                    + "] belongs to listener '" + consumer.getMessageListenerId() + "', not '" + getId() + "'");
+        }
+    }
+
+    /**
+     * Binds consumers to their message types.
+     *
+     * @param consumers consumers, in the fan-out order
+     * @return dispatch table
+     * @throws IllegalStateException a message type is bound to multiple consumers, and fan-out mode is off or their
+     *                               {@link MessageConsumer#getConsumerId()} are not unique
+     */
+    private DispatchTable buildDispatchTable(List<MessageConsumer> consumers) {
+        var tmpMessageTypeToConsumers = new TreeMap<String, List<MessageConsumer>>();
+        var consumerToMaxMessageAge = HashMap.<MessageConsumer, Duration>newHashMap(consumers.size());
+        boolean fanOut = isFanOutEnabled();
+
+        consumers.forEach(consumer -> {
+            String messageType = getExpectedMessageType(consumer);
+            List<MessageConsumer> boundConsumers = tmpMessageTypeToConsumers.get(messageType);
+
+            if ((boundConsumers != null) && !fanOut) {
+                throw new IllegalStateException("Can't bind message consumer [" + consumer.getClass().getName() + "]: "
+                        + "message type '" + messageType + "' is already bound to consumer ["
+                        + boundConsumers.getFirst().getClass().getName() + "]");
+            }
+
+            // fan-out tracks completions per consumer ID
+            if ((boundConsumers != null) && boundConsumers.stream()
+                    .anyMatch(boundConsumer -> boundConsumer.getConsumerId().equals(consumer.getConsumerId()))) {
+                throw new IllegalStateException("Can't bind message consumer [" + consumer.getClass().getName() + "]: "
+                        + "consumer ID '" + consumer.getConsumerId() + "' is not unique among consumers of message "
+                        + "type '" + messageType + "', override getConsumerId()");
+            }
+
+            tmpMessageTypeToConsumers.computeIfAbsent(messageType, key -> new ArrayList<>())
+                    .add(consumer);
+            consumerToMaxMessageAge.put(consumer, getExpectedMaxMessageAge(consumer));
+        });
+
+        // immutability and sorting (for readability)
+        var messageTypeToConsumersBuilder = ImmutableSortedMap.<String, List<MessageConsumer>>naturalOrder();
+        tmpMessageTypeToConsumers.forEach((messageType, boundConsumers) ->
+                messageTypeToConsumersBuilder.put(messageType, List.copyOf(boundConsumers)));
+        Map<String, List<MessageConsumer>> messageTypeToConsumers = messageTypeToConsumersBuilder.build();
+
+        return new DispatchTable(List.copyOf(consumers),
+                ImmutableSortedMap.copyOf(Maps.transformValues(messageTypeToConsumers, List::getFirst)),
+                messageTypeToConsumers, Map.copyOf(consumerToMaxMessageAge));
+    }
+
+    /**
+     * If {@code true}, multiple consumers may be bound to the same message type within this listener. Each of them
+     * receives every message of that type, and if some fail, only they receive the redelivered message (see
+     * {@link #fanOut(Message, List)}). This lets apps share one binding (and one consumer group) between multiple use
+     * cases.
+     * <p>
+     * WARNING: called from constructor, therefore must not depend on subclass fields.
+     *
+     * @return default implementation returns {@code false}
+     */
+    protected boolean isFanOutEnabled() {
+        return false;
+    }
+
+    /**
+     * Needed for republishing shed messages to {@link LoadSheddingPolicy#getDeferredTopic()}.
+     *
+     * @param messagePublisherService message publisher service
+     */
+    @Autowired(required = false)
+    public void setMessagePublisherService(@Nullable MessagePublisherService messagePublisherService) {
+        this.messagePublisherService = messagePublisherService;
+    }
+
+    /**
+     * Defines when low-value message types are skipped (or deferred) because the listener lags too far behind.
+     *
+     * @return default implementation returns {@code null} which means no load shedding
+     */
+    @Nullable
+    protected LoadSheddingPolicy getLoadSheddingPolicy() {
+        return null;
+    }
+
+    /**
+     * Returns load shedding statistics (smoothed lag, whether shedding is on).
+     *
+     * @return load shedding controller, {@link LoadSheddingController#DISABLED} if there's no
+     *         {@link #getLoadSheddingPolicy()}
+     */
+    public LoadSheddingController getLoadSheddingController() {
+        return loadSheddingController.get();
+    }
+
+    /**
+     * Returns the number of messages skipped (or deferred) because of {@link #getLoadSheddingPolicy()}.
+     *
+     * @return shed message count (since app startup)
+     */
+    public long getLoadShedMessageCount() {
+        return loadShedMessageCount.get();
+    }
+
+    /**
+     * Measures message lag and, while it's above {@link LoadSheddingPolicy#getLagThreshold()}, skips messages of
+     * {@link LoadSheddingPolicy#getSheddableMessageTypes()} or republishes them to
+     * {@link LoadSheddingPolicy#getDeferredTopic()}.
+     */
+    @Override
+    protected boolean tryShedLoad(Message<Map<String, Object>> message) {
+        LoadSheddingController controller = loadSheddingController.get();
+        if (!controller.isEnabled()) {
+            return false;
+        }
+
+        Long timestampMillis = getMessageTimestampMillis(message);
+        if (timestampMillis != null) {
+            controller.onMessage(Math.max(0, System.currentTimeMillis() - timestampMillis));
+        }
+
+        if (!controller.isShedding()) {
+            return false;
+        }
+
+        String messageType = readMessageType(message);
+        if (!controller.shouldShed(messageType)) {
+            return false;
+        }
+
+        loadShedMessageCount.incrementAndGet();
+
+        MeterRegistry meterRegistry = getMeterRegistry();
+        if (meterRegistry != null) {
+            // message types come from incoming messages - only those listed in the policy may become tags
+            String counterKey = controller.getPolicy().getSheddableMessageTypes().contains(messageType)
+                    ? messageType
+                    : MessageLatencyRecorder.UNKNOWN_MESSAGE_TYPE;
+
+            loadShedMessageCounters.computeIfAbsent(counterKey, key -> Counter.builder(LOAD_SHED_MESSAGES_METER)
+                            .tag(MessageLatencyRecorder.LISTENER_TAG, getId())
+                            .tag(MessageLatencyRecorder.MESSAGE_TYPE_TAG, key)
+                            .register(meterRegistry))
+                    .increment();
+        }
+
+        String deferredTopic = controller.getPolicy().getDeferredTopic();
+        if ((deferredTopic != null) && (messagePublisherService != null)) {
+            deferMessage(message, deferredTopic);
+        } else {
+            log.debug("Overloaded, skipping message of type '{}'", messageType);
+        }
+
+        return true;
+    }
+
+    private void deferMessage(Message<Map<String, Object>> message, String deferredTopic) {
+        byte[] messageKey = switch (message.getHeaders().get(KafkaHeaders.RECEIVED_KEY)) {
+            case byte[] bytes -> bytes;
+            case null -> null;
+            case Object key -> key.toString().getBytes(StandardCharsets.UTF_8);
+        };
+
+        // keep the original message type (if it's stored in a header), publish time (for latency tracking), etc.
+        Map<String, Object> extraHeaders = HashMap.newHashMap(message.getHeaders().size());
+        message.getHeaders().forEach((name, value) -> {
+            if (DeadLetterPublisherServiceImpl.isApplicationHeader(name)) {
+                extraHeaders.put(name, value);
+            }
+        });
+
+        // the message type is already in the payload or in the copied headers, there's nothing to (re)write
+        messagePublisherService.publish(deferredTopic, message.getPayload(), messageKey,
+                NoOpMessageTypeResolver.INSTANCE, extraHeaders);
+    }
+
+    /**
+     * Returns {@link #readMessageType(Message)}, or {@code null} if it fails (diagnostics must not break dispatching).
+     */
+    @Nullable
+    @Override
+    protected String getMessageTypeForDiagnostics(Message<Map<String, Object>> message) {
+        try {
+            return readMessageType(message);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns {@link #getMessageTypeForDiagnostics(Message)} if there are consumers bound to it, otherwise {@code null}
+     * - so that arbitrary message types don't inflate the number of time series.
+     */
+    @Nullable
+    @Override
+    protected String getMessageTypeForMetrics(Message<Map<String, Object>> message) {
+        String messageType = getMessageTypeForDiagnostics(message);
+
+        return ((messageType == null) || UNKNOWN_MESSAGE_TYPE.equals(messageType)
+                || !dispatchTable.messageTypeToConsumers().containsKey(messageType))
+                ? null
+                : messageType;
+    }
+
     /**
      * Delegates to {@link MessageTypeResolver}.
      */
@@ -126,10 +530,11 @@ public abstract class TypeBasedDispatchingMessageListener extends DispatchingMes
     }
 
     /**
-     * Pretty-prints {@link #getMessageTypeToConsumer()}.
+     * Pretty-prints {@link #getMessageTypeToConsumers()}.
      */
     protected void logRegisteredMessageConsumers() {
-        String formattedMessageConsumers = messageTypeToConsumer.entrySet()
+        Map<String, List<MessageConsumer>> messageTypeToConsumers = dispatchTable.messageTypeToConsumers();
+        String formattedMessageConsumers = messageTypeToConsumers.entrySet()
                 .stream()
                 .map(mapEntry ->
                         // message type: if not 'unknown', wrap in quotes
@@ -138,14 +543,17 @@ public abstract class TypeBasedDispatchingMessageListener extends DispatchingMes
                                 .map(messageType -> "'" + messageType + "'")
                                 .orElse("<UNKNOWN/UNBOUND>")
                                 + " → "
-                                // consumer bound to this message type
-                                + mapEntry.getValue().getClass().getName()
-                                + "[payload: " + getExpectedPayloadClass(mapEntry.getValue()).getName() + "]")
+                                // consumer(s) bound to this message type
+                                + mapEntry.getValue()
+                                .stream()
+                                .map(consumer -> consumer.getClass().getName()
+                                        + "[payload: " + getExpectedPayloadClass(consumer).getName() + "]")
+                                .collect(Collectors.joining(", ")))
                 // join message types
                 .collect(Collectors.joining("; "));
 
         log.info("Message listener [{}] dispatches {} message type{}: {}", getClass().getName(),
-                messageTypeToConsumer.size(), (messageTypeToConsumer.size() == 1) ? "" : "s",
+                messageTypeToConsumers.size(), (messageTypeToConsumers.size() == 1) ? "" : "s",
                 formattedMessageConsumers);
     }
 
@@ -154,9 +562,12 @@ public abstract class TypeBasedDispatchingMessageListener extends DispatchingMes
      * <ul>
      *  <li>if {@link MessageConsumer#consumeUnknownMessageTypes()} is {@code true}, it's
      *      {@link MessageTypeResolver#UNKNOWN_MESSAGE_TYPE}</li>
+     *  <li>if {@link MessageConsumer#getMessageType()} is not {@code null}, it's its
+     *      {@link MessageType#getMessageBrokerValue()}</li>
      *  <li>otherwise {@link MessageType#getMessageBrokerValue()} is called on the payload object instantiated for that
      *      purpose (its class must inherit from {@link TypeAwareMessage} in that case)</li>
      * </ul>
+     * Cached in {@link #getMessageConsumerIndex()}, if it's set.
      *
      * @param messageConsumer message consumer
      * @return message type the consumer expects
@@ -164,33 +575,56 @@ public abstract class TypeBasedDispatchingMessageListener extends DispatchingMes
      *                               instantiated
      */
     protected String getExpectedMessageType(MessageConsumer<?> messageConsumer) {
-        if (messageConsumer.consumeUnknownMessageTypes()) {
-            return UNKNOWN_MESSAGE_TYPE;
-        }
+        MessageConsumerIndex messageConsumerIndex = getMessageConsumerIndex();
 
-        Class<?> payloadClass = getExpectedPayloadClass(messageConsumer);
+        return (messageConsumerIndex == null)
+                ? MessageConsumerIndex.resolveMessageType(messageConsumer, getExpectedPayloadClass(messageConsumer))
+                : messageConsumerIndex.getMessageType(messageConsumer);
+    }
 
-        if (!TypeAwareMessage.class.isAssignableFrom(payloadClass)) {
-            throw new IllegalStateException("Payload class must inherit from " + TypeAwareMessage.class.getName()
-                    + ": " + payloadClass.getName());
-        }
+    /**
+     * Returns {@link MessageConsumer#getMaxMessageAge()} or, if it's {@code null}, max. age of the message type the
+     * consumer is bound to (see {@link #getExpectedMessageType(MessageConsumer)}). Cached in
+     * {@link #getMessageConsumerIndex()}, if it's set.
+     *
+     * @param messageConsumer message consumer
+     * @return max. message age, non-positive means unlimited
+     * @throws IllegalStateException if payload class doesn't inherit from {@link TypeAwareMessage} or can't be
+     *                               instantiated
+     */
+    protected Duration getExpectedMaxMessageAge(MessageConsumer<?> messageConsumer) {
+        MessageConsumerIndex messageConsumerIndex = getMessageConsumerIndex();
 
-        // it's OK to have empty message type (which by design means unknown/unbound), but never null
-        TypeAwareMessage<?> payload;
-        try {
-            payload = (TypeAwareMessage<?>) ReflectionUtils.instantiateEvenWithoutDefaultConstructor(payloadClass);
-        } catch (Exception e) {
-            throw new IllegalStateException(String.format(
-                    "Failed to instantiate payload class [%s] for message type extraction: %s",
-                    payloadClass.getName(), e.getMessage()), e);
-        }
+        return (messageConsumerIndex == null)
+                ? MessageConsumerIndex.resolveMaxMessageAge(messageConsumer, getExpectedPayloadClass(messageConsumer))
+                : messageConsumerIndex.getMaxMessageAge(messageConsumer);
+    }
+
+    /**
+     * Looks up {@link #getExpectedMaxMessageAge(MessageConsumer)} resolved when the consumer was bound.
+     */
+    @Override
+    protected Duration getMaxMessageAge(MessageConsumer consumer) {
+        Duration maxMessageAge = dispatchTable.consumerToMaxMessageAge().get(consumer);
 
-        checkNotNull(payload.getType(), payloadClass.getName() + ".type");
+        return (maxMessageAge == null)
+                ? super.getMaxMessageAge(consumer)
+                : maxMessageAge;
+    }
 
-        @SuppressWarnings("java:S1488") // redundant local variable, for debugging
-        String messageType = checkNotNull(payload.getType().getMessageBrokerValue(),
-                payloadClass.getName() + ".type.messageBrokerValue");
-        return messageType;
+    /**
+     * Immutable snapshot of consumer bindings.
+     *
+     * @param consumers               all registered consumers, in the fan-out order
+     * @param messageTypeToConsumer   see {@link #getMessageTypeToConsumer()}
+     * @param messageTypeToConsumers  see {@link #getMessageTypeToConsumers()}
+     * @param consumerToMaxMessageAge see {@link #getExpectedMaxMessageAge(MessageConsumer)}
+     */
+    private record DispatchTable(
+            List<MessageConsumer> consumers,
+            Map<String, MessageConsumer> messageTypeToConsumer,
+            Map<String, List<MessageConsumer>> messageTypeToConsumers,
+            Map<MessageConsumer, Duration> consumerToMaxMessageAge) {
     }
 
 }
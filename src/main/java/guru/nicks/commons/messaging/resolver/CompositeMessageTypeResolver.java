@@ -0,0 +1,161 @@
+package guru.nicks.commons.messaging.resolver;
+
+import guru.nicks.commons.messaging.TypeAwareMessage;
+
+import am.ik.yavi.meta.ConstraintArguments;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static guru.nicks.commons.validation.dsl.ValiDsl.checkNotBlank;
+
+/**
+ * Helps migrating from {@link PayloadBasedMessageTypeResolver} to {@link HeaderBasedMessageTypeResolver} when some
+ * producers haven't been migrated yet. Reads the header first (no payload parsing needed for routing) and only if it's
+ * missing, falls back on the payload field - counting such fallbacks, so it's clear when all producers have switched
+ * to headers. Always writes the header; in migration mode, writes the payload field too, for consumers that haven't
+ * been migrated yet.
+ * <p>
+ * If there's a meter registry, resolved message types are also counted in {@link #RESOLVED_MESSAGE_TYPES_METER},
+ * tagged with the resolver that has found them.
+ */
+public class CompositeMessageTypeResolver implements MessageTypeResolver {
+
+    /**
+     * Counter of message types read, tagged with {@link #RESOLVER_TAG}.
+     */
+    public static final String RESOLVED_MESSAGE_TYPES_METER = "messaging.message.type.resolved";
+
+    /**
+     * Tag telling which resolver has found the message type: {@link #HEADER_RESOLVER} or {@link #PAYLOAD_RESOLVER}.
+     */
+    public static final String RESOLVER_TAG = "resolver";
+    public static final String HEADER_RESOLVER = "header";
+    public static final String PAYLOAD_RESOLVER = "payload";
+
+    @Getter
+    private final HeaderBasedMessageTypeResolver headerBasedResolver;
+    @Getter
+    private final PayloadBasedMessageTypeResolver payloadBasedResolver;
+
+    /**
+     * Whether to write the message type to the payload field as well as to the header.
+     */
+    @Getter
+    private final boolean migrationMode;
+
+    private final AtomicLong fallbackCount = new AtomicLong();
+
+    /**
+     * Optional DI (see {@link #setMeterRegistry(MeterRegistry)}).
+     */
+    @Nullable
+    private volatile Counter headerResolvedCounter;
+    @Nullable
+    private volatile Counter payloadResolvedCounter;
+
+    @ConstraintArguments
+    public CompositeMessageTypeResolver(String headerMessageTypeField, String payloadMessageTypeField,
+            boolean migrationMode) {
+        checkNotBlank(headerMessageTypeField,
+                _CompositeMessageTypeResolverArgumentsMeta.HEADERMESSAGETYPEFIELD.name());
+        checkNotBlank(payloadMessageTypeField,
+                _CompositeMessageTypeResolverArgumentsMeta.PAYLOADMESSAGETYPEFIELD.name());
+
+        headerBasedResolver = new HeaderBasedMessageTypeResolver(headerMessageTypeField, payloadMessageTypeField);
+        payloadBasedResolver = new PayloadBasedMessageTypeResolver(payloadMessageTypeField);
+        this.migrationMode = migrationMode;
+    }
+
+    /**
+     * Returns the number of messages whose type was found in the payload only - once it stops growing, all producers
+     * write the header, and migration mode can be turned off.
+     *
+     * @return fallback count (since app startup)
+     */
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    /**
+     * Needed for counting resolved message types per resolver (see {@link #RESOLVED_MESSAGE_TYPES_METER}).
+     *
+     * @param meterRegistry meter registry
+     */
+    @Autowired(required = false)
+    public void setMeterRegistry(@Nullable MeterRegistry meterRegistry) {
+        headerResolvedCounter = (meterRegistry == null)
+                ? null
+                : createResolvedCounter(meterRegistry, HEADER_RESOLVER);
+        payloadResolvedCounter = (meterRegistry == null)
+                ? null
+                : createResolvedCounter(meterRegistry, PAYLOAD_RESOLVER);
+    }
+
+    /**
+     * @return message header (see {@link HeaderBasedMessageTypeResolver#readMessageType(Message)}) if it's not blank,
+     *         otherwise payload field (see {@link PayloadBasedMessageTypeResolver#readMessageType(Message)}) if it's
+     *         not blank, otherwise {@link MessageTypeResolver#UNKNOWN_MESSAGE_TYPE}
+     */
+    @Override
+    public String readMessageType(Message<Map<String, Object>> source) {
+        String messageType = headerBasedResolver.readMessageType(source);
+        if (!UNKNOWN_MESSAGE_TYPE.equals(messageType)) {
+            increment(headerResolvedCounter);
+            return messageType;
+        }
+
+        messageType = payloadBasedResolver.readMessageType(source);
+        if (!UNKNOWN_MESSAGE_TYPE.equals(messageType)) {
+            fallbackCount.incrementAndGet();
+            increment(payloadResolvedCounter);
+        }
+
+        return messageType;
+    }
+
+    /**
+     * Writes message header and, in migration mode, payload field.
+     */
+    @Override
+    public void writeMessageType(TypeAwareMessage<?> sourcePayload, Map<String, Object> targetPayload,
+            Map<String, Object> targetHeaders) {
+        headerBasedResolver.writeMessageType(sourcePayload, targetPayload, targetHeaders);
+
+        if (migrationMode) {
+            payloadBasedResolver.writeMessageType(sourcePayload, targetPayload, targetHeaders);
+        }
+    }
+
+    /**
+     * Writes message header and, in migration mode, payload field.
+     */
+    @Override
+    public void writeMessageType(Map<String, Object> sourcePayload, Map<String, Object> targetPayload,
+            Map<String, Object> targetHeaders) {
+        headerBasedResolver.writeMessageType(sourcePayload, targetPayload, targetHeaders);
+
+        if (migrationMode) {
+            payloadBasedResolver.writeMessageType(sourcePayload, targetPayload, targetHeaders);
+        }
+    }
+
+    private static Counter createResolvedCounter(MeterRegistry meterRegistry, String resolver) {
+        return Counter.builder(RESOLVED_MESSAGE_TYPES_METER)
+                .tag(RESOLVER_TAG, resolver)
+                .register(meterRegistry);
+    }
+
+    private static void increment(@Nullable Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+}
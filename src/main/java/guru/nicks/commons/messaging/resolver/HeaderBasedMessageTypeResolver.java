@@ -45,16 +45,17 @@ public class HeaderBasedMessageTypeResolver implements MessageTypeResolver {
     }
 
     /**
-     * Copies {@link TypeAwareMessage#getType()} stringified with {@link MessageType#getMessageBrokerValue()} - if it's
-     * not blank - to {@link #getHeaderMessageTypeField()} message header.
+     * Copies {@link TypeAwareMessage#getType()} stringified with {@link MessageType#getMessageBrokerValue()} (cached
+     * with {@link MessageBrokerValues}) - if it's not blank - to {@link #getHeaderMessageTypeField()} message header.
      */
     @Override
     public void writeMessageType(TypeAwareMessage<?> sourcePayload, Map<String, Object> targetPayload,
             Map<String, Object> targetHeaders) {
-        Optional.ofNullable(sourcePayload.getType())
-                .map(MessageType::getMessageBrokerValue)
-                .filter(StringUtils::isNotBlank)
-                .ifPresent(messageType -> targetHeaders.put(headerMessageTypeField, messageType));
+        String messageType = MessageBrokerValues.getBrokerValue(sourcePayload.getType());
+
+        if (messageType != null) {
+            targetHeaders.put(headerMessageTypeField, messageType);
+        }
     }
 
     /**
@@ -0,0 +1,74 @@
+package guru.nicks.commons.messaging.resolver;
+
+import guru.nicks.commons.messaging.MessageType;
+
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Caches validated {@link MessageType#getMessageBrokerValue()} for enums implementing {@link MessageType} (which is
+ * the typical case) - so the publish path doesn't call and re-check it for each message. Therefore, such enums must
+ * return constant broker values: each constant's value is read once per class loader. Other message types are not
+ * cached (they may be created per message, so caching them would leak memory).
+ */
+public final class MessageBrokerValues {
+
+    private static final CachedValue NONE = new CachedValue(null);
+
+    /**
+     * Per enum class, indexed by {@link Enum#ordinal()}. {@link ClassValue} doesn't prevent class unloading.
+     */
+    private static final ClassValue<CachedValue[]> ENUM_VALUES = new ClassValue<>() {
+
+        @Override
+        protected CachedValue[] computeValue(Class<?> type) {
+            Object[] constants = type.getEnumConstants();
+            var values = new CachedValue[constants.length];
+
+            for (int i = 0; i < constants.length; i++) {
+                values[i] = CachedValue.of((MessageType) constants[i]);
+            }
+
+            return values;
+        }
+
+    };
+
+    private MessageBrokerValues() {
+    }
+
+    /**
+     * Returns {@link MessageType#getMessageBrokerValue()} if it's not blank.
+     *
+     * @param messageType message type
+     * @return broker value, {@code null} if message type is {@code null} or its broker value is blank
+     */
+    @Nullable
+    public static String getBrokerValue(@Nullable MessageType messageType) {
+        return get(messageType).value();
+    }
+
+    private static CachedValue get(@Nullable MessageType messageType) {
+        if (messageType == null) {
+            return NONE;
+        }
+
+        // constants having bodies are subclasses of the enum class, hence getDeclaringClass()
+        return (messageType instanceof Enum<?> constant)
+                ? ENUM_VALUES.get(constant.getDeclaringClass())[constant.ordinal()]
+                : CachedValue.of(messageType);
+    }
+
+    private record CachedValue(@Nullable String value) {
+
+        static CachedValue of(MessageType messageType) {
+            String value = messageType.getMessageBrokerValue();
+
+            return StringUtils.isNotBlank(value)
+                    ? new CachedValue(value)
+                    : NONE;
+        }
+
+    }
+
+}
@@ -41,16 +41,18 @@ public class PayloadBasedMessageTypeResolver implements MessageTypeResolver {
     }
 
     /**
-     * Copies {@link TypeAwareMessage#getType()} stringified with {@link MessageType#getMessageBrokerValue()} - if it's
-     * not blank - to {@link #getPayloadMessageTypeField()} target payload field.
+     * Copies {@link TypeAwareMessage#getType()} stringified with {@link MessageType#getMessageBrokerValue()} (cached
+     * with {@link MessageBrokerValues}) - if it's not blank - to {@link #getPayloadMessageTypeField()} target payload
+     * field.
      */
     @Override
     public void writeMessageType(TypeAwareMessage<?> sourcePayload, Map<String, Object> targetPayload,
             Map<String, Object> targetHeaders) {
-        Optional.ofNullable(sourcePayload.getType())
-                .map(MessageType::getMessageBrokerValue)
-                .filter(StringUtils::isNotBlank)
-                .ifPresent(messageType -> targetPayload.put(payloadMessageTypeField, messageType));
+        String messageType = MessageBrokerValues.getBrokerValue(sourcePayload.getType());
+
+        if (messageType != null) {
+            targetPayload.put(payloadMessageTypeField, messageType);
+        }
     }
 
     /**
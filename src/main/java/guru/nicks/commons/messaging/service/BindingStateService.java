@@ -0,0 +1,47 @@
+package guru.nicks.commons.messaging.service;
+
+import java.time.Duration;
+
+/**
+ * Pauses and resumes message consumption of Spring Cloud Stream bindings. Pausing a Kafka binding doesn't leave the
+ * consumer group: the binder keeps polling (and therefore sending heartbeats) without fetching records, which prevents
+ * rebalancing caused by exceeding {@code max.poll.interval.ms}.
+ * <p>
+ * Pauses are reference-counted: independent callers (such as consumer throttling and backpressure) may pause the same
+ * binding, and it's resumed only when each of them has called {@link #resume(String)}.
+ */
+public interface BindingStateService {
+
+    /**
+     * Pauses the binding, unless it's already paused. Each call MUST be followed by exactly one
+     * {@link #resume(String)}.
+     *
+     * @param bindingName binding name, such as {@code someListener-in-0}
+     */
+    void pause(String bindingName);
+
+    /**
+     * Resumes the binding if this is the last outstanding {@link #pause(String)}. Does nothing if the binding is not
+     * paused (by this service).
+     *
+     * @param bindingName binding name, such as {@code someListener-in-0}
+     */
+    void resume(String bindingName);
+
+    /**
+     * Pauses the binding and schedules {@link #resume(String)} after the given duration, without blocking the caller.
+     *
+     * @param bindingName binding name, such as {@code someListener-in-0}
+     * @param duration    how long to pause for
+     */
+    void pauseFor(String bindingName, Duration duration);
+
+    /**
+     * Checks if the binding has been paused by this service.
+     *
+     * @param bindingName binding name
+     * @return {@code true} if paused
+     */
+    boolean isPaused(String bindingName);
+
+}
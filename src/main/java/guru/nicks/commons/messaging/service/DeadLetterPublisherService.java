@@ -0,0 +1,35 @@
+package guru.nicks.commons.messaging.service;
+
+import guru.nicks.commons.messaging.DeadLetterMetadata;
+
+import org.springframework.messaging.Message;
+
+import java.util.Map;
+
+/**
+ * Publishes messages that failed to be consumed to dead letter topics, adding failure metadata headers.
+ */
+public interface DeadLetterPublisherService {
+
+    String HEADER_PREFIX = "x-dlq-";
+    String LISTENER_ID_HEADER = HEADER_PREFIX + "listener-id";
+    String CONSUMER_CLASS_HEADER = HEADER_PREFIX + "consumer-class";
+    String EXCEPTION_CLASS_HEADER = HEADER_PREFIX + "exception-class";
+    String EXCEPTION_MESSAGE_HEADER = HEADER_PREFIX + "exception-message";
+    String ATTEMPTS_HEADER = HEADER_PREFIX + "attempts";
+    String ORIGINAL_TOPIC_HEADER = HEADER_PREFIX + "original-topic";
+    String ORIGINAL_PARTITION_HEADER = HEADER_PREFIX + "original-partition";
+    String ORIGINAL_OFFSET_HEADER = HEADER_PREFIX + "original-offset";
+
+    /**
+     * Publishes the failed message (its payload, key, and application headers) in the caller thread - listeners must
+     * not acknowledge the failed message until it has been dead-lettered.
+     *
+     * @param deadLetterTopic topic to publish to
+     * @param failedMessage   message that failed to be consumed
+     * @param metadata        failure details, rendered as headers
+     * @throws RuntimeException publishing failed
+     */
+    void publish(String deadLetterTopic, Message<Map<String, Object>> failedMessage, DeadLetterMetadata metadata);
+
+}
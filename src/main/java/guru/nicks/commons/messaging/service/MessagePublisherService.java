@@ -4,18 +4,28 @@ import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
 
 import jakarta.annotation.Nullable;
 
+import java.util.Map;
+
 /**
  * Message publisher.
  */
 public interface MessagePublisherService {
 
+    /**
+     * Wall-clock publish time in microseconds since the epoch ({@link Long}). Set on each published message unless
+     * already present in extra headers (so relays can preserve the original time).
+     */
+    String PUBLISH_TIMESTAMP_HEADER = "x-publish-timestamp-micros";
+
     /**
      * Publishes to the given topic.
      *
      * @param topic      topic
      * @param payload    payload
-     * @param messageKey message key ({@link Object#toString()} will be called if it's not {@code null}) affecting how
-     *                   Kafka picks a partition for the message
+     * @param messageKey message key affecting how Kafka picks a partition for the message; converted to bytes with
+     *                   {@link guru.nicks.commons.messaging.key.MessageKeyEncoders} (which falls back to
+     *                   {@link Object#toString()}); if {@code null}, payload's
+     *                   {@link guru.nicks.commons.messaging.MessageKeyAwareMessage#getRawMessageKey()} is used, if any
      * @throws IllegalArgumentException payload class is not one of those that {@link MessageTypeResolver} accepts in
      *                                  its {@code writeMessageType} methods
      */
@@ -32,4 +42,44 @@ public interface MessagePublisherService {
      */
     void publish(String topic, Object payload, @Nullable byte[] messageKey, MessageTypeResolver messageTypeResolver);
 
+    /**
+     * Publishes payload with extra headers to the given topic.
+     *
+     * @param topic        topic
+     * @param payload      payload
+     * @param messageKey   message key affecting how Kafka picks a partition for the message
+     * @param extraHeaders headers to add to the message (message key and message type take precedence over them)
+     * @throws IllegalArgumentException      payload class is not one of those that {@link MessageTypeResolver} accepts
+     *                                       in its {@code writeMessageType} methods
+     * @throws UnsupportedOperationException default implementation, which delegates to
+     *                                       {@link #publish(String, Object, byte[], MessageTypeResolver)}, throws it if
+     *                                       extra headers are not empty
+     */
+    default void publish(String topic, Object payload, @Nullable byte[] messageKey,
+            MessageTypeResolver messageTypeResolver, Map<String, Object> extraHeaders) {
+        if (!extraHeaders.isEmpty()) {
+            throw new UnsupportedOperationException(getClass().getName() + " doesn't support extra headers");
+        }
+
+        publish(topic, payload, messageKey, messageTypeResolver);
+    }
+
+    /**
+     * Publishes payload to the given partition of the given topic, bypassing partition selection (both the producer's
+     * and {@link guru.nicks.commons.messaging.key.MessagePartitioner}).
+     *
+     * @param topic      topic
+     * @param payload    payload
+     * @param messageKey message key, see {@link #publish(String, Object, Object, MessageTypeResolver)}
+     * @param partition  partition (must exist in the topic, otherwise the producer fails)
+     * @throws IllegalArgumentException      partition is negative or payload class is not one of those that
+     *                                       {@link MessageTypeResolver} accepts in its {@code writeMessageType} methods
+     * @throws UnsupportedOperationException default implementation always throws it (publishing without the partition
+     *                                       would silently break the ordering the caller relies on)
+     */
+    default void publishToPartition(String topic, Object payload, @Nullable Object messageKey, int partition,
+            MessageTypeResolver messageTypeResolver) {
+        throw new UnsupportedOperationException(getClass().getName() + " doesn't support explicit partitions");
+    }
+
 }
@@ -0,0 +1,73 @@
+package guru.nicks.commons.messaging.service;
+
+import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
+
+import jakarta.annotation.Nullable;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Reactive message publisher. Nothing is published until the returned {@link Mono} is subscribed to.
+ *
+ * @see MessagePublisherService
+ */
+public interface ReactiveMessagePublisherService {
+
+    /**
+     * Publishes to the given topic.
+     *
+     * @param topic      topic
+     * @param payload    payload
+     * @param messageKey message key ({@link Object#toString()} will be called if it's not {@code null}) affecting how
+     *                   Kafka picks a partition for the message
+     * @return completes when the message has been handed over to the binder, errors with
+     *         {@link IllegalArgumentException} if payload class is not one of those that {@link MessageTypeResolver}
+     *         accepts in its {@code writeMessageType} methods
+     */
+    Mono<Void> publish(String topic, Object payload, @Nullable Object messageKey,
+            MessageTypeResolver messageTypeResolver);
+
+    /**
+     * Publishes payload to the given topic.
+     *
+     * @param topic      topic
+     * @param payload    payload
+     * @param messageKey message key affecting how Kafka picks a partition for the message
+     * @return completes when the message has been handed over to the binder, errors with
+     *         {@link IllegalArgumentException} if payload class is not one of those that {@link MessageTypeResolver}
+     *         accepts in its {@code writeMessageType} methods
+     */
+    Mono<Void> publish(String topic, Object payload, @Nullable byte[] messageKey,
+            MessageTypeResolver messageTypeResolver);
+
+    /**
+     * Publishes payload with extra headers to the given topic.
+     *
+     * @param topic        topic
+     * @param payload      payload
+     * @param messageKey   message key affecting how Kafka picks a partition for the message
+     * @param extraHeaders headers to add to the message (message key and message type take precedence over them)
+     * @return completes when the message has been handed over to the binder, errors with
+     *         {@link IllegalArgumentException} if payload class is not one of those that {@link MessageTypeResolver}
+     *         accepts in its {@code writeMessageType} methods
+     */
+    Mono<Void> publish(String topic, Object payload, @Nullable byte[] messageKey,
+            MessageTypeResolver messageTypeResolver, Map<String, Object> extraHeaders);
+
+    /**
+     * Publishes payload to the given partition of the given topic, see
+     * {@link MessagePublisherService#publishToPartition(String, Object, Object, int, MessageTypeResolver)}.
+     *
+     * @param topic      topic
+     * @param payload    payload
+     * @param messageKey message key
+     * @param partition  partition
+     * @return completes when the message has been handed over to the binder, errors with
+     *         {@link IllegalArgumentException} if partition is negative or payload class is not one of those that
+     *         {@link MessageTypeResolver} accepts in its {@code writeMessageType} methods
+     */
+    Mono<Void> publishToPartition(String topic, Object payload, @Nullable Object messageKey, int partition,
+            MessageTypeResolver messageTypeResolver);
+
+}
@@ -0,0 +1,80 @@
+package guru.nicks.commons.messaging.service;
+
+import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
+
+import jakarta.annotation.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Request-reply messaging on top of {@link MessagePublisherService}. Requests carry {@link #CORRELATION_ID_HEADER}
+ * and {@link #REPLY_TOPIC_HEADER}; responders publish replies with {@link #reply(MessageHeaders, Object, byte[],
+ * MessageTypeResolver)}, which copies the correlation ID, and replies are matched to requests by
+ * {@link guru.nicks.commons.messaging.listener.ReplyMessageListener}. No thread is blocked while waiting for replies.
+ */
+public interface RequestReplyService {
+
+    /**
+     * Unique (within the requesting app instance) request ID, echoed in the reply.
+     */
+    String CORRELATION_ID_HEADER = "x-correlation-id";
+
+    /**
+     * Topic to send the reply to.
+     */
+    String REPLY_TOPIC_HEADER = "x-reply-topic";
+
+    /**
+     * Publishes the request to the given topic.
+     * <p>
+     * The returned future is completed by the reply listener thread (or, on timeout, by the timer thread), so
+     * dependent stages doing more than trivial work should use {@code *Async} methods.
+     *
+     * @param topic               topic
+     * @param payload             payload
+     * @param messageKey          message key affecting how Kafka picks a partition for the message
+     * @param messageTypeResolver message type resolver
+     * @param timeout             how long to wait for the reply
+     * @return completes with the reply message, or fails with {@link TimeoutException} if there's no reply in time, or
+     *         with the exception thrown while publishing the request
+     * @throws IllegalArgumentException timeout is not positive
+     * @throws IllegalStateException    the service has been shut down
+     */
+    CompletableFuture<Message<Map<String, Object>>> request(String topic, Object payload, @Nullable byte[] messageKey,
+            MessageTypeResolver messageTypeResolver, Duration timeout);
+
+    /**
+     * Publishes the reply to {@link #REPLY_TOPIC_HEADER} of the request, with its {@link #CORRELATION_ID_HEADER}.
+     *
+     * @param requestHeaders      request headers
+     * @param payload             payload
+     * @param messageKey          message key affecting how Kafka picks a partition for the message
+     * @param messageTypeResolver message type resolver
+     * @throws IllegalArgumentException request headers lack {@link #REPLY_TOPIC_HEADER} or
+     *                                  {@link #CORRELATION_ID_HEADER}
+     */
+    void reply(MessageHeaders requestHeaders, Object payload, @Nullable byte[] messageKey,
+            MessageTypeResolver messageTypeResolver);
+
+    /**
+     * Completes the pending request having the reply's {@link #CORRELATION_ID_HEADER}.
+     *
+     * @param reply reply message
+     * @return {@code false} if there's no such request (it has timed out, has been sent by another app instance, or
+     *         the reply is a duplicate)
+     */
+    boolean completeRequest(Message<Map<String, Object>> reply);
+
+    /**
+     * Returns the number of requests waiting for replies.
+     *
+     * @return pending request count
+     */
+    int getPendingRequestCount();
+
+}
@@ -0,0 +1,85 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.messaging.impl.StreamBindingStateServiceImpl;
+
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.stream.binding.BindingsLifecycleController;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Step definitions for testing {@link StreamBindingStateServiceImpl}.
+ */
+public class BindingStateServiceSteps {
+
+    @Mock
+    private ObjectProvider<BindingsLifecycleController> bindingsLifecycleControllerProvider;
+    @Mock
+    private BindingsLifecycleController bindingsLifecycleController;
+    private AutoCloseable closeableMocks;
+
+    private StreamBindingStateServiceImpl bindingStateService;
+
+    @Before
+    public void beforeEachScenario() {
+        closeableMocks = MockitoAnnotations.openMocks(this);
+        when(bindingsLifecycleControllerProvider.getIfAvailable())
+                .thenReturn(bindingsLifecycleController);
+    }
+
+    @After
+    public void afterEachScenario() throws Exception {
+        if (bindingStateService != null) {
+            bindingStateService.close();
+            bindingStateService = null;
+        }
+
+        closeableMocks.close();
+    }
+
+    @Given("a binding state service")
+    public void aBindingStateService() {
+        bindingStateService = new StreamBindingStateServiceImpl(bindingsLifecycleControllerProvider);
+    }
+
+    @When("binding {string} is paused")
+    public void bindingIsPaused(String bindingName) {
+        bindingStateService.pause(bindingName);
+    }
+
+    @When("binding {string} is resumed")
+    public void bindingIsResumed(String bindingName) {
+        bindingStateService.resume(bindingName);
+    }
+
+    @Then("binding {string} should be paused")
+    public void bindingShouldBePaused(String bindingName) {
+        assertThat(bindingStateService.isPaused(bindingName))
+                .as("paused")
+                .isTrue();
+    }
+
+    @Then("binding {string} should not be paused")
+    public void bindingShouldNotBePaused(String bindingName) {
+        assertThat(bindingStateService.isPaused(bindingName))
+                .as("paused")
+                .isFalse();
+    }
+
+    @Then("binding {string} state should be changed to {string} {int} time(s)")
+    public void bindingStateShouldBeChangedToTimes(String bindingName, String state, int count) {
+        verify(bindingsLifecycleController, times(count))
+                .changeState(bindingName, BindingsLifecycleController.State.valueOf(state));
+    }
+
+}
@@ -0,0 +1,142 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.messaging.MessageType;
+import guru.nicks.commons.messaging.TypeAwareMessage;
+import guru.nicks.commons.messaging.resolver.CompositeMessageTypeResolver;
+
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompositeMessageTypeResolverSteps {
+
+    private static final String HEADER_FIELD = "message-type";
+    private static final String PAYLOAD_FIELD = "messageType";
+
+    private CompositeMessageTypeResolver resolver;
+    private SimpleMeterRegistry meterRegistry;
+    private Message<Map<String, Object>> message;
+    private String result;
+
+    private Map<String, Object> targetPayload;
+    private Map<String, Object> targetHeaders;
+
+    @Before
+    public void beforeEachScenario() {
+        resolver = new CompositeMessageTypeResolver(HEADER_FIELD, PAYLOAD_FIELD, false);
+        meterRegistry = new SimpleMeterRegistry();
+        resolver.setMeterRegistry(meterRegistry);
+        targetPayload = new HashMap<>();
+        targetHeaders = new HashMap<>();
+    }
+
+    @Given("a composite resolver message with header {string} and payload field {string}")
+    public void aCompositeResolverMessageWithHeaderAndPayloadField(String headerValue, String payloadValue) {
+        Map<String, Object> payload = new HashMap<>();
+        if (!payloadValue.isEmpty()) {
+            payload.put(PAYLOAD_FIELD, payloadValue);
+        }
+
+        var builder = MessageBuilder.withPayload(payload);
+        if (!headerValue.isEmpty()) {
+            builder.setHeader(HEADER_FIELD, headerValue);
+        }
+
+        message = builder.build();
+    }
+
+    @Given("a composite resolver with migration mode {word}")
+    public void aCompositeResolverWithMigrationMode(String migrationMode) {
+        resolver = new CompositeMessageTypeResolver(HEADER_FIELD, PAYLOAD_FIELD, Boolean.parseBoolean(migrationMode));
+    }
+
+    @When("the message type is read by the composite resolver")
+    public void theMessageTypeIsReadByTheCompositeResolver() {
+        result = resolver.readMessageType(message);
+    }
+
+    @When("message type {string} is written by the composite resolver")
+    public void messageTypeIsWrittenByTheCompositeResolver(String messageType) {
+        resolver.writeMessageType(new TestTypeAwareMessage(new TestMessageType(messageType)), targetPayload,
+                targetHeaders);
+    }
+
+    @Then("the composite resolver should return message type {string}")
+    public void theCompositeResolverShouldReturnMessageType(String expectedType) {
+        assertThat(result)
+                .as("message type")
+                .isEqualTo(expectedType);
+    }
+
+    @Then("the composite resolver fallback count should be {int}")
+    public void theCompositeResolverFallbackCountShouldBe(int expectedCount) {
+        assertThat(resolver.getFallbackCount())
+                .as("fallback count")
+                .isEqualTo(expectedCount);
+    }
+
+    @Then("the composite resolver should count {int} message type(s) resolved by {string}")
+    public void theCompositeResolverShouldCountMessageTypesResolvedBy(int expectedCount, String resolverName) {
+        Counter counter = meterRegistry.find(CompositeMessageTypeResolver.RESOLVED_MESSAGE_TYPES_METER)
+                .tag(CompositeMessageTypeResolver.RESOLVER_TAG, resolverName)
+                .counter();
+
+        assertThat(counter)
+                .as("counter")
+                .isNotNull();
+        assertThat(counter.count())
+                .as("resolved message type count")
+                .isEqualTo(expectedCount);
+    }
+
+    @Then("the composite resolver target header should be {string}")
+    public void theCompositeResolverTargetHeaderShouldBe(String expectedValue) {
+        assertThat(targetHeaders)
+                .as("target headers")
+                .containsEntry(HEADER_FIELD, expectedValue);
+    }
+
+    @Then("the composite resolver target payload field should be {string}")
+    public void theCompositeResolverTargetPayloadFieldShouldBe(String expectedValue) {
+        if (expectedValue.isEmpty()) {
+            assertThat(targetPayload)
+                    .as("target payload")
+                    .doesNotContainKey(PAYLOAD_FIELD);
+        } else {
+            assertThat(targetPayload)
+                    .as("target payload")
+                    .containsEntry(PAYLOAD_FIELD, expectedValue);
+        }
+    }
+
+    @Value
+    private static class TestMessageType implements MessageType {
+
+        String value;
+
+        @Override
+        public String getMessageBrokerValue() {
+            return value;
+        }
+
+    }
+
+    @Value
+    private static class TestTypeAwareMessage implements TypeAwareMessage<MessageType> {
+
+        MessageType type;
+
+    }
+
+}
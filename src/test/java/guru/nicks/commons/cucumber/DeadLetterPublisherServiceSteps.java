@@ -0,0 +1,107 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.messaging.DeadLetterMetadata;
+import guru.nicks.commons.messaging.impl.DeadLetterPublisherServiceImpl;
+import guru.nicks.commons.messaging.service.MessagePublisherService;
+
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+public class DeadLetterPublisherServiceSteps {
+
+    @Mock
+    private MessagePublisherService messagePublisherService;
+    @Captor
+    private ArgumentCaptor<byte[]> messageKeyCaptor;
+    @Captor
+    private ArgumentCaptor<Map<String, Object>> headersCaptor;
+    private AutoCloseable closeableMocks;
+
+    private DeadLetterPublisherServiceImpl deadLetterPublisherService;
+    private Message<Map<String, Object>> failedMessage;
+
+    @Before
+    public void beforeEachScenario() {
+        closeableMocks = MockitoAnnotations.openMocks(this);
+        deadLetterPublisherService = new DeadLetterPublisherServiceImpl(messagePublisherService);
+    }
+
+    @After
+    public void afterEachScenario() throws Exception {
+        closeableMocks.close();
+    }
+
+    @Given("a failed message from topic {string}, partition {int}, offset {int} with key {string} and header "
+            + "{string} set to {string}")
+    public void aFailedMessageFromTopic(String topic, int partition, int offset, String key, String headerName,
+            String headerValue) {
+        failedMessage = MessageBuilder.<Map<String, Object>>withPayload(new HashMap<>(Map.of("orderId", 1)))
+                .setHeader(KafkaHeaders.RECEIVED_TOPIC, topic)
+                .setHeader(KafkaHeaders.RECEIVED_PARTITION, partition)
+                .setHeader(KafkaHeaders.OFFSET, (long) offset)
+                .setHeader(KafkaHeaders.RECEIVED_KEY, key.getBytes(StandardCharsets.UTF_8))
+                .setHeader(headerName, headerValue)
+                .build();
+    }
+
+    @When("the failed message of listener {string} is dead-lettered to topic {string} after {int} attempts")
+    public void theFailedMessageOfListenerIsDeadLettered(String listenerId, String topic, int attempts) {
+        deadLetterPublisherService.publish(topic, failedMessage, createMetadata(listenerId, attempts));
+    }
+
+    @Then("the dead letter should be published to topic {string} with key {string}")
+    public void theDeadLetterShouldBePublishedToTopicWithKey(String topic, String key) {
+        verify(messagePublisherService).publish(eq(topic), eq(failedMessage.getPayload()),
+                messageKeyCaptor.capture(), any(), headersCaptor.capture());
+
+        assertThat(new String(messageKeyCaptor.getValue(), StandardCharsets.UTF_8))
+                .as("message key")
+                .isEqualTo(key);
+    }
+
+    @Then("the dead letter should have headers:")
+    public void theDeadLetterShouldHaveHeaders(Map<String, String> expectedHeaders) {
+        Map<String, String> actualHeaders = new HashMap<>();
+        headersCaptor.getValue().forEach((name, value) -> actualHeaders.put(name, String.valueOf(value)));
+
+        assertThat(actualHeaders)
+                .as("dead letter headers")
+                .containsAllEntriesOf(expectedHeaders);
+    }
+
+    @Then("the dead letter should not have Kafka headers")
+    public void theDeadLetterShouldNotHaveKafkaHeaders() {
+        assertThat(headersCaptor.getValue().keySet())
+                .as("dead letter header names")
+                .noneMatch(name -> name.startsWith(KafkaHeaders.PREFIX));
+    }
+
+    private static DeadLetterMetadata createMetadata(String listenerId, int attempts) {
+        return DeadLetterMetadata.builder()
+                .listenerId(listenerId)
+                .consumerClass("com.example.OrderConsumer")
+                .exception(new IllegalStateException("consumer failure"))
+                .attempts(attempts)
+                .build();
+    }
+
+}
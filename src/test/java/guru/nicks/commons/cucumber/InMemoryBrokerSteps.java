@@ -0,0 +1,248 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.cucumber.world.TextWorld;
+import guru.nicks.commons.messaging.MessageKeyAwareMessage;
+import guru.nicks.commons.messaging.MessageType;
+import guru.nicks.commons.messaging.TypeAwareMessage;
+import guru.nicks.commons.messaging.impl.KafkaMessagePublisherServiceImpl;
+import guru.nicks.commons.messaging.listener.MessageConsumer;
+import guru.nicks.commons.messaging.listener.TypeBasedDispatchingMessageListener;
+import guru.nicks.commons.messaging.resolver.HeaderBasedMessageTypeResolver;
+import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
+import guru.nicks.commons.messaging.service.MessagePublisherService;
+import guru.nicks.commons.messaging.testsupport.InMemoryBroker;
+import guru.nicks.commons.messaging.testsupport.LoadGenerator;
+import guru.nicks.commons.messaging.testsupport.LoadReport;
+import guru.nicks.commons.validation.AnnotationValidator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.MessageHeaders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Step definitions for end-to-end tests with {@link InMemoryBroker}.
+ */
+@RequiredArgsConstructor
+public class InMemoryBrokerSteps {
+
+    private static final String LISTENER_ID = "loadTestListener";
+
+    // DI
+    private final TextWorld textWorld;
+
+    @Mock
+    private AnnotationValidator annotationValidator;
+    private AutoCloseable closeableMocks;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MessageTypeResolver messageTypeResolver = new HeaderBasedMessageTypeResolver("messageType", "type");
+    private final AtomicInteger consumedMessageCount = new AtomicInteger();
+    private final Map<String, List<Integer>> consumedSequencesByKey = new ConcurrentHashMap<>();
+    /**
+     * Max. difference between consumption time and {@link KafkaHeaders#RECEIVED_TIMESTAMP}.
+     */
+    private final AtomicLong maxReceivedTimestampAgeMillis = new AtomicLong();
+    private volatile long processingMillis;
+
+    private InMemoryBroker broker;
+    private MessagePublisherService publisherService;
+    private LoadReport loadReport;
+
+    @Before
+    public void beforeEachScenario() {
+        closeableMocks = MockitoAnnotations.openMocks(this);
+        broker = new InMemoryBroker(objectMapper);
+        publisherService = new KafkaMessagePublisherServiceImpl(broker, objectMapper);
+    }
+
+    @After
+    public void afterEachScenario() throws Exception {
+        broker.close();
+        closeableMocks.close();
+    }
+
+    @Given("an in-memory broker with topic {string} having {int} partitions")
+    public void anInMemoryBrokerWithTopicHavingPartitions(String topic, int partitions) {
+        broker.createTopic(topic, partitions);
+    }
+
+    @Given("a dispatching message listener is subscribed to topic {string}")
+    public void aDispatchingMessageListenerIsSubscribedToTopic(String topic) {
+        var listener = new LoadTestMessageListener(List.of(new LoadTestMessageConsumer()));
+        broker.subscribe(topic, listener);
+    }
+
+    @Given("a dispatching message listener taking {int} ms per message is subscribed to topic {string}")
+    public void aSlowDispatchingMessageListenerIsSubscribedToTopic(int millis, String topic) {
+        processingMillis = millis;
+        aDispatchingMessageListenerIsSubscribedToTopic(topic);
+    }
+
+    @When("{int} messages with {int} distinct keys are published to topic {string} from {int} threads")
+    public void messagesArePublished(int messageCount, int keyCount, String topic, int threads) {
+        // LoadGenerator assigns sequence numbers to threads round-robin, so if the number of keys is a multiple of the
+        // number of threads, each key is published by a single thread, and the publishing order per key is defined
+        assertThat(keyCount % threads)
+                .as("keys per thread remainder")
+                .isZero();
+
+        var loadGenerator = new LoadGenerator(broker, Duration.ofSeconds(30));
+
+        textWorld.setLastException(catchThrowable(() ->
+                loadReport = loadGenerator.run(messageCount, threads, sequence -> {
+                    var message = new LoadTestMessage();
+                    message.setKey("key-" + (sequence % keyCount));
+                    message.setSequence(sequence);
+                    publisherService.publish(topic, message, null, messageTypeResolver);
+                })));
+    }
+
+    @Then("all {int} messages should be consumed")
+    public void allMessagesShouldBeConsumed(int messageCount) {
+        assertThat(consumedMessageCount.get())
+                .as("consumed message count")
+                .isEqualTo(messageCount);
+        assertThat(loadReport.getFailedMessageCount())
+                .as("failed message count")
+                .isZero();
+    }
+
+    @Then("messages having the same key should be consumed in publishing order")
+    public void messagesHavingTheSameKeyShouldBeConsumedInPublishingOrder() {
+        consumedSequencesByKey.forEach((key, sequences) ->
+                assertThat(sequences)
+                        .as("sequences of key '%s'", key)
+                        .isSorted());
+    }
+
+    @Then("the received timestamp of some message should be at least {int} ms old when it's consumed")
+    public void theReceivedTimestampOfSomeMessageShouldBeOldWhenConsumed(int millis) {
+        assertThat(maxReceivedTimestampAgeMillis.get())
+                .as("max. received timestamp age")
+                .isGreaterThanOrEqualTo(millis);
+    }
+
+    @Then("the load report should have latency percentiles")
+    public void theLoadReportShouldHaveLatencyPercentiles() {
+        assertThat(loadReport.getThroughput())
+                .as("throughput")
+                .isPositive();
+        assertThat(loadReport.getLatencyP50())
+                .as("p50")
+                .isPositive()
+                .isLessThanOrEqualTo(loadReport.getLatencyP90());
+        assertThat(loadReport.getLatencyP90())
+                .as("p90")
+                .isLessThanOrEqualTo(loadReport.getLatencyP99());
+        assertThat(loadReport.getLatencyP99())
+                .as("p99")
+                .isLessThanOrEqualTo(loadReport.getLatencyMax());
+    }
+
+    /**
+     * Message type of {@link LoadTestMessage}.
+     */
+    private enum LoadTestMessageType implements MessageType {
+
+        LOAD_TEST;
+
+        @Override
+        public String getMessageBrokerValue() {
+            return name();
+        }
+
+    }
+
+    /**
+     * Payload of load test messages.
+     */
+    @Getter
+    @Setter
+    private static class LoadTestMessage implements TypeAwareMessage<LoadTestMessageType>, MessageKeyAwareMessage {
+
+        private String key;
+        private int sequence;
+
+        @Override
+        public LoadTestMessageType getType() {
+            return LoadTestMessageType.LOAD_TEST;
+        }
+
+        @Override
+        public String getMessageKey() {
+            return key;
+        }
+
+    }
+
+    /**
+     * Records consumed messages.
+     */
+    private class LoadTestMessageConsumer implements MessageConsumer<LoadTestMessage> {
+
+        @Override
+        public String getMessageListenerId() {
+            return LISTENER_ID;
+        }
+
+        @Override
+        public void accept(LoadTestMessage payload, MessageHeaders headers) {
+            Long receivedTimestamp = headers.get(KafkaHeaders.RECEIVED_TIMESTAMP, Long.class);
+            maxReceivedTimestampAgeMillis.accumulateAndGet(System.currentTimeMillis() - receivedTimestamp, Math::max);
+
+            if (processingMillis > 0) {
+                try {
+                    Thread.sleep(processingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            consumedSequencesByKey
+                    .computeIfAbsent(payload.getKey(), key -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(payload.getSequence());
+            consumedMessageCount.incrementAndGet();
+        }
+
+    }
+
+    /**
+     * Listener bound to {@link LoadTestMessageConsumer}.
+     */
+    private class LoadTestMessageListener extends TypeBasedDispatchingMessageListener {
+
+        LoadTestMessageListener(List<MessageConsumer> messageConsumers) {
+            super("load-test-app", messageConsumers, messageTypeResolver, annotationValidator, objectMapper);
+        }
+
+        @Override
+        public String getId() {
+            return LISTENER_ID;
+        }
+
+    }
+
+}
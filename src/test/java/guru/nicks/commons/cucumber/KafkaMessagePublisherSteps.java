@@ -1,10 +1,14 @@
 package guru.nicks.commons.cucumber;
 
 import guru.nicks.commons.cucumber.world.TextWorld;
+import guru.nicks.commons.messaging.MessageKeyAwareMessage;
 import guru.nicks.commons.messaging.MessageType;
 import guru.nicks.commons.messaging.TypeAwareMessage;
 import guru.nicks.commons.messaging.impl.KafkaMessagePublisherServiceImpl;
+import guru.nicks.commons.messaging.jfr.MessagePublishEvent;
 import guru.nicks.commons.messaging.impl.NoOpMessageTypeResolver;
+import guru.nicks.commons.messaging.key.MessageKeyEncoders;
+import guru.nicks.commons.messaging.key.Murmur2MessagePartitioner;
 import guru.nicks.commons.messaging.service.MessagePublisherService;
 
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -14,9 +18,13 @@ import io.cucumber.java.Before;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
+import org.apache.kafka.common.utils.Utils;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -25,9 +33,16 @@ import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
@@ -56,9 +71,11 @@ public class KafkaMessagePublisherSteps {
     private String payloadType;
     private String messageKeyString;
     private byte[] messageKeyBytes;
+    private Object messageKeyObject;
 
     private Object payload;
     private Map<String, Object> payloadAsMap;
+    private Recording recording;
 
     @Before
     public void beforeEachScenario() {
@@ -77,6 +94,11 @@ public class KafkaMessagePublisherSteps {
     @After
     public void afterEachScenario() throws Exception {
         closeableMocks.close();
+
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
     }
 
     @Given("a message with topic {string} and payload type {string}")
@@ -91,6 +113,11 @@ public class KafkaMessagePublisherSteps {
             case "TypeAwareMessage" -> payload = TestTypeAwareMessage.builder()
                     .type(new TestMessageType(messageType))
                     .build();
+            case "MessageKeyAwareMessage" -> payload = TestMessageKeyAwareMessage.builder()
+                    .type(new TestMessageType(messageType))
+                    // resolved lazily because the key is set in a later step
+                    .messageKeySupplier(() -> messageKeyString)
+                    .build();
             case "Map" -> {
                 var map = new HashMap<String, Object>();
                 map.put("messageType", messageType);
@@ -106,6 +133,23 @@ public class KafkaMessagePublisherSteps {
         this.messageKeyString = messageKey;
     }
 
+    @Given("the message key of type {string} is {string}")
+    public void theMessageKeyOfTypeIs(String keyType, String messageKey) {
+        messageKeyString = messageKey;
+        messageKeyObject = switch (keyType) {
+            case "UUID" -> UUID.fromString(messageKey);
+            case "Long" -> Long.parseLong(messageKey);
+            case "Integer" -> Integer.parseInt(messageKey);
+            default -> throw new IllegalArgumentException("Unsupported key type: '" + keyType + "'");
+        };
+    }
+
+    @Given("the topic {string} has {int} partitions")
+    public void theTopicHasPartitions(String topic, int partitionCount) {
+        publisherService = new KafkaMessagePublisherServiceImpl(streamBridge, objectMapper, MessageKeyEncoders.DEFAULT,
+                new Murmur2MessagePartitioner(Map.of(topic, partitionCount)));
+    }
+
     @Given("the message key as bytes is {string}")
     public void theMessageKeyAsBytesIs(String messageKey) {
         if (messageKey != null && !messageKey.isEmpty()) {
@@ -113,6 +157,13 @@ public class KafkaMessagePublisherSteps {
         }
     }
 
+    @Given("JFR recording of message publishing is started")
+    public void jfrRecordingOfMessagePublishingIsStarted() {
+        recording = new Recording();
+        recording.enable(MessagePublishEvent.NAME).withThreshold(Duration.ZERO);
+        recording.start();
+    }
+
     @When("the message is published")
     public void theMessageIsPublished() {
         textWorld.setLastException(catchThrowable(() ->
@@ -127,6 +178,21 @@ public class KafkaMessagePublisherSteps {
         ));
     }
 
+    @When("the message is published with typed key")
+    public void theMessageIsPublishedWithTypedKey() {
+        textWorld.setLastException(catchThrowable(() ->
+                publisherService.publish(topic, payload, messageKeyObject, NoOpMessageTypeResolver.INSTANCE)
+        ));
+    }
+
+    @When("the message is published to partition {int}")
+    public void theMessageIsPublishedToPartition(int partition) {
+        textWorld.setLastException(catchThrowable(() ->
+                publisherService.publishToPartition(topic, payload, messageKeyString, partition,
+                        NoOpMessageTypeResolver.INSTANCE)
+        ));
+    }
+
     @When("the message is published with byte key")
     public void theMessageIsPublishedWithByteKey() {
         textWorld.setLastException(catchThrowable(() ->
@@ -180,6 +246,61 @@ public class KafkaMessagePublisherSteps {
         }
     }
 
+    @Then("the message partition should be the one Kafka would pick for {int} partitions")
+    public void theMessagePartitionShouldBeTheOneKafkaWouldPick(int partitionCount) {
+        var headers = messageCaptor.getValue().getHeaders();
+
+        if (partitionCount == 0) {
+            assertThat(headers)
+                    .as("headers")
+                    .doesNotContainKey(KafkaHeaders.PARTITION);
+            return;
+        }
+
+        int expectedPartition = Utils.toPositive(Utils.murmur2(messageKeyString.getBytes(StandardCharsets.UTF_8)))
+                % partitionCount;
+
+        assertThat(headers.get(KafkaHeaders.PARTITION))
+                .as("partition")
+                .isEqualTo(expectedPartition);
+    }
+
+    @Then("the message partition should be {int}")
+    public void theMessagePartitionShouldBe(int partition) {
+        assertThat(messageCaptor.getValue().getHeaders().get(KafkaHeaders.PARTITION))
+                .as("partition")
+                .isEqualTo(partition);
+    }
+
+    @Then("JFR publish events should be recorded for stages {string}")
+    public void jfrPublishEventsShouldBeRecordedForStages(String stages) throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("messaging", ".jfr");
+
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file)
+                    .stream()
+                    .filter(event -> event.getEventType().getName().equals(MessagePublishEvent.NAME))
+                    .toList();
+
+            assertThat(events)
+                    .as("stages")
+                    .extracting(event -> event.getString("stage"))
+                    .containsExactly(stages.split(",\\s*"));
+            assertThat(events)
+                    .as("topics")
+                    .extracting(event -> event.getString("topic"))
+                    .containsOnly(topic);
+            assertThat(events)
+                    .as("message types")
+                    .extracting(event -> event.getString("messageType"))
+                    .containsOnly(((TypeAwareMessage<?>) payload).getType().getMessageBrokerValue());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
     @Value
     private static class TestMessageType implements MessageType {
 
@@ -204,4 +325,22 @@ public class KafkaMessagePublisherSteps {
 
     }
 
+    @Value
+    @Builder
+    private static class TestMessageKeyAwareMessage implements TypeAwareMessage<MessageType>, MessageKeyAwareMessage {
+        MessageType type;
+        Supplier<String> messageKeySupplier;
+
+        @Override
+        public MessageType getType() {
+            return type;
+        }
+
+        @Override
+        public String getMessageKey() {
+            return messageKeySupplier.get();
+        }
+
+    }
+
 }
@@ -0,0 +1,113 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.messaging.MessageType;
+import guru.nicks.commons.messaging.resolver.MessageBrokerValues;
+
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageBrokerValuesSteps {
+
+    private CountingMessageType nonEnumMessageType;
+    private String result;
+
+    @When("broker value of enum message type {string} is read {int} times")
+    public void brokerValueOfEnumMessageTypeIsReadTimes(String constant, int count) {
+        readBrokerValue(CachedMessageType.valueOf(constant), count);
+    }
+
+    @When("broker value of non-enum message type {string} is read {int} times")
+    public void brokerValueOfNonEnumMessageTypeIsReadTimes(String value, int count) {
+        nonEnumMessageType = new CountingMessageType(value);
+        readBrokerValue(nonEnumMessageType, count);
+    }
+
+    @When("broker value of null message type is read")
+    public void brokerValueOfNullMessageTypeIsRead() {
+        result = MessageBrokerValues.getBrokerValue(null);
+    }
+
+    @Then("the broker value read should be {string}")
+    public void theBrokerValueReadShouldBe(String expectedValue) {
+        if (expectedValue.isEmpty()) {
+            assertThat(result)
+                    .as("broker value")
+                    .isNull();
+        } else {
+            assertThat(result)
+                    .as("broker value")
+                    .isEqualTo(expectedValue);
+        }
+    }
+
+    /**
+     * The cache lives as long as the enum class, so the count doesn't depend on scenario order: all constants are
+     * computed at once on first access.
+     */
+    @Then("broker value of enum message type {string} should have been computed {int} time(s)")
+    public void brokerValueOfEnumMessageTypeShouldHaveBeenComputedTimes(String constant, int count) {
+        assertThat(CachedMessageType.valueOf(constant).calls.get())
+                .as("broker value computations")
+                .isEqualTo(count);
+    }
+
+    @Then("broker value of non-enum message type should have been computed {int} time(s)")
+    public void brokerValueOfNonEnumMessageTypeShouldHaveBeenComputedTimes(int count) {
+        assertThat(nonEnumMessageType.calls.get())
+                .as("broker value computations")
+                .isEqualTo(count);
+    }
+
+    private void readBrokerValue(MessageType messageType, int count) {
+        for (int i = 0; i < count; i++) {
+            result = MessageBrokerValues.getBrokerValue(messageType);
+        }
+    }
+
+    private enum CachedMessageType implements MessageType {
+
+        PLAIN("plain"),
+        WITH_BODY("with-body") {
+            @Override
+            public String getMessageBrokerValue() {
+                calls.incrementAndGet();
+                return value;
+            }
+        },
+        BLANK(" ");
+
+        protected final String value;
+        protected final AtomicInteger calls = new AtomicInteger();
+
+        CachedMessageType(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String getMessageBrokerValue() {
+            calls.incrementAndGet();
+            return value;
+        }
+
+    }
+
+    @RequiredArgsConstructor
+    private static class CountingMessageType implements MessageType {
+
+        private final String value;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String getMessageBrokerValue() {
+            calls.incrementAndGet();
+            return value;
+        }
+
+    }
+
+}
@@ -0,0 +1,190 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.messaging.listener.CoalescingPolicy;
+import guru.nicks.commons.messaging.listener.MessageCoalescer;
+
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.MessageHeaders;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+
+public class MessageCoalescerSteps {
+
+    /**
+     * Flushes are run by the steps, so scenarios don't depend on timing.
+     */
+    @Mock
+    private ScheduledExecutorService scheduler;
+    private AutoCloseable closeableMocks;
+
+    private final List<Runnable> scheduledFlushes = new ArrayList<>();
+    // deliveries may happen on a background thread
+    private final List<Object> deliveredPayloads = new CopyOnWriteArrayList<>();
+    private final AtomicInteger acknowledgedCount = new AtomicInteger();
+    private final AtomicInteger remainingFailures = new AtomicInteger();
+    private final CountDownLatch blockedDeliveryStarted = new CountDownLatch(1);
+    private final CountDownLatch blockedDeliveryReleased = new CountDownLatch(1);
+
+    private CoalescingPolicy<String> policy;
+    private MessageCoalescer coalescer;
+    private boolean lastMessageBuffered;
+    private String blockedPayload;
+    private Thread backgroundFlush;
+
+    @Before
+    public void beforeEachScenario() {
+        closeableMocks = MockitoAnnotations.openMocks(this);
+
+        doAnswer(invocation -> {
+            scheduledFlushes.add(invocation.getArgument(0));
+            return null;
+        }).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+    }
+
+    @After
+    public void afterEachScenario() throws Exception {
+        closeableMocks.close();
+    }
+
+    @Given("message coalescer with max messages {int} and max keys {int}")
+    public void messageCoalescerWithMaxMessagesAndMaxKeys(int maxMessages, int maxKeys) {
+        policy = CoalescingPolicy.<String>builder()
+                .maxMessages(maxMessages)
+                .maxKeys(maxKeys)
+                .build();
+        createCoalescer();
+    }
+
+    @Given("coalescer merges payloads")
+    public void coalescerMergesPayloads() {
+        policy = policy.toBuilder()
+                .merger((older, newer) -> older + "+" + newer)
+                .build();
+        createCoalescer();
+    }
+
+    @Given("coalesced delivery fails {int} time(s)")
+    public void coalescedDeliveryFailsTimes(int count) {
+        remainingFailures.set(count);
+    }
+
+    @Given("coalesced delivery of payload {string} blocks until released")
+    public void coalescedDeliveryOfPayloadBlocksUntilReleased(String payload) {
+        blockedPayload = payload;
+    }
+
+    @When("message {string} with key {string} is offered to coalescer")
+    public void messageWithKeyIsOfferedToCoalescer(String payload, String key) {
+        Acknowledgment acknowledgment = acknowledgedCount::incrementAndGet;
+
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(KafkaHeaders.RECEIVED_KEY, key);
+        headers.put(KafkaHeaders.ACKNOWLEDGMENT, acknowledgment);
+
+        lastMessageBuffered = coalescer.offer(payload, new MessageHeaders(headers));
+    }
+
+    @When("message {string} with key {string} and without acknowledgment is offered to coalescer")
+    public void messageWithKeyAndWithoutAcknowledgmentIsOfferedToCoalescer(String payload, String key) {
+        lastMessageBuffered = coalescer.offer(payload, new MessageHeaders(Map.of(KafkaHeaders.RECEIVED_KEY, key)));
+    }
+
+    @When("scheduled coalescer flush number {int} runs")
+    public void scheduledCoalescerFlushNumberRuns(int number) {
+        scheduledFlushes.get(number - 1).run();
+    }
+
+    @When("scheduled coalescer flush number {int} runs in background until its delivery blocks")
+    public void scheduledCoalescerFlushNumberRunsInBackground(int number) throws InterruptedException {
+        backgroundFlush = new Thread(scheduledFlushes.get(number - 1));
+        backgroundFlush.start();
+
+        assertThat(blockedDeliveryStarted.await(5, TimeUnit.SECONDS))
+                .as("blocked delivery started")
+                .isTrue();
+    }
+
+    @When("blocked coalesced delivery is released")
+    public void blockedCoalescedDeliveryIsReleased() throws InterruptedException {
+        blockedDeliveryReleased.countDown();
+        backgroundFlush.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @When("message coalescer is closed")
+    public void messageCoalescerIsClosed() {
+        coalescer.close();
+    }
+
+    @Then("coalesced payloads should be {string}")
+    public void coalescedPayloadsShouldBe(String payloads) {
+        assertThat(String.join(",", deliveredPayloads.stream().map(String::valueOf).toList()))
+                .as("delivered payloads")
+                .isEqualTo(payloads);
+    }
+
+    @Then("{int} coalesced messages should be acknowledged")
+    public void coalescedMessagesShouldBeAcknowledged(int count) {
+        assertThat(acknowledgedCount.get())
+                .as("acknowledged messages")
+                .isEqualTo(count);
+    }
+
+    @Then("the last message should be buffered by coalescer: {word}")
+    public void theLastMessageShouldBeBufferedByCoalescer(String buffered) {
+        assertThat(lastMessageBuffered)
+                .as("buffered")
+                .isEqualTo(Boolean.parseBoolean(buffered));
+    }
+
+    @Then("coalescer should have {int} pending keys")
+    public void coalescerShouldHavePendingKeys(int count) {
+        assertThat(coalescer.getPendingKeyCount())
+                .as("pending keys")
+                .isEqualTo(count);
+    }
+
+    private void createCoalescer() {
+        coalescer = new MessageCoalescer(policy, (payload, headers) -> {
+            if (remainingFailures.getAndDecrement() > 0) {
+                throw new IllegalStateException("delivery failure");
+            }
+
+            if (payload.equals(blockedPayload)) {
+                blockedDeliveryStarted.countDown();
+                awaitRelease();
+            }
+
+            deliveredPayloads.add(payload);
+        }, scheduler);
+    }
+
+    private void awaitRelease() {
+        try {
+            blockedDeliveryReleased.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
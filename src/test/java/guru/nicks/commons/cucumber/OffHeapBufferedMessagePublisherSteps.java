@@ -0,0 +1,173 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.cucumber.world.TextWorld;
+import guru.nicks.commons.messaging.impl.NoOpMessageTypeResolver;
+import guru.nicks.commons.messaging.impl.OffHeapBufferSettings;
+import guru.nicks.commons.messaging.impl.OffHeapBufferedMessagePublisherServiceImpl;
+import guru.nicks.commons.messaging.key.MessageKeyEncoders;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import lombok.RequiredArgsConstructor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Step definitions for testing {@link OffHeapBufferedMessagePublisherServiceImpl}.
+ */
+@RequiredArgsConstructor
+public class OffHeapBufferedMessagePublisherSteps {
+
+    // DI
+    private final TextWorld textWorld;
+
+    @Mock
+    private StreamBridge streamBridge;
+    private AutoCloseable closeableMocks;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> sentTopics = Collections.synchronizedList(new ArrayList<>());
+    private final List<Message<?>> sentMessages = Collections.synchronizedList(new ArrayList<>());
+
+    private OffHeapBufferedMessagePublisherServiceImpl publisherService;
+    private Duration sendDelay;
+
+    @Before
+    public void beforeEachScenario() {
+        closeableMocks = MockitoAnnotations.openMocks(this);
+        sendDelay = Duration.ZERO;
+
+        when(streamBridge.send(anyString(), any()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(sendDelay);
+                    sentTopics.add(invocation.getArgument(0));
+                    sentMessages.add(invocation.getArgument(1));
+                    return true;
+                });
+    }
+
+    @After
+    public void afterEachScenario() throws Exception {
+        if (publisherService != null) {
+            publisherService.close();
+        }
+
+        closeableMocks.close();
+    }
+
+    @Given("the binder is slow")
+    public void theBinderIsSlow() {
+        sendDelay = Duration.ofMillis(5);
+    }
+
+    @Given("an off-heap buffered publisher with capacity of {int} bytes and overflow policy {string}")
+    public void anOffHeapBufferedPublisher(int capacity, String overflowPolicy) {
+        publisherService = new OffHeapBufferedMessagePublisherServiceImpl(streamBridge, objectMapper,
+                MessageKeyEncoders.DEFAULT, null, OffHeapBufferSettings.builder()
+                .capacityBytes(capacity)
+                .overflowPolicy(OffHeapBufferSettings.OverflowPolicy.valueOf(overflowPolicy))
+                .build());
+    }
+
+    @Given("an off-heap buffered publisher with capacity of {int} bytes spilling up to {int} bytes and waiting up to "
+            + "{int} ms for space")
+    public void anOffHeapBufferedPublisherWithLimitedSpill(int capacity, int maxSpillBytes, int blockTimeoutMillis) {
+        publisherService = new OffHeapBufferedMessagePublisherServiceImpl(streamBridge, objectMapper,
+                MessageKeyEncoders.DEFAULT, null, OffHeapBufferSettings.builder()
+                .capacityBytes(capacity)
+                .overflowPolicy(OffHeapBufferSettings.OverflowPolicy.SPILL_TO_DISK)
+                .maxSpillBytes(maxSpillBytes)
+                .blockTimeout(Duration.ofMillis(blockTimeoutMillis))
+                .build());
+    }
+
+    @When("{int} messages are published to topic {string} with keys")
+    public void messagesArePublishedToTopicWithKeys(int messageCount, String topic) {
+        textWorld.setLastException(catchThrowable(() -> {
+            for (int i = 0; i < messageCount; i++) {
+                publisherService.publish(topic, Map.of("sequence", i), "key-" + i,
+                        NoOpMessageTypeResolver.INSTANCE);
+            }
+        }));
+    }
+
+    @When("a message with header {string} of {int} characters is published to topic {string}")
+    public void aMessageWithLongHeaderIsPublished(String headerName, int headerLength, String topic) {
+        textWorld.setLastException(catchThrowable(() ->
+                publisherService.publish(topic, Map.of("sequence", 0), null, NoOpMessageTypeResolver.INSTANCE,
+                        Map.of(headerName, "x".repeat(headerLength)))));
+    }
+
+    @When("the off-heap buffered publisher is closed")
+    public void theOffHeapBufferedPublisherIsClosed() throws InterruptedException {
+        publisherService.close();
+    }
+
+    @Then("{int} messages should be sent to topic {string} in publishing order with their keys")
+    public void messagesShouldBeSentInPublishingOrder(int messageCount, String topic) throws Exception {
+        assertThat(sentTopics)
+                .as("topics")
+                .hasSize(messageCount)
+                .containsOnly(topic);
+
+        for (int i = 0; i < messageCount; i++) {
+            Message<?> message = sentMessages.get(i);
+            Map<String, Object> payload = objectMapper.readValue((byte[]) message.getPayload(),
+                    new TypeReference<>() {
+                    });
+
+            assertThat(payload.get("sequence"))
+                    .as("sequence")
+                    .isEqualTo(i);
+            assertThat(message.getHeaders().get(KafkaHeaders.KEY))
+                    .as("message key")
+                    .isEqualTo(("key-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(publisherService.getFailedMessageCount())
+                .as("failed message count")
+                .isZero();
+    }
+
+    @Then("the sent message should have header {string} of {int} characters")
+    public void theSentMessageShouldHaveLongHeader(String headerName, int headerLength) {
+        assertThat(sentMessages)
+                .as("sent messages")
+                .singleElement()
+                .satisfies(message -> assertThat(message.getHeaders().get(headerName))
+                        .as("header value")
+                        .isEqualTo("x".repeat(headerLength)));
+    }
+
+    @Then("some messages should be dropped")
+    public void someMessagesShouldBeDropped() {
+        assertThat(publisherService.getDroppedMessageCount())
+                .as("dropped message count")
+                .isPositive();
+        assertThat(sentMessages.size() + publisherService.getDroppedMessageCount())
+                .as("sent and dropped message count")
+                .isEqualTo(200);
+    }
+
+}
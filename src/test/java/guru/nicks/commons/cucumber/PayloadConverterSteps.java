@@ -0,0 +1,80 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.cucumber.world.TextWorld;
+import guru.nicks.commons.messaging.listener.PayloadConverter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Step definitions for testing {@link PayloadConverter}.
+ */
+@RequiredArgsConstructor
+public class PayloadConverterSteps {
+
+    // DI
+    private final TextWorld textWorld;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private PayloadConverter payloadConverter;
+    private Map<String, Object> rawPayload;
+    private TestPayload convertedPayload;
+
+    @Given("a payload converter")
+    public void aPayloadConverter() {
+        payloadConverter = new PayloadConverter(objectMapper);
+    }
+
+    @When("raw payload {string} is converted")
+    public void rawPayloadIsConverted(String json) throws JsonProcessingException {
+        rawPayload = objectMapper.readValue(json, new TypeReference<>() {
+        });
+
+        textWorld.setLastException(catchThrowable(() ->
+                convertedPayload = (TestPayload) payloadConverter.convert(rawPayload, TestPayload.class)));
+    }
+
+    @Then("the converted payload should be equal to the one converted by object mapper")
+    public void theConvertedPayloadShouldBeEqualToTheOneConvertedByObjectMapper() {
+        assertThat(convertedPayload)
+                .as("converted payload")
+                .usingRecursiveComparison()
+                .isEqualTo(objectMapper.convertValue(rawPayload, TestPayload.class));
+    }
+
+    @Getter
+    @Setter
+    public static class TestPayload {
+
+        private String text;
+        private int count;
+        private long total;
+        private double ratio;
+        private BigDecimal amount;
+        private boolean active;
+        private TestPayload nested;
+        private List<TestPayload> children;
+        private List<Integer> numbers;
+        private byte[] binary;
+        private Map<String, Object> attributes;
+
+    }
+
+}
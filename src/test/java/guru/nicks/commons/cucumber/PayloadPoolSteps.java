@@ -0,0 +1,106 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.messaging.ReusableMessage;
+import guru.nicks.commons.messaging.listener.PayloadPool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Step definitions for testing {@link PayloadPool}.
+ */
+public class PayloadPoolSteps {
+
+    /**
+     * Max. number of {@link System#gc()} calls waiting for a garbage collection to happen.
+     */
+    private static final int MAX_GC_ATTEMPTS = 10;
+
+    private PayloadPool payloadPool;
+
+    /**
+     * Payloads retained by the 'consumer' after their release.
+     */
+    private final List<Object> retainedPayloads = new ArrayList<>();
+
+    @Before
+    public void beforeEachScenario() {
+        retainedPayloads.clear();
+    }
+
+    @Given("a payload pool with leak detection")
+    public void aPayloadPoolWithLeakDetection() {
+        payloadPool = new PayloadPool(new ObjectMapper(), true);
+    }
+
+    @When("a reusable payload is acquired and released, retained by its consumer: {word}")
+    public void aReusablePayloadIsAcquiredAndReleased(String retained) {
+        Object payload = payloadPool.acquire(Map.of("content", "first"), PooledMessage.class);
+
+        if (Boolean.parseBoolean(retained)) {
+            retainedPayloads.add(payload);
+        }
+
+        payloadPool.release(payload);
+    }
+
+    @When("garbage is collected")
+    public void garbageIsCollected() {
+        long gcCount = getGcCount();
+
+        for (int i = 0; (i < MAX_GC_ATTEMPTS) && (getGcCount() == gcCount); i++) {
+            System.gc();
+        }
+
+        assertThat(getGcCount())
+                .as("garbage collection count")
+                .isGreaterThan(gcCount);
+    }
+
+    @When("another reusable payload is acquired and released")
+    public void anotherReusablePayloadIsAcquiredAndReleased() {
+        payloadPool.release(payloadPool.acquire(Map.of("content", "second"), PooledMessage.class));
+    }
+
+    @Then("the reusable payload class should be reported as leaking: {word}")
+    public void theReusablePayloadClassShouldBeReportedAsLeaking(String leaking) {
+        assertThat(payloadPool.getLeakingPayloadClasses().contains(PooledMessage.class))
+                .as("payload class reported as leaking")
+                .isEqualTo(Boolean.parseBoolean(leaking));
+    }
+
+    private static long getGcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans()
+                .stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .filter(count -> count > 0)
+                .sum();
+    }
+
+    @Getter
+    @Setter
+    public static class PooledMessage implements ReusableMessage {
+
+        private String content;
+
+        @Override
+        public void reset() {
+            content = null;
+        }
+
+    }
+
+}
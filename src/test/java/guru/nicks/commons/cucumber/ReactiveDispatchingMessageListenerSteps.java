@@ -0,0 +1,121 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.cucumber.world.TextWorld;
+import guru.nicks.commons.messaging.listener.DispatchingMessageListener;
+import guru.nicks.commons.messaging.listener.ReactiveDispatchingMessageListener;
+
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import lombok.RequiredArgsConstructor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@RequiredArgsConstructor
+public class ReactiveDispatchingMessageListenerSteps {
+
+    // DI
+    private final TextWorld textWorld;
+
+    @Mock
+    private DispatchingMessageListener delegate;
+    private AutoCloseable closeableMocks;
+
+    private final Map<Integer, List<String>> receivedContents = new ConcurrentHashMap<>();
+    private final Set<Thread> delegateThreads = ConcurrentHashMap.newKeySet();
+
+    private ReactiveDispatchingMessageListener listener;
+    private String failingContent;
+    private String failureMessage;
+
+    @Before
+    public void beforeEachScenario() {
+        closeableMocks = MockitoAnnotations.openMocks(this);
+
+        doAnswer(invocation -> {
+            Message<Map<String, Object>> message = invocation.getArgument(0);
+            String content = (String) message.getPayload().get("content");
+
+            if (content.equals(failingContent)) {
+                throw new IllegalStateException(failureMessage);
+            }
+
+            delegateThreads.add(Thread.currentThread());
+            receivedContents.computeIfAbsent((Integer) message.getHeaders().get(KafkaHeaders.RECEIVED_PARTITION),
+                            partition -> new ArrayList<>())
+                    .add(content);
+            return null;
+        }).when(delegate).accept(any());
+    }
+
+    @After
+    public void afterEachScenario() throws Exception {
+        closeableMocks.close();
+    }
+
+    @Given("reactive listener with concurrency {int}")
+    public void reactiveListenerWithConcurrency(int concurrency) {
+        listener = new TestReactiveDispatchingMessageListener(delegate, concurrency);
+    }
+
+    @Given("reactive delegate fails on content {string} with message {string}")
+    public void reactiveDelegateFailsOnContentWithMessage(String content, String message) {
+        failingContent = content;
+        failureMessage = message;
+    }
+
+    @When("reactive listener receives messages:")
+    public void reactiveListenerReceivesMessages(List<Map<String, String>> rows) {
+        List<Message<Map<String, Object>>> messages = rows.stream()
+                .map(row -> MessageBuilder.<Map<String, Object>>withPayload(new HashMap<>(Map.of(
+                                "content", row.get("content"))))
+                        .setHeader(KafkaHeaders.RECEIVED_PARTITION, Integer.parseInt(row.get("partition")))
+                        .build())
+                .toList();
+
+        textWorld.setLastException(catchThrowable(() ->
+                listener.apply(Flux.fromIterable(messages)).block()));
+    }
+
+    @Then("reactive delegate should receive contents {string} from partition {int}")
+    public void reactiveDelegateShouldReceiveContentsFromPartition(String contents, int partition) {
+        assertThat(receivedContents.getOrDefault(partition, List.of()))
+                .as("contents from partition %d", partition)
+                .containsExactly(contents.split(","));
+    }
+
+    @Then("reactive delegate should not be called on the caller thread")
+    public void reactiveDelegateShouldNotBeCalledOnTheCallerThread() {
+        assertThat(delegateThreads)
+                .as("delegate threads")
+                .isNotEmpty()
+                .doesNotContain(Thread.currentThread());
+    }
+
+    private static class TestReactiveDispatchingMessageListener extends ReactiveDispatchingMessageListener {
+
+        TestReactiveDispatchingMessageListener(DispatchingMessageListener delegate, int concurrency) {
+            super(delegate, concurrency);
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.cucumber.world.TextWorld;
+import guru.nicks.commons.messaging.impl.NoOpMessageTypeResolver;
+import guru.nicks.commons.messaging.impl.ReactiveMessagePublisherServiceImpl;
+import guru.nicks.commons.messaging.service.MessagePublisherService;
+
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import lombok.RequiredArgsConstructor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@RequiredArgsConstructor
+public class ReactiveMessagePublisherServiceSteps {
+
+    // DI
+    private final TextWorld textWorld;
+
+    @Mock
+    private MessagePublisherService messagePublisherService;
+    private AutoCloseable closeableMocks;
+
+    private final AtomicReference<Thread> publisherThread = new AtomicReference<>();
+    private ReactiveMessagePublisherServiceImpl reactivePublisher;
+    private Mono<Void> publication;
+
+    @Before
+    public void beforeEachScenario() {
+        closeableMocks = MockitoAnnotations.openMocks(this);
+        reactivePublisher = new ReactiveMessagePublisherServiceImpl(messagePublisherService);
+
+        doAnswer(invocation -> {
+            publisherThread.set(Thread.currentThread());
+            return null;
+        }).when(messagePublisherService).publish(any(), any(), any(Object.class), any());
+    }
+
+    @After
+    public void afterEachScenario() throws Exception {
+        closeableMocks.close();
+    }
+
+    @Given("blocking publisher fails with message {string}")
+    public void blockingPublisherFailsWithMessage(String message) {
+        doThrow(new IllegalStateException(message))
+                .when(messagePublisherService)
+                .publish(any(), any(), any(Object.class), any());
+    }
+
+    @When("reactive publisher publishes to topic {string}")
+    public void reactivePublisherPublishesToTopic(String topic) {
+        publication = reactivePublisher.publish(topic, Map.of("orderId", 1), (Object) "order-1",
+                NoOpMessageTypeResolver.INSTANCE);
+    }
+
+    @When("reactive publication is subscribed to")
+    public void reactivePublicationIsSubscribedTo() {
+        textWorld.setLastException(catchThrowable(publication::block));
+    }
+
+    @Then("blocking publisher should not be called")
+    public void blockingPublisherShouldNotBeCalled() {
+        verifyNoInteractions(messagePublisherService);
+    }
+
+    @Then("blocking publisher should publish to topic {string} off the caller thread")
+    public void blockingPublisherShouldPublishToTopicOffTheCallerThread(String topic) {
+        verify(messagePublisherService).publish(eq(topic), any(), eq((Object) "order-1"), any());
+
+        assertThat(publisherThread.get())
+                .as("publisher thread")
+                .isNotNull()
+                .isNotEqualTo(Thread.currentThread());
+    }
+
+}
@@ -0,0 +1,197 @@
+package guru.nicks.commons.cucumber;
+
+import guru.nicks.commons.cucumber.world.TextWorld;
+import guru.nicks.commons.messaging.impl.HashedTimerWheel;
+import guru.nicks.commons.messaging.impl.NoOpMessageTypeResolver;
+import guru.nicks.commons.messaging.impl.RequestReplyServiceImpl;
+import guru.nicks.commons.messaging.listener.ReplyMessageListener;
+import guru.nicks.commons.messaging.service.MessagePublisherService;
+import guru.nicks.commons.messaging.service.RequestReplyService;
+import guru.nicks.commons.validation.AnnotationValidator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import lombok.RequiredArgsConstructor;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+@RequiredArgsConstructor
+public class RequestReplyServiceSteps {
+
+    // DI
+    private final TextWorld textWorld;
+
+    @Mock
+    private MessagePublisherService messagePublisherService;
+    @Mock
+    private AnnotationValidator annotationValidator;
+    @Captor
+    private ArgumentCaptor<Map<String, Object>> headersCaptor;
+    private AutoCloseable closeableMocks;
+
+    private RequestReplyServiceImpl requestReplyService;
+    private ReplyMessageListener replyListener;
+    private CompletableFuture<Message<Map<String, Object>>> future;
+
+    @Before
+    public void beforeEachScenario() {
+        closeableMocks = MockitoAnnotations.openMocks(this);
+    }
+
+    @After
+    public void afterEachScenario() throws Exception {
+        if (requestReplyService != null) {
+            requestReplyService.close();
+        }
+
+        closeableMocks.close();
+    }
+
+    @Given("request-reply service with reply topic {string}")
+    public void requestReplyServiceWithReplyTopic(String replyTopic) {
+        requestReplyService = new RequestReplyServiceImpl(messagePublisherService, replyTopic,
+                new HashedTimerWheel(Duration.ofMillis(10), 64, "test-request-reply-timer"));
+        replyListener = new ReplyMessageListener("test-app", annotationValidator, new ObjectMapper(),
+                requestReplyService);
+    }
+
+    @Given("publishing fails with message {string}")
+    public void publishingFailsWithMessage(String message) {
+        doThrow(new IllegalStateException(message))
+                .when(messagePublisherService)
+                .publish(any(), any(), any(), any(), any());
+    }
+
+    @When("request is sent to topic {string} with timeout of {int} ms")
+    public void requestIsSentToTopicWithTimeoutOfMs(String topic, int timeoutMillis) {
+        future = requestReplyService.request(topic, Map.of("question", "?"), null, NoOpMessageTypeResolver.INSTANCE,
+                Duration.ofMillis(timeoutMillis));
+    }
+
+    @When("request is cancelled by the caller")
+    public void requestIsCancelledByTheCaller() {
+        future.cancel(false);
+    }
+
+    @When("reply with the request correlation ID and field {string} set to {string} arrives at reply listener")
+    public void replyWithTheRequestCorrelationIdArrivesAtReplyListener(String field, String value) {
+        verify(messagePublisherService).publish(any(), any(), any(), any(), headersCaptor.capture());
+        sendReply(headersCaptor.getValue().get(RequestReplyService.CORRELATION_ID_HEADER), field, value);
+    }
+
+    @When("reply with correlation ID {string} and field {string} set to {string} arrives at reply listener")
+    public void replyWithCorrelationIdArrivesAtReplyListener(String correlationId, String field, String value) {
+        textWorld.setLastException(catchThrowable(() ->
+                sendReply(correlationId, field, value)));
+    }
+
+    @When("reply is sent for request having correlation ID {string} and reply topic {string}")
+    public void replyIsSentForRequestHavingCorrelationIdAndReplyTopic(String correlationId, String replyTopic) {
+        requestReplyService.reply(new MessageHeaders(Map.of(
+                        RequestReplyService.CORRELATION_ID_HEADER, correlationId,
+                        RequestReplyService.REPLY_TOPIC_HEADER, replyTopic)),
+                Map.of("answer", "!"), null, NoOpMessageTypeResolver.INSTANCE);
+    }
+
+    @When("reply is sent for request having correlation ID {string} and no reply topic")
+    public void replyIsSentForRequestHavingCorrelationIdAndNoReplyTopic(String correlationId) {
+        textWorld.setLastException(catchThrowable(() ->
+                requestReplyService.reply(new MessageHeaders(Map.of(
+                                RequestReplyService.CORRELATION_ID_HEADER, correlationId)),
+                        Map.of("answer", "!"), null, NoOpMessageTypeResolver.INSTANCE)));
+    }
+
+    @Then("request should be published to topic {string} with correlation ID and reply topic {string}")
+    public void requestShouldBePublishedToTopicWithCorrelationIdAndReplyTopic(String topic, String replyTopic) {
+        verify(messagePublisherService).publish(eq(topic), any(), any(), any(), headersCaptor.capture());
+
+        assertThat(headersCaptor.getValue())
+                .as("request headers")
+                .containsKey(RequestReplyService.CORRELATION_ID_HEADER)
+                .containsEntry(RequestReplyService.REPLY_TOPIC_HEADER, replyTopic);
+    }
+
+    @Then("reply should be published to topic {string} with correlation ID {string}")
+    public void replyShouldBePublishedToTopicWithCorrelationId(String topic, String correlationId) {
+        verify(messagePublisherService).publish(eq(topic), any(), any(), any(), headersCaptor.capture());
+
+        assertThat(headersCaptor.getValue())
+                .as("reply headers")
+                .containsEntry(RequestReplyService.CORRELATION_ID_HEADER, correlationId);
+    }
+
+    @Then("request should be completed with field {string} set to {string}")
+    public void requestShouldBeCompletedWithFieldSetTo(String field, String value) throws Exception {
+        assertThat(future.get(1, TimeUnit.SECONDS).getPayload())
+                .as("reply payload")
+                .containsEntry(field, value);
+    }
+
+    @Then("request should not be completed")
+    public void requestShouldNotBeCompleted() {
+        assertThat(future)
+                .as("request future")
+                .isNotDone();
+    }
+
+    @Then("request should fail with timeout within {int} ms")
+    public void requestShouldFailWithTimeoutWithinMs(int waitMillis) {
+        Throwable e = catchThrowable(() -> future.get(waitMillis, TimeUnit.MILLISECONDS));
+
+        assertThat(e)
+                .as("request failure")
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Then("request should fail with exception message {string}")
+    public void requestShouldFailWithExceptionMessage(String message) {
+        assertThat(future)
+                .as("request future")
+                .isCompletedExceptionally();
+
+        assertThat(catchThrowable(future::join))
+                .as("request failure")
+                .hasRootCauseMessage(message);
+    }
+
+    @Then("pending request count should be {int}")
+    public void pendingRequestCountShouldBe(int count) {
+        assertThat(requestReplyService.getPendingRequestCount())
+                .as("pending request count")
+                .isEqualTo(count);
+    }
+
+    private void sendReply(Object correlationId, String field, String value) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put(field, value);
+
+        replyListener.accept(MessageBuilder
+                .withPayload(payload)
+                .setHeader(RequestReplyService.CORRELATION_ID_HEADER, correlationId)
+                .build());
+    }
+
+}
@@ -1,13 +1,28 @@
 package guru.nicks.commons.cucumber;
 
 import guru.nicks.commons.cucumber.world.TextWorld;
+import guru.nicks.commons.messaging.DeadLetterMetadata;
 import guru.nicks.commons.messaging.MessageType;
+import guru.nicks.commons.messaging.ReusableMessage;
 import guru.nicks.commons.messaging.TypeAwareMessage;
+import guru.nicks.commons.messaging.listener.BackpressurePolicy;
+import guru.nicks.commons.messaging.listener.CoalescingPolicy;
+import guru.nicks.commons.messaging.listener.LoadSheddingPolicy;
+import guru.nicks.commons.messaging.listener.MessageCompletionStore;
 import guru.nicks.commons.messaging.listener.MessageConsumer;
+import guru.nicks.commons.messaging.listener.MessageConsumerIndex;
+import guru.nicks.commons.messaging.listener.MessageLatencyRecorder;
+import guru.nicks.commons.messaging.listener.PriorityBatchMessageListener;
+import guru.nicks.commons.messaging.listener.RetryPolicy;
 import guru.nicks.commons.messaging.listener.TypeBasedDispatchingMessageListener;
+import guru.nicks.commons.messaging.resolver.HeaderBasedMessageTypeResolver;
 import guru.nicks.commons.messaging.resolver.MessageTypeResolver;
+import guru.nicks.commons.messaging.service.BindingStateService;
+import guru.nicks.commons.messaging.service.DeadLetterPublisherService;
+import guru.nicks.commons.messaging.service.MessagePublisherService;
 import guru.nicks.commons.validation.AnnotationValidator;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -16,26 +31,53 @@ import io.cucumber.java.Before;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.ValidationException;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.slf4j.MDC;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -53,18 +95,75 @@ public class TypeBasedDispatchingMessageListenerSteps {
     private MessageTypeResolver mockMessageTypeResolver;
     @Mock
     private AnnotationValidator annotationValidator;
+    @Mock
+    private DeadLetterPublisherService deadLetterPublisherService;
+    @Mock
+    private MessagePublisherService messagePublisherService;
+    @Mock
+    private BindingStateService bindingStateService;
+    @Mock
+    private MessageCompletionStore messageCompletionStore;
+    /**
+     * Coalesced messages are delivered by the steps, so scenarios don't depend on timing.
+     */
+    @Mock
+    private ScheduledExecutorService coalescingScheduler;
+    @Captor
+    private ArgumentCaptor<DeadLetterMetadata> deadLetterMetadataCaptor;
+    @Captor
+    private ArgumentCaptor<byte[]> messageKeyCaptor;
+    @Captor
+    private ArgumentCaptor<Map<String, Object>> headersCaptor;
     private AutoCloseable closeableMocks;
     private TestTypeBasedDispatchingMessageListener listener;
     private Message<Map<String, Object>> testMessage;
 
+    private boolean fanOutEnabled;
     private boolean consumerCalled;
+    private int consumerCallCount;
+    private String receivedContent;
+    private Map<String, String> logContextDuringConsumption;
+    private SimpleMeterRegistry meterRegistry;
+    private LoadSheddingPolicy loadSheddingPolicy;
+    private BackpressurePolicy backpressurePolicy;
+    private String deadLetterTopic;
+    private MessageConsumer<TestTypeAwareMessage> runtimeConsumer;
+    private final List<String> reusablePayloadContents = new ArrayList<>();
+    private final List<Object> reusablePayloadInstances = new ArrayList<>();
+    private final List<String> processedContents = new ArrayList<>();
     private boolean unknownTypeConsumerCalled;
+    private boolean declaringConsumerCalled;
+    private int failingConsumerCallCount;
+    private LimitedMessageConsumer limitedConsumer;
+    private long receivingMillis;
+    private final List<Runnable> scheduledCoalescingFlushes = new ArrayList<>();
+    private final AtomicInteger acknowledgedCount = new AtomicInteger();
 
     @Before
     public void beforeEachScenario() {
         closeableMocks = MockitoAnnotations.openMocks(this);
+        fanOutEnabled = false;
         consumerCalled = false;
+        consumerCallCount = 0;
+        receivedContent = null;
+        logContextDuringConsumption = null;
+        loadSheddingPolicy = null;
+        backpressurePolicy = null;
+        deadLetterTopic = null;
+        MDC.clear();
+        reusablePayloadContents.clear();
+        reusablePayloadInstances.clear();
+        processedContents.clear();
         unknownTypeConsumerCalled = false;
+        declaringConsumerCalled = false;
+        failingConsumerCallCount = 0;
+        scheduledCoalescingFlushes.clear();
+        acknowledgedCount.set(0);
+
+        doAnswer(invocation -> {
+            scheduledCoalescingFlushes.add(invocation.getArgument(0));
+            return null;
+        }).when(coalescingScheduler).schedule(any(Runnable.class), anyLong(), any());
     }
 
     @After
@@ -79,23 +178,211 @@ public class TypeBasedDispatchingMessageListenerSteps {
                 listener = new TestTypeBasedDispatchingMessageListener(mockMessageTypeResolver)));
     }
 
+    @Given("a type based dispatching message listener is initialized with shared consumer index")
+    public void aTypeBasedDispatchingMessageListenerIsInitializedWithSharedConsumerIndex() {
+        doNothing().when(annotationValidator).validate(any());
+        textWorld.setLastException(catchThrowable(() ->
+                listener = new TestTypeBasedDispatchingMessageListener(new MessageConsumerIndex(messageConsumers),
+                        mockMessageTypeResolver)));
+    }
+
+    @Given("a type based dispatching message listener with message type header {string} is initialized")
+    public void aTypeBasedDispatchingMessageListenerWithMessageTypeHeaderIsInitialized(String headerName) {
+        doNothing().when(annotationValidator).validate(any());
+        textWorld.setLastException(catchThrowable(() ->
+                listener = new TestTypeBasedDispatchingMessageListener(
+                        new HeaderBasedMessageTypeResolver(headerName, "type"))));
+    }
+
     @Given("a type based dispatching message listener is initialized with no consumers")
     public void aTypeBasedDispatchingMessageListenerIsInitializedWithNoConsumers() {
         listener = new TestTypeBasedDispatchingMessageListener(mockMessageTypeResolver, true);
     }
 
+    @Given("fan-out mode is enabled")
+    public void fanOutModeIsEnabled() {
+        fanOutEnabled = true;
+    }
+
     @Given("a message consumer is registered for test message")
     public void aMessageConsumerIsRegisteredForTestMessage() {
         MessageConsumer<TestTypeAwareMessage> testConsumer = new TestMessageConsumer(false);
         addMessageConsumer(testConsumer);
     }
 
+    @Given("a message consumer with ID {string} is registered for test message")
+    public void aMessageConsumerWithIdIsRegisteredForTestMessage(String consumerId) {
+        addMessageConsumer(new TestMessageConsumer(false) {
+
+            @Override
+            public String getConsumerId() {
+                return consumerId;
+            }
+
+        });
+    }
+
+    @Given("the listener has a message completion store")
+    public void theListenerHasAMessageCompletionStore() {
+        listener.setMessageCompletionStore(messageCompletionStore);
+    }
+
+    @Given("a message consumer using specialized deserialization is registered for test message")
+    public void aMessageConsumerUsingSpecializedDeserializationIsRegistered() {
+        addMessageConsumer(new TestMessageConsumer(false) {
+
+            @Override
+            public boolean useSpecializedDeserialization() {
+                return true;
+            }
+
+        });
+    }
+
+    @Given("a message consumer with max message age of {int} seconds is registered for test message")
+    public void aMessageConsumerWithMaxMessageAgeIsRegistered(int maxAgeSeconds) {
+        addMessageConsumer(new TestMessageConsumer(false) {
+
+            @Override
+            public Duration getMaxMessageAge() {
+                return Duration.ofSeconds(maxAgeSeconds);
+            }
+
+        });
+    }
+
+    @Given("a message consumer of payloads whose message type has max age of 60 seconds is registered")
+    public void aMessageConsumerOfPayloadsWhoseMessageTypeHasMaxAgeIsRegistered() {
+        addMessageConsumer(new MessageConsumer<ExpiringTestMessage>() {
+
+            @Override
+            public String getMessageListenerId() {
+                return "testListener";
+            }
+
+            @Override
+            public void accept(ExpiringTestMessage payload, MessageHeaders headers) {
+                consumerCalled = true;
+                consumerCallCount++;
+            }
+
+        });
+    }
+
+    @Given("load shedding of message type {string} is enabled with lag threshold of {int} seconds")
+    public void loadSheddingOfMessageTypeIsEnabled(String messageType, int lagThresholdSeconds) {
+        loadSheddingPolicy = LoadSheddingPolicy.builder()
+                .lagThreshold(Duration.ofSeconds(lagThresholdSeconds))
+                .sheddableMessageType(messageType)
+                .build();
+    }
+
+    @Given("load shedding of message type {string} is enabled with lag threshold of {int} seconds and deferred topic "
+            + "{string}")
+    public void loadSheddingOfMessageTypeIsEnabledWithDeferredTopic(String messageType, int lagThresholdSeconds,
+            String deferredTopic) {
+        loadSheddingPolicy = LoadSheddingPolicy.builder()
+                .lagThreshold(Duration.ofSeconds(lagThresholdSeconds))
+                .sheddableMessageType(messageType)
+                .deferredTopic(deferredTopic)
+                .build();
+    }
+
+    @Given("the listener has a message publisher")
+    public void theListenerHasAMessagePublisher() {
+        listener.setMessagePublisherService(messagePublisherService);
+    }
+
+    @Given("a message consumer limited to {int} messages per second is registered for test message")
+    public void aMessageConsumerLimitedToMessagesPerSecondIsRegistered(int maxRate) {
+        limitedConsumer = new LimitedMessageConsumer(maxRate, 0, 0);
+        addMessageConsumer(limitedConsumer);
+    }
+
+    @Given("a message consumer limited to {int} concurrent message(s) and taking {int} ms is registered for test "
+            + "message")
+    public void aMessageConsumerLimitedToConcurrentMessagesIsRegistered(int maxConcurrency, int processingMillis) {
+        limitedConsumer = new LimitedMessageConsumer(0, maxConcurrency, processingMillis);
+        addMessageConsumer(limitedConsumer);
+    }
+
+    @Given("a message consumer taking {int} ms is registered for test message")
+    public void aMessageConsumerTakingMsIsRegistered(int processingMillis) {
+        limitedConsumer = new LimitedMessageConsumer(0, 0, processingMillis);
+        addMessageConsumer(limitedConsumer);
+    }
+
+    @Given("backpressure is enabled with latency threshold of {int} ms")
+    public void backpressureIsEnabledWithLatencyThreshold(int latencyThresholdMillis) {
+        backpressurePolicy = BackpressurePolicy.builder()
+                .latencyThreshold(Duration.ofMillis(latencyThresholdMillis))
+                .pauseDuration(Duration.ofMinutes(1))
+                .build();
+    }
+
+    @Given("the listener can pause its binding")
+    public void theListenerCanPauseItsBinding() {
+        listener.setBindingStateService(bindingStateService);
+    }
+
+    @Given("a message consumer with reusable payload is registered for test message")
+    public void aMessageConsumerWithReusablePayloadIsRegistered() {
+        addMessageConsumer(new ReusablePayloadConsumer());
+    }
+
+    @Given("a message consumer with priority {int} is registered for message type {string}")
+    public void aMessageConsumerWithPriorityIsRegistered(int priority, String messageType) {
+        addMessageConsumer(new PrioritizedMessageConsumer(new TestMessageType(messageType), priority));
+    }
+
     @Given("a message consumer is registered for unknown message types")
     public void aMessageConsumerIsRegisteredForUnknownMessageTypes() {
         MessageConsumer<TestTypeAwareMessage> unknownTypeConsumer = new TestMessageConsumer(true);
         addMessageConsumer(unknownTypeConsumer);
     }
 
+    @Given("a message consumer declaring payload class and message type {string} is registered")
+    public void aMessageConsumerDeclaringPayloadClassAndMessageTypeIsRegistered(String messageType) {
+        addMessageConsumer(new DeclaringMessageConsumer(new TestMessageType(messageType)));
+    }
+
+    @Given("a message consumer failing {int} times with retry policy of {int} attempts is registered")
+    public void aMessageConsumerFailingTimesWithRetryPolicyIsRegistered(int failures, int maxAttempts) {
+        addMessageConsumer(new FailingMessageConsumer(failures, maxAttempts, callCount ->
+                new IllegalStateException("consumer failure #" + callCount)));
+    }
+
+    @Given("a message consumer failing with validation exception and retry policy of {int} attempts is registered")
+    public void aMessageConsumerFailingWithValidationExceptionIsRegistered(int maxAttempts) {
+        addMessageConsumer(new FailingMessageConsumer(Integer.MAX_VALUE, maxAttempts, callCount ->
+                new ValidationException("invalid state #" + callCount)));
+    }
+
+    @Given("a coalescing message consumer is registered for test message")
+    public void aCoalescingMessageConsumerIsRegistered() {
+        addMessageConsumer(new TestMessageConsumer(false) {
+
+            @Override
+            public CoalescingPolicy<TestTypeAwareMessage> getCoalescingPolicy() {
+                return CoalescingPolicy.<TestTypeAwareMessage>builder().build();
+            }
+
+        });
+    }
+
+    @Given("the listener publishes dead letters to topic {string}")
+    public void theListenerPublishesDeadLettersToTopic(String topic) {
+        deadLetterTopic = topic;
+        listener.setDeadLetterPublisherService(deadLetterPublisherService);
+    }
+
+    @Given("publishing dead letters fails with message {string}")
+    public void publishingDeadLettersFailsWithMessage(String message) {
+        doThrow(new IllegalStateException(message))
+                .when(deadLetterPublisherService)
+                .publish(any(), any(), any());
+    }
+
     @Given("a message type resolver that resolves message type to {string}")
     public void aMessageTypeResolverThatResolvesMessageTypeTo(String messageType) {
         when(mockMessageTypeResolver.readMessageType(any()))
@@ -115,6 +402,157 @@ public class TypeBasedDispatchingMessageListenerSteps {
         listener.accept(testMessage);
     }
 
+    @Given("the listener has a meter registry")
+    public void theListenerHasAMeterRegistry() {
+        meterRegistry = new SimpleMeterRegistry();
+        listener.setMeterRegistry(meterRegistry);
+    }
+
+    @When("a message with type {string} published {int} ms ago is received")
+    public void aMessageWithTypePublishedMsAgoIsReceived(String messageType, int ageMillis) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", messageType);
+        payload.put("content", "Test content");
+
+        long publishTimestampMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now().minusMillis(ageMillis));
+        testMessage = MessageBuilder.createMessage(payload, new MessageHeaders(new HashMap<>(Map.of(
+                MessagePublisherService.PUBLISH_TIMESTAMP_HEADER, publishTimestampMicros))));
+        when(mockMessageTypeResolver.readMessageType(testMessage))
+                .thenReturn(messageType);
+
+        textWorld.setLastException(catchThrowable(() -> listener.accept(testMessage)));
+    }
+
+    @When("a message with type {string} and Kafka timestamp {int} seconds ago is received")
+    public void aMessageWithTypeAndKafkaTimestampIsReceived(String messageType, int ageSeconds) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", messageType);
+        payload.put("content", "Test content");
+
+        testMessage = MessageBuilder.createMessage(payload, new MessageHeaders(new HashMap<>(Map.of(
+                KafkaHeaders.RECEIVED_TIMESTAMP, Instant.now().minusSeconds(ageSeconds).toEpochMilli()))));
+        when(mockMessageTypeResolver.readMessageType(testMessage))
+                .thenReturn(messageType);
+
+        textWorld.setLastException(catchThrowable(() -> listener.accept(testMessage)));
+    }
+
+    @When("a message with header {string} set to {string}, key {string} and Kafka timestamp {int} seconds ago is "
+            + "received")
+    public void aMessageWithHeaderKeyAndKafkaTimestampIsReceived(String headerName, String headerValue, String key,
+            int ageSeconds) {
+        testMessage = MessageBuilder.<Map<String, Object>>withPayload(new HashMap<>(Map.of("content", "Test content")))
+                .setHeader(headerName, headerValue.getBytes(StandardCharsets.UTF_8))
+                .setHeader(KafkaHeaders.RECEIVED_KEY, key.getBytes(StandardCharsets.UTF_8))
+                .setHeader(KafkaHeaders.RECEIVED_TIMESTAMP, Instant.now().minusSeconds(ageSeconds).toEpochMilli())
+                .build();
+
+        textWorld.setLastException(catchThrowable(() -> listener.accept(testMessage)));
+    }
+
+    @When("{int} messages with type {string} are received")
+    public void messagesWithTypeAreReceived(int count, String messageType) {
+        when(mockMessageTypeResolver.readMessageType(any()))
+                .thenReturn(messageType);
+        long start = System.nanoTime();
+
+        textWorld.setLastException(catchThrowable(() -> {
+            for (int i = 0; i < count; i++) {
+                listener.accept(createMessage(messageType));
+            }
+        }));
+
+        receivingMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @When("{int} messages with type {string} are received concurrently")
+    public void messagesWithTypeAreReceivedConcurrently(int count, String messageType) throws Exception {
+        when(mockMessageTypeResolver.readMessageType(any()))
+                .thenReturn(messageType);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(count)) {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < count; i++) {
+                futures.add(executor.submit(() -> listener.accept(createMessage(messageType))));
+            }
+
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @When("a message with type {string} and no content is received")
+    public void aMessageWithTypeAndNoContentIsReceived(String messageType) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", messageType);
+
+        testMessage = MessageBuilder.createMessage(payload, new MessageHeaders(new HashMap<>()));
+        when(mockMessageTypeResolver.readMessageType(testMessage))
+                .thenReturn(messageType);
+
+        textWorld.setLastException(catchThrowable(() -> listener.accept(testMessage)));
+    }
+
+    @When("messages with Kafka timestamp {int} seconds ago are received:")
+    public void messagesWithKafkaTimestampAreReceived(int ageSeconds, List<Map<String, String>> rows) {
+        when(mockMessageTypeResolver.readMessageType(any()))
+                .thenAnswer(invocation -> invocation.<Message<Map<String, Object>>>getArgument(0)
+                        .getPayload()
+                        .get("type"));
+
+        textWorld.setLastException(catchThrowable(() -> {
+            for (Map<String, String> row : rows) {
+                listener.accept(MessageBuilder.<Map<String, Object>>withPayload(new HashMap<>(Map.of(
+                                "type", row.get("type"),
+                                "content", row.get("content"))))
+                        .setHeader(KafkaHeaders.RECEIVED_TIMESTAMP,
+                                Instant.now().minusSeconds(ageSeconds).toEpochMilli())
+                        .build());
+            }
+        }));
+    }
+
+    @When("a message consumer for test message is registered at runtime")
+    public void aMessageConsumerForTestMessageIsRegisteredAtRuntime() {
+        runtimeConsumer = new TestMessageConsumer(false);
+        textWorld.setLastException(catchThrowable(() -> listener.registerMessageConsumer(runtimeConsumer)));
+    }
+
+    @When("the runtime message consumer is disabled")
+    public void theRuntimeMessageConsumerIsDisabled() {
+        assertThat(listener.disableMessageConsumer(runtimeConsumer))
+                .as("disabled")
+                .isTrue();
+    }
+
+    @When("a batch of messages is received by a priority listener:")
+    public void aBatchOfMessagesIsReceivedByAPriorityListener(List<Map<String, String>> rows) {
+        List<Map<String, Object>> payloads = new ArrayList<>();
+        List<byte[]> keys = new ArrayList<>();
+
+        for (Map<String, String> row : rows) {
+            payloads.add(new HashMap<>(Map.of(
+                    "type", row.get("type"),
+                    "content", row.get("content"))));
+            keys.add(row.get("key").getBytes(StandardCharsets.UTF_8));
+        }
+
+        when(mockMessageTypeResolver.readMessageType(any()))
+                .thenAnswer(invocation -> invocation.<Message<Map<String, Object>>>getArgument(0)
+                        .getPayload()
+                        .get("type"));
+
+        Message<List<Map<String, Object>>> batch = MessageBuilder.withPayload(payloads)
+                .setHeader(KafkaHeaders.RECEIVED_KEY, keys)
+                .build();
+        var priorityListener = new PriorityBatchMessageListener(listener) {
+        };
+
+        textWorld.setLastException(catchThrowable(() -> priorityListener.accept(batch)));
+    }
+
     @When("a message with null type is received")
     public void aMessageWithNullTypeIsReceived() {
         Map<String, Object> payload = new HashMap<>();
@@ -131,6 +569,60 @@ public class TypeBasedDispatchingMessageListenerSteps {
         }
     }
 
+    @When("a message with type {string}, key {string} and acknowledgment is received")
+    public void aMessageWithTypeKeyAndAcknowledgmentIsReceived(String messageType, String key) {
+        Acknowledgment acknowledgment = acknowledgedCount::incrementAndGet;
+
+        testMessage = MessageBuilder.<Map<String, Object>>withPayload(new HashMap<>(Map.of(
+                        "type", messageType,
+                        "content", "Test content")))
+                .setHeader(KafkaHeaders.RECEIVED_KEY, key.getBytes(StandardCharsets.UTF_8))
+                .setHeader(KafkaHeaders.ACKNOWLEDGMENT, acknowledgment)
+                .build();
+        when(mockMessageTypeResolver.readMessageType(any()))
+                .thenReturn(messageType);
+
+        textWorld.setLastException(catchThrowable(() -> listener.accept(testMessage)));
+    }
+
+    @When("scheduled coalescing flushes run")
+    public void scheduledCoalescingFlushesRun() {
+        scheduledCoalescingFlushes.forEach(Runnable::run);
+    }
+
+    @When("a message with type {string} is received by a listener that may fail")
+    public void aMessageWithTypeIsReceivedByListenerThatMayFail(String messageType) {
+        textWorld.setLastException(catchThrowable(() ->
+                aMessageWithTypeIsReceived(messageType)));
+    }
+
+    @When("a message with type {string} and offset {int} is delivered twice")
+    public void aMessageWithTypeAndOffsetIsDeliveredTwice(String messageType, int offset) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", messageType);
+        payload.put("content", "Test content");
+
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(KafkaHeaders.RECEIVED_TOPIC, "test-topic");
+        headers.put(KafkaHeaders.RECEIVED_PARTITION, 0);
+        headers.put(KafkaHeaders.OFFSET, (long) offset);
+
+        testMessage = MessageBuilder.createMessage(payload, new MessageHeaders(headers));
+        when(mockMessageTypeResolver.readMessageType(testMessage))
+                .thenReturn(messageType);
+
+        // first delivery is expected to fail partially
+        catchThrowable(() -> listener.accept(testMessage));
+        textWorld.setLastException(catchThrowable(() -> listener.accept(testMessage)));
+    }
+
+    @Then("completion of the message by consumer {string} should be recorded in the message completion store")
+    public void completionOfTheMessageByConsumerShouldBeRecorded(String consumerId) {
+        verify(messageCompletionStore, times(2))
+                .markCompleted(listener.getId() + ":test-topic:0:" + testMessage.getHeaders().get(KafkaHeaders.OFFSET),
+                        consumerId);
+    }
+
     @When("another message consumer is registered for test message")
     public void anotherMessageConsumerIsRegisteredForMessage() {
         MessageConsumer<TestTypeAwareMessage> duplicateConsumer = new TestMessageConsumer(false);
@@ -158,6 +650,141 @@ public class TypeBasedDispatchingMessageListenerSteps {
                 .isTrue();
     }
 
+    @Then("the message should be acknowledged {int} time(s)")
+    public void theMessageShouldBeAcknowledgedTimes(int count) {
+        assertThat(acknowledgedCount.get())
+                .as("acknowledgments")
+                .isEqualTo(count);
+    }
+
+    @Then("the consumer should be called {int} times")
+    public void theConsumerShouldBeCalledTimes(int expectedCallCount) {
+        assertThat(consumerCallCount)
+                .as("consumer call count")
+                .isEqualTo(expectedCallCount);
+    }
+
+    @Then("the listener should have shed {int} messages")
+    public void theListenerShouldHaveShedMessages(int expectedCount) {
+        assertThat(listener.getShedMessageCount())
+                .as("shed message count")
+                .isEqualTo(expectedCount);
+    }
+
+    @Then("the shared consumer index should have message type {string} for the consumer")
+    public void theSharedConsumerIndexShouldHaveMessageType(String messageType) {
+        MessageConsumerIndex index = listener.getMessageConsumerIndex();
+
+        assertThat(index)
+                .as("consumer index")
+                .isNotNull();
+        assertThat(index.getMessageConsumers(listener.getId()))
+                .as("indexed consumers")
+                .containsExactlyElementsOf(messageConsumers);
+        assertThat(index.getMessageType(messageConsumers.getFirst()))
+                .as("message type")
+                .isEqualTo(messageType);
+    }
+
+    @Then("the listener should have load-shed {int} messages")
+    public void theListenerShouldHaveLoadShedMessages(int expectedCount) {
+        assertThat(listener.getLoadShedMessageCount())
+                .as("load-shed message count")
+                .isEqualTo(expectedCount);
+    }
+
+    @Then("load-shed messages should be counted only for message type {string}: {int}")
+    public void loadShedMessagesShouldBeCountedOnlyForMessageType(String messageType, int expectedCount) {
+        Collection<Counter> counters = meterRegistry.find(TypeBasedDispatchingMessageListener.LOAD_SHED_MESSAGES_METER)
+                .tag(MessageLatencyRecorder.LISTENER_TAG, listener.getId())
+                .counters();
+
+        assertThat(counters)
+                .as("load-shed message counters")
+                .singleElement()
+                .satisfies(counter -> {
+                    assertThat(counter.getId().getTag(MessageLatencyRecorder.MESSAGE_TYPE_TAG))
+                            .as("message type tag")
+                            .isEqualTo(messageType);
+                    assertThat(counter.count())
+                            .as("load-shed message count")
+                            .isEqualTo(expectedCount);
+                });
+    }
+
+    @Then("the consumer should receive content {string}")
+    public void theConsumerShouldReceiveContent(String expectedContent) {
+        assertThat(receivedContent)
+                .as("received content")
+                .isEqualTo(expectedContent);
+    }
+
+    @Then("the reusable payload consumer should receive contents {string}")
+    public void theReusablePayloadConsumerShouldReceiveContents(String expectedContents) {
+        // trailing empty strings are kept, they mean null content
+        List<String> expected = List.of(expectedContents.split(",", -1))
+                .stream()
+                .map(content -> content.isEmpty() ? null : content)
+                .toList();
+
+        assertThat(reusablePayloadContents)
+                .as("received contents")
+                .isEqualTo(expected);
+    }
+
+    @Then("the reusable payload consumer should receive the same instance each time")
+    public void theReusablePayloadConsumerShouldReceiveTheSameInstanceEachTime() {
+        assertThat(reusablePayloadInstances)
+                .as("received instances")
+                .isNotEmpty()
+                .allSatisfy(instance -> assertThat(instance)
+                        .isSameAs(reusablePayloadInstances.getFirst()));
+    }
+
+    @Then("messages should be processed in order {string}")
+    public void messagesShouldBeProcessedInOrder(String expectedOrder) {
+        assertThat(processedContents)
+                .as("processed contents")
+                .containsExactly(expectedOrder.split(","));
+    }
+
+    @Then("{string} latency of at least {int} ms should be recorded for message type {string}")
+    public void latencyShouldBeRecordedForMessageType(String meterName, int minLatencyMillis, String messageType) {
+        Timer timer = meterRegistry.find(meterName)
+                .tag(MessageLatencyRecorder.LISTENER_TAG, listener.getId())
+                .tag(MessageLatencyRecorder.MESSAGE_TYPE_TAG, messageType)
+                .timer();
+
+        assertThat(timer)
+                .as("timer")
+                .isNotNull();
+        assertThat(timer.count())
+                .as("recorded latency count")
+                .isEqualTo(1);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS))
+                .as("recorded latency")
+                .isGreaterThanOrEqualTo(minLatencyMillis);
+    }
+
+    @Then("the message ID should be in the log context during consumption")
+    public void theMessageIdShouldBeInTheLogContextDuringConsumption() {
+        assertThat(logContextDuringConsumption)
+                .as("log context during consumption")
+                .isNotNull()
+                .containsValue(String.valueOf(testMessage.getHeaders().getId()));
+    }
+
+    @Then("the message ID should not remain in the log context")
+    public void theMessageIdShouldNotRemainInTheLogContext() {
+        Map<String, String> logContext = MDC.getCopyOfContextMap();
+
+        if (logContext != null) {
+            assertThat(logContext)
+                    .as("log context after consumption")
+                    .doesNotContainValue(String.valueOf(testMessage.getHeaders().getId()));
+        }
+    }
+
     @Then("the message should be dispatched to the unknown type consumer")
     public void theMessageShouldBeDispatchedToTheUnknownTypeConsumer() {
         assertThat(unknownTypeConsumerCalled)
@@ -165,6 +792,84 @@ public class TypeBasedDispatchingMessageListenerSteps {
                 .isTrue();
     }
 
+    @Then("the message should be dispatched to the declaring consumer")
+    public void theMessageShouldBeDispatchedToTheDeclaringConsumer() {
+        assertThat(declaringConsumerCalled)
+                .as("declaring consumer called flag")
+                .isTrue();
+    }
+
+    @Then("the failing consumer should be called {int} times")
+    public void theFailingConsumerShouldBeCalledTimes(int expectedCallCount) {
+        assertThat(failingConsumerCallCount)
+                .as("failing consumer call count")
+                .isEqualTo(expectedCallCount);
+    }
+
+    @Then("a dead letter should be published to topic {string} after {int} attempts")
+    public void aDeadLetterShouldBePublishedToTopicAfterAttempts(String topic, int attempts) {
+        verify(deadLetterPublisherService)
+                .publish(eq(topic), eq(testMessage), deadLetterMetadataCaptor.capture());
+
+        DeadLetterMetadata metadata = deadLetterMetadataCaptor.getValue();
+        assertThat(metadata.getListenerId())
+                .as("listener ID")
+                .isEqualTo(listener.getId());
+        assertThat(metadata.getConsumerClass())
+                .as("consumer class")
+                .isEqualTo(FailingMessageConsumer.class.getName());
+        assertThat(metadata.getAttempts())
+                .as("attempts")
+                .isEqualTo(attempts);
+    }
+
+    @Then("receiving should take at least {int} ms")
+    public void receivingShouldTakeAtLeastMs(int millis) {
+        assertThat(receivingMillis)
+                .as("receiving time")
+                .isGreaterThanOrEqualTo(millis);
+    }
+
+    @Then("the binding should be paused {int} time(s)")
+    public void theBindingShouldBePausedTimes(int count) {
+        verify(bindingStateService, times(count))
+                .pauseFor(eq(listener.getBindingName()), any());
+        // pauses end by themselves, not after each throttled message
+        verify(bindingStateService, never())
+                .resume(any());
+    }
+
+    @Then("the limited consumer should be called {int} times")
+    public void theLimitedConsumerShouldBeCalledTimes(int count) {
+        assertThat(limitedConsumer.callCount.get())
+                .as("limited consumer call count")
+                .isEqualTo(count);
+    }
+
+    @Then("the limited consumer should process at most {int} message(s) at the same time")
+    public void theLimitedConsumerShouldProcessAtMostMessagesAtTheSameTime(int count) {
+        assertThat(limitedConsumer.maxActiveCount.get())
+                .as("max. concurrently processed messages")
+                .isLessThanOrEqualTo(count);
+    }
+
+    @Then("the message should be deferred to topic {string} with key {string} and header {string} set to {string}")
+    public void theMessageShouldBeDeferredToTopic(String topic, String key, String headerName, String headerValue) {
+        verify(messagePublisherService).publish(eq(topic), eq(testMessage.getPayload()), messageKeyCaptor.capture(),
+                any(MessageTypeResolver.class), headersCaptor.capture());
+
+        assertThat(messageKeyCaptor.getValue())
+                .as("message key")
+                .isEqualTo(key.getBytes(StandardCharsets.UTF_8));
+        assertThat(headersCaptor.getValue())
+                .as("deferred message headers")
+                .containsKey(headerName)
+                .doesNotContainKeys(KafkaHeaders.RECEIVED_KEY, KafkaHeaders.RECEIVED_TIMESTAMP, MessageHeaders.ID);
+        assertThat(new String((byte[]) headersCaptor.getValue().get(headerName), StandardCharsets.UTF_8))
+                .as("message type header")
+                .isEqualTo(headerValue);
+    }
+
     @Then("the message type resolver should be called to resolve the message type")
     public void theMessageTypeResolverShouldBeCalledToResolveTheMessageType() {
         verify(mockMessageTypeResolver)
@@ -175,6 +880,13 @@ public class TypeBasedDispatchingMessageListenerSteps {
         messageConsumers.add(consumer);
     }
 
+    private static Message<Map<String, Object>> createMessage(String messageType) {
+        return MessageBuilder.<Map<String, Object>>withPayload(new HashMap<>(Map.of(
+                        "type", messageType,
+                        "content", "Test content")))
+                .build();
+    }
+
     /**
      * Test implementation of {@link TypeAwareMessage}.
      */
@@ -192,6 +904,63 @@ public class TypeBasedDispatchingMessageListenerSteps {
 
     }
 
+    /**
+     * Reusable test payload.
+     */
+    @Getter
+    @Setter
+    private static class ReusableTestMessage implements TypeAwareMessage<TestMessageType>, ReusableMessage {
+
+        private final TestMessageType type;
+
+        private String content;
+
+        public ReusableTestMessage() {
+            type = new TestMessageType("test-type");
+        }
+
+        @Override
+        public void reset() {
+            content = null;
+        }
+
+    }
+
+    /**
+     * Payload whose message type (not declared by its consumer) limits message age. The type is implied by the class,
+     * so it's not deserialized.
+     */
+    @Getter
+    @Setter
+    @JsonIgnoreProperties("type")
+    private static class ExpiringTestMessage implements TypeAwareMessage<ExpiringTestMessageType> {
+
+        private final ExpiringTestMessageType type;
+
+        private String content;
+
+        public ExpiringTestMessage() {
+            type = ExpiringTestMessageType.TEST;
+        }
+
+    }
+
+    private enum ExpiringTestMessageType implements MessageType {
+
+        TEST;
+
+        @Override
+        public String getMessageBrokerValue() {
+            return "test-type";
+        }
+
+        @Override
+        public Duration getMaxMessageAge() {
+            return Duration.ofSeconds(60);
+        }
+
+    }
+
     /**
      * Test implementation of {@link MessageType}.
      */
@@ -217,6 +986,18 @@ public class TypeBasedDispatchingMessageListenerSteps {
 
     }
 
+    /**
+     * Payload not knowing its message type.
+     */
+    @Getter
+    @Setter
+    private static class UntypedMessage {
+
+        private String type;
+        private String content;
+
+    }
+
     /**
      * Consumer for NonTypeAwareMessage.
      */
@@ -234,6 +1015,176 @@ public class TypeBasedDispatchingMessageListenerSteps {
 
     }
 
+    /**
+     * Consumer declaring its payload class and message type explicitly, therefore its payload class doesn't have to be
+     * a {@link TypeAwareMessage}.
+     */
+    @RequiredArgsConstructor
+    private class DeclaringMessageConsumer implements MessageConsumer<UntypedMessage> {
+
+        private final MessageType messageType;
+
+        @Override
+        public String getMessageListenerId() {
+            return "testListener";
+        }
+
+        @Override
+        public Class<?> getPayloadClass() {
+            return UntypedMessage.class;
+        }
+
+        @Override
+        public MessageType getMessageType() {
+            return messageType;
+        }
+
+        @Override
+        public void accept(UntypedMessage payload, MessageHeaders headers) {
+            declaringConsumerCalled = true;
+        }
+
+    }
+
+    /**
+     * Consumer of reusable payloads, remembers what it has received.
+     */
+    private class ReusablePayloadConsumer implements MessageConsumer<ReusableTestMessage> {
+
+        @Override
+        public String getMessageListenerId() {
+            return "testListener";
+        }
+
+        @Override
+        public boolean isPayloadReusable() {
+            return true;
+        }
+
+        @Override
+        public void accept(ReusableTestMessage payload, MessageHeaders headers) {
+            reusablePayloadContents.add(payload.getContent());
+            // retaining the payload itself is exactly what consumers must not do, but it's fine for identity checks
+            reusablePayloadInstances.add(payload);
+        }
+
+    }
+
+    /**
+     * Consumer having rate and/or concurrency limits, tracks how many messages it processes at the same time.
+     */
+    @RequiredArgsConstructor
+    private static class LimitedMessageConsumer implements MessageConsumer<TestTypeAwareMessage> {
+
+        private final double maxRate;
+        private final int maxConcurrency;
+        private final long processingMillis;
+
+        private final AtomicInteger callCount = new AtomicInteger();
+        private final AtomicInteger activeCount = new AtomicInteger();
+        private final AtomicInteger maxActiveCount = new AtomicInteger();
+
+        @Override
+        public String getMessageListenerId() {
+            return "testListener";
+        }
+
+        @Override
+        public double getMaxRate() {
+            return maxRate;
+        }
+
+        @Override
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        @Override
+        public void accept(TestTypeAwareMessage payload, MessageHeaders headers) {
+            callCount.incrementAndGet();
+            maxActiveCount.accumulateAndGet(activeCount.incrementAndGet(), Math::max);
+
+            try {
+                Thread.sleep(processingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                activeCount.decrementAndGet();
+            }
+        }
+
+    }
+
+    /**
+     * Consumer having a priority, remembers the order of processed messages.
+     */
+    @RequiredArgsConstructor
+    private class PrioritizedMessageConsumer implements MessageConsumer<UntypedMessage> {
+
+        private final MessageType messageType;
+        private final int priority;
+
+        @Override
+        public String getMessageListenerId() {
+            return "testListener";
+        }
+
+        @Override
+        public Class<?> getPayloadClass() {
+            return UntypedMessage.class;
+        }
+
+        @Override
+        public MessageType getMessageType() {
+            return messageType;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void accept(UntypedMessage payload, MessageHeaders headers) {
+            processedContents.add(payload.getContent());
+        }
+
+    }
+
+    /**
+     * Consumer failing a given number of times, then succeeding.
+     */
+    @RequiredArgsConstructor
+    private class FailingMessageConsumer implements MessageConsumer<TestTypeAwareMessage> {
+
+        private final int failures;
+        private final int maxAttempts;
+        private final IntFunction<RuntimeException> exceptionFactory;
+
+        @Override
+        public String getMessageListenerId() {
+            return "testListener";
+        }
+
+        @Override
+        public RetryPolicy getRetryPolicy() {
+            return RetryPolicy.builder()
+                    .maxAttempts(maxAttempts)
+                    .initialBackoff(Duration.ZERO)
+                    .build();
+        }
+
+        @Override
+        public void accept(TestTypeAwareMessage payload, MessageHeaders headers) {
+            failingConsumerCallCount++;
+
+            if (failingConsumerCallCount <= failures) {
+                throw exceptionFactory.apply(failingConsumerCallCount);
+            }
+        }
+
+    }
+
     /**
      * Test implementation of {@link TypeBasedDispatchingMessageListener}.
      */
@@ -254,17 +1205,52 @@ public class TypeBasedDispatchingMessageListenerSteps {
             this.noConsumers = noConsumers;
         }
 
+        public TestTypeBasedDispatchingMessageListener(MessageConsumerIndex messageConsumerIndex,
+                MessageTypeResolver messageTypeResolver) {
+            super("test-app", messageConsumerIndex, messageTypeResolver, annotationValidator, new ObjectMapper());
+            this.noConsumers = false;
+        }
+
         @Override
         public String getId() {
             return "testListener";
         }
 
+        @Override
+        protected boolean isFanOutEnabled() {
+            return fanOutEnabled;
+        }
+
+        @Override
+        protected LoadSheddingPolicy getLoadSheddingPolicy() {
+            return loadSheddingPolicy;
+        }
+
+        @Override
+        protected BackpressurePolicy getBackpressurePolicy() {
+            return backpressurePolicy;
+        }
+
+        @Override
+        protected String getDeadLetterTopic() {
+            return deadLetterTopic;
+        }
+
+        @Override
+        protected ScheduledExecutorService getCoalescingScheduler() {
+            return coalescingScheduler;
+        }
+
         @Override
         protected List<MessageConsumer> findLinkedMessageConsumers() {
             if (noConsumers) {
                 return List.of();
             }
 
+            if (getMessageConsumerIndex() != null) {
+                return super.findLinkedMessageConsumers();
+            }
+
             return messageConsumers;
         }
 
@@ -297,6 +1283,9 @@ public class TypeBasedDispatchingMessageListenerSteps {
                 unknownTypeConsumerCalled = true;
             } else {
                 consumerCalled = true;
+                consumerCallCount++;
+                receivedContent = payload.getContent();
+                logContextDuringConsumption = MDC.getCopyOfContextMap();
             }
         }
 
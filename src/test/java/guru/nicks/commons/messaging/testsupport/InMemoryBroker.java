@@ -0,0 +1,356 @@
+package guru.nicks.commons.messaging.testsupport;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.cloud.stream.function.StreamOperations;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Stands in for Kafka and its Spring Cloud Stream binder in end-to-end tests: as {@link StreamOperations}, it accepts
+ * messages from {@link guru.nicks.commons.messaging.service.MessagePublisherService} (pass it instead of
+ * {@code StreamBridge}), and each partition is consumed by a dedicated thread calling the subscribed listener (usually
+ * a {@link guru.nicks.commons.messaging.listener.DispatchingMessageListener}).
+ * <p>
+ * Published for apps' tests as a separate artifact (classifier {@code test-support}).
+ * <p>
+ * Payloads are serialized to JSON bytes on send and deserialized on receipt, as the real binder does. Partitions are
+ * picked like the Kafka producer does: {@link KafkaHeaders#PARTITION} header, murmur2 of {@link KafkaHeaders#KEY}, or
+ * round-robin for messages without a key. {@link KafkaHeaders#RECEIVED_TIMESTAMP} is the {@link KafkaHeaders#TIMESTAMP}
+ * header, if any, otherwise the send time (like Kafka's {@code CreateTime}). Each topic can have one subscriber (i.e.
+ * one consumer group).
+ * <p>
+ * End-to-end latency (from send to the listener returning) is recorded for each message, see
+ * {@link #getLatenciesNanos()}.
+ */
+@Slf4j
+public class InMemoryBroker implements StreamOperations, AutoCloseable {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(50);
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+
+    /**
+     * Messages sent but not processed yet.
+     */
+    private final AtomicLong pendingMessageCount = new AtomicLong();
+    private final AtomicLong failedMessageCount = new AtomicLong();
+
+    private final List<Thread> consumerThreads = new ArrayList<>();
+    private final List<LatencyLog> latencyLogs = new ArrayList<>();
+
+    private volatile boolean closed;
+
+    public InMemoryBroker(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Sends message to the topic having the same name as the binding.
+     *
+     * @param bindingName topic
+     * @param data        {@link Message}
+     * @return {@code true}
+     * @throws IllegalArgumentException topic doesn't exist, or data is not a {@link Message}
+     */
+    @Override
+    public boolean send(String bindingName, Object data) {
+        sendToTopic(bindingName, data);
+        return true;
+    }
+
+    /**
+     * Same as {@link #send(String, Object)}, payloads are always serialized to JSON.
+     */
+    @Override
+    public boolean send(String bindingName, Object data, MimeType outputContentType) {
+        return send(bindingName, data);
+    }
+
+    /**
+     * Same as {@link #send(String, Object)}, there's only one binder.
+     */
+    @Override
+    public boolean send(String bindingName, @Nullable String binderName, Object data) {
+        return send(bindingName, data);
+    }
+
+    /**
+     * Same as {@link #send(String, Object)}, there's only one binder and payloads are always serialized to JSON.
+     */
+    @Override
+    public boolean send(String bindingName, @Nullable String binderName, Object data, MimeType outputContentType) {
+        return send(bindingName, data);
+    }
+
+    /**
+     * Creates topic. Messages sent to topics that don't exist are rejected.
+     *
+     * @param topic          topic name
+     * @param partitionCount number of partitions
+     */
+    public void createTopic(String topic, int partitionCount) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+
+        if (topics.putIfAbsent(topic, new Topic(partitionCount)) != null) {
+            throw new IllegalStateException("Topic '" + topic + "' already exists");
+        }
+    }
+
+    /**
+     * Starts one consumer thread per partition. Messages sent before subscribing are delivered too.
+     *
+     * @param topic    topic
+     * @param listener listener, exceptions thrown by it are logged and counted (see {@link #getFailedMessageCount()})
+     */
+    public synchronized void subscribe(String topic, Consumer<Message<Map<String, Object>>> listener) {
+        Topic target = getTopic(topic);
+
+        for (int partition = 0; partition < target.partitions.length; partition++) {
+            var latencyLog = new LatencyLog();
+            latencyLogs.add(latencyLog);
+
+            BlockingQueue<Record> queue = target.partitions[partition];
+            var thread = new Thread(() -> consume(queue, listener, latencyLog),
+                    "in-memory-broker-" + topic + "-" + partition);
+            thread.setDaemon(true);
+            consumerThreads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Waits until all sent messages have been processed.
+     *
+     * @param timeout max. time to wait
+     * @return {@code true} if all messages have been processed
+     * @throws InterruptedException thread interrupted while waiting
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        while (pendingMessageCount.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+
+            Thread.sleep(1);
+        }
+
+        return true;
+    }
+
+    public long getFailedMessageCount() {
+        return failedMessageCount.get();
+    }
+
+    /**
+     * Returns end-to-end latencies of all processed messages (including failed ones). Must be called when the broker is
+     * idle, see {@link #awaitIdle(Duration)}.
+     *
+     * @return latencies in nanoseconds, in no particular order
+     */
+    public synchronized long[] getLatenciesNanos() {
+        return latencyLogs.stream()
+                .map(LatencyLog::toArray)
+                .flatMapToLong(Arrays::stream)
+                .toArray();
+    }
+
+    /**
+     * Forgets recorded latencies and failures, e.g. after a warm-up. Must be called when the broker is idle.
+     */
+    public synchronized void resetStatistics() {
+        latencyLogs.forEach(LatencyLog::clear);
+        failedMessageCount.set(0);
+    }
+
+    @Override
+    public synchronized void close() throws InterruptedException {
+        closed = true;
+
+        for (Thread thread : consumerThreads) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private void sendToTopic(String topic, Object message) {
+        if (!(message instanceof Message<?> springMessage)) {
+            throw new IllegalArgumentException("Only messages are supported, got " + message.getClass().getName());
+        }
+
+        Topic target = getTopic(topic);
+        MessageHeaders headers = springMessage.getHeaders();
+        byte[] key = headers.get(KafkaHeaders.KEY, byte[].class);
+        int partition = choosePartition(target, headers.get(KafkaHeaders.PARTITION, Integer.class), key);
+
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(springMessage.getPayload());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Long timestamp = headers.get(KafkaHeaders.TIMESTAMP, Long.class);
+        if (timestamp == null) {
+            timestamp = System.currentTimeMillis();
+        }
+
+        pendingMessageCount.incrementAndGet();
+        target.partitions[partition].add(new Record(topic, partition, target.offsets[partition].getAndIncrement(),
+                key, payload, headers, timestamp, System.nanoTime()));
+    }
+
+    private int choosePartition(Topic topic, Integer explicitPartition, byte[] key) {
+        if (explicitPartition != null) {
+            if ((explicitPartition < 0) || (explicitPartition >= topic.partitions.length)) {
+                throw new IllegalArgumentException("Partition " + explicitPartition + " doesn't exist");
+            }
+
+            return explicitPartition;
+        }
+
+        if (key != null) {
+            return Utils.toPositive(Utils.murmur2(key)) % topic.partitions.length;
+        }
+
+        return Math.floorMod(topic.roundRobin.getAndIncrement(), topic.partitions.length);
+    }
+
+    private void consume(BlockingQueue<Record> queue, Consumer<Message<Map<String, Object>>> listener,
+            LatencyLog latencyLog) {
+        while (!closed) {
+            Record record;
+            try {
+                record = queue.poll(POLL_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (record == null) {
+                continue;
+            }
+
+            try {
+                listener.accept(toMessage(record));
+            } catch (RuntimeException e) {
+                failedMessageCount.incrementAndGet();
+                log.warn("Listener failed on {}-{}@{}: {}", record.topic, record.partition, record.offset,
+                        e.getMessage());
+            } finally {
+                latencyLog.add(System.nanoTime() - record.sentNanos);
+                pendingMessageCount.decrementAndGet();
+            }
+        }
+    }
+
+    private Message<Map<String, Object>> toMessage(Record record) {
+        Map<String, Object> payload;
+        try {
+            payload = objectMapper.readValue(record.payload, new TypeReference<>() {
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        var builder = MessageBuilder.withPayload(payload)
+                .copyHeaders(record.headers)
+                .removeHeaders(KafkaHeaders.KEY, KafkaHeaders.PARTITION, KafkaHeaders.TIMESTAMP)
+                .setHeader(KafkaHeaders.RECEIVED_TOPIC, record.topic)
+                .setHeader(KafkaHeaders.RECEIVED_PARTITION, record.partition)
+                .setHeader(KafkaHeaders.OFFSET, record.offset)
+                .setHeader(KafkaHeaders.RECEIVED_TIMESTAMP, record.timestampMillis);
+
+        if (record.key != null) {
+            builder.setHeader(KafkaHeaders.RECEIVED_KEY, record.key);
+        }
+
+        return builder.build();
+    }
+
+    private Topic getTopic(String topic) {
+        Topic target = topics.get(topic);
+
+        if (target == null) {
+            throw new IllegalArgumentException("Topic '" + topic + "' doesn't exist");
+        }
+
+        return target;
+    }
+
+    private record Record(String topic, int partition, long offset, byte[] key, byte[] payload,
+            MessageHeaders headers, long timestampMillis, long sentNanos) {
+    }
+
+    private static class Topic {
+
+        private final BlockingQueue<Record>[] partitions;
+        private final AtomicLong[] offsets;
+        private final AtomicInteger roundRobin = new AtomicInteger();
+
+        @SuppressWarnings("unchecked")
+        private Topic(int partitionCount) {
+            partitions = new BlockingQueue[partitionCount];
+            offsets = new AtomicLong[partitionCount];
+
+            for (int i = 0; i < partitionCount; i++) {
+                partitions[i] = new LinkedBlockingQueue<>();
+                offsets[i] = new AtomicLong();
+            }
+        }
+
+    }
+
+    /**
+     * Latencies recorded by a single consumer thread - to avoid contention while recording.
+     */
+    private static class LatencyLog {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        private synchronized void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            values[size++] = value;
+        }
+
+        private synchronized long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        private synchronized void clear() {
+            size = 0;
+        }
+
+    }
+
+}
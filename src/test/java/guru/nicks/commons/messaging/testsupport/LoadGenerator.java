@@ -0,0 +1,119 @@
+package guru.nicks.commons.messaging.testsupport;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Publishes messages through {@link InMemoryBroker} from several threads and reports end-to-end throughput and latency
+ * percentiles. What's published is up to the caller: usually it's a call to
+ * {@link guru.nicks.commons.messaging.service.MessagePublisherService} sending to the broker (instead of
+ * {@code StreamBridge}).
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class LoadGenerator {
+
+    private final InMemoryBroker broker;
+
+    /**
+     * Max. time to wait for consumers to process all the published messages.
+     */
+    private final Duration drainTimeout;
+
+    /**
+     * Publishes messages and waits for them to be processed. Statistics collected by the broker before this call are
+     * discarded, so a previous run can serve as a warm-up.
+     *
+     * @param messageCount     number of messages to publish
+     * @param publisherThreads number of threads publishing concurrently
+     * @param publisher        publishes the message having the given sequence number (0-based)
+     * @return report
+     * @throws IllegalStateException messages have not been processed within the drain timeout
+     */
+    public LoadReport run(int messageCount, int publisherThreads, IntConsumer publisher)
+            throws InterruptedException {
+        if ((messageCount <= 0) || (publisherThreads <= 0)) {
+            throw new IllegalArgumentException("Message count and publisher threads must be positive");
+        }
+
+        if (!broker.awaitIdle(drainTimeout)) {
+            throw new IllegalStateException("Broker is busy with previous messages");
+        }
+        broker.resetStatistics();
+
+        ExecutorService executor = Executors.newFixedThreadPool(publisherThreads);
+        long start = System.nanoTime();
+
+        try {
+            List<Future<?>> futures = new ArrayList<>(publisherThreads);
+
+            // thread i publishes messages i, i + threads, i + 2 * threads, ...
+            for (int thread = 0; thread < publisherThreads; thread++) {
+                int firstSequence = thread;
+
+                futures.add(executor.submit(() -> {
+                    for (int sequence = firstSequence; sequence < messageCount; sequence += publisherThreads) {
+                        publisher.accept(sequence);
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Publishing failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!broker.awaitIdle(drainTimeout)) {
+            throw new IllegalStateException("Messages haven't been processed in " + drainTimeout);
+        }
+
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        long[] latencies = broker.getLatenciesNanos();
+        Arrays.sort(latencies);
+
+        var report = LoadReport.builder()
+                .messageCount(messageCount)
+                .failedMessageCount(broker.getFailedMessageCount())
+                .elapsed(elapsed)
+                .throughput(messageCount * 1e9 / Math.max(1, elapsed.toNanos()))
+                .latencyP50(percentile(latencies, 0.5))
+                .latencyP90(percentile(latencies, 0.9))
+                .latencyP99(percentile(latencies, 0.99))
+                .latencyMax(percentile(latencies, 1))
+                .build();
+
+        log.info("Load test: {}", report);
+        return report;
+    }
+
+    /**
+     * Nearest-rank percentile.
+     *
+     * @param sortedLatencies latencies in nanoseconds, sorted
+     * @param fraction        percentile as a fraction (0.99 = p99)
+     * @return percentile, zero if there are no latencies
+     */
+    private static Duration percentile(long[] sortedLatencies, double fraction) {
+        if (sortedLatencies.length == 0) {
+            return Duration.ZERO;
+        }
+
+        int rank = (int) Math.ceil(fraction * sortedLatencies.length);
+        return Duration.ofNanos(sortedLatencies[Math.clamp(rank - 1, 0, sortedLatencies.length - 1)]);
+    }
+
+}
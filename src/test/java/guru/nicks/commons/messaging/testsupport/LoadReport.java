@@ -0,0 +1,42 @@
+package guru.nicks.commons.messaging.testsupport;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Result of {@link LoadGenerator#run(int, int, java.util.function.IntConsumer)}.
+ */
+@Value
+@Builder
+public class LoadReport {
+
+    int messageCount;
+    long failedMessageCount;
+
+    /**
+     * From the first message published to the last message processed.
+     */
+    Duration elapsed;
+
+    /**
+     * Messages per second.
+     */
+    double throughput;
+
+    Duration latencyP50;
+    Duration latencyP90;
+    Duration latencyP99;
+    Duration latencyMax;
+
+    @Override
+    public String toString() {
+        return String.format("%d messages (%d failed) in %d ms: %.0f msg/s, latency p50=%d us, p90=%d us, "
+                        + "p99=%d us, max=%d us",
+                messageCount, failedMessageCount, elapsed.toMillis(), throughput,
+                latencyP50.toNanos() / 1000, latencyP90.toNanos() / 1000, latencyP99.toNanos() / 1000,
+                latencyMax.toNanos() / 1000);
+    }
+
+}
@@ -0,0 +1,31 @@
+@messaging #@disabled
+Feature: Binding state service
+  Bindings should be paused while there are outstanding pauses and resumed after the last one ends
+
+  Scenario: Binding is paused once and resumed after the last resume
+    Given a binding state service
+    When binding "input-in-0" is paused
+    And binding "input-in-0" is paused
+    And binding "input-in-0" is resumed
+    Then binding "input-in-0" should be paused
+    And binding "input-in-0" state should be changed to "PAUSED" 1 time
+    And binding "input-in-0" state should be changed to "RESUMED" 0 times
+    When binding "input-in-0" is resumed
+    Then binding "input-in-0" should not be paused
+    And binding "input-in-0" state should be changed to "RESUMED" 1 time
+
+  Scenario: Resuming a binding that isn't paused does nothing
+    Given a binding state service
+    When binding "input-in-0" is resumed
+    Then binding "input-in-0" should not be paused
+    And binding "input-in-0" state should be changed to "RESUMED" 0 times
+
+  Scenario: Bindings are paused independently
+    Given a binding state service
+    When binding "input-in-0" is paused
+    And binding "other-in-0" is paused
+    And binding "other-in-0" is resumed
+    Then binding "input-in-0" should be paused
+    And binding "other-in-0" should not be paused
+    And binding "input-in-0" state should be changed to "PAUSED" 1 time
+    And binding "other-in-0" state should be changed to "RESUMED" 1 time
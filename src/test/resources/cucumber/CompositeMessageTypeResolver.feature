@@ -0,0 +1,29 @@
+@messaging #@disabled
+Feature: CompositeMessageTypeResolver
+  As a messaging component migrating from payload based to header based message types
+  The composite message type resolver should read headers first and fall back on payload
+  So that producers can be migrated one by one
+
+  Scenario Outline: Reading message type from header, then from payload
+    Given a composite resolver message with header "<headerValue>" and payload field "<payloadValue>"
+    When the message type is read by the composite resolver
+    Then the composite resolver should return message type "<expectedType>"
+    And the composite resolver fallback count should be <fallbackCount>
+    And the composite resolver should count <headerCount> message types resolved by "header"
+    And the composite resolver should count <fallbackCount> message types resolved by "payload"
+    Examples:
+      | headerValue | payloadValue | expectedType | fallbackCount | headerCount |
+      | ORDER       | PAYMENT      | ORDER        | 0             | 1           |
+      | ORDER       |              | ORDER        | 0             | 1           |
+      |             | PAYMENT      | PAYMENT      | 1             | 0           |
+      |             |              |              | 0             | 0           |
+
+  Scenario Outline: Writing message type to header and, in migration mode, to payload
+    Given a composite resolver with migration mode <migrationMode>
+    When message type "ORDER" is written by the composite resolver
+    Then the composite resolver target header should be "ORDER"
+    And the composite resolver target payload field should be "<expectedPayloadValue>"
+    Examples:
+      | migrationMode | expectedPayloadValue |
+      | true          | ORDER                |
+      | false         |                      |
@@ -0,0 +1,21 @@
+@messaging #@disabled
+Feature: DeadLetterPublisherService
+  Failed messages should be published to dead letter topics with failure metadata headers
+
+  Background:
+    Given a failed message from topic "orders", partition 3, offset 42 with key "order-1" and header "tenant" set to "acme"
+
+  Scenario: Dead letter carries failure metadata, original coordinates and application headers
+    When the failed message of listener "ordersListener" is dead-lettered to topic "orders-dlq" after 2 attempts
+    Then the dead letter should be published to topic "orders-dlq" with key "order-1"
+    And the dead letter should have headers:
+      | x-dlq-listener-id        | ordersListener                  |
+      | x-dlq-exception-class    | java.lang.IllegalStateException |
+      | x-dlq-exception-message  | consumer failure                |
+      | x-dlq-attempts           | 2                               |
+      | x-dlq-original-topic     | orders                          |
+      | x-dlq-original-partition | 3                               |
+      | x-dlq-original-offset    | 42                              |
+      | tenant                   | acme                            |
+    And the dead letter should not have Kafka headers
+
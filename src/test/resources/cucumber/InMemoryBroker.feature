@@ -0,0 +1,25 @@
+@messaging #@disabled
+Feature: In-memory broker
+  Publisher and dispatching listener work together end-to-end without a running Kafka
+
+  Scenario Outline: Messages are consumed end-to-end, in order per key
+    Given an in-memory broker with topic "orders" having <partitions> partitions
+    And a dispatching message listener is subscribed to topic "orders"
+    When <messages> messages with <keys> distinct keys are published to topic "orders" from <threads> threads
+    Then no exception should be thrown
+    And all <messages> messages should be consumed
+    And messages having the same key should be consumed in publishing order
+    And the load report should have latency percentiles
+    Examples:
+      | partitions | messages | keys | threads |
+      | 1          | 500      | 10   | 1       |
+      | 4          | 2000     | 20   | 4       |
+      | 8          | 2000     | 64   | 2       |
+
+  Scenario: Received timestamp is the time the message was sent, not consumed
+    Given an in-memory broker with topic "slow" having 1 partitions
+    And a dispatching message listener taking 100 ms per message is subscribed to topic "slow"
+    When 3 messages with 1 distinct keys are published to topic "slow" from 1 threads
+    Then no exception should be thrown
+    And all 3 messages should be consumed
+    And the received timestamp of some message should be at least 150 ms old when it's consumed
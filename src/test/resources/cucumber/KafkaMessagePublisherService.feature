@@ -41,8 +41,65 @@ Feature: Kafka Message Publisher Service
       | payments | Map              | PAYMENT     | payment-key |
       | events   | TypeAwareMessage | EVENT       |             |
 
+  Scenario Outline: Publishing messages with typed message keys
+    Given a message with topic "orders" and payload type "TypeAwareMessage"
+    And the payload has message type "ORDER"
+    And the message key of type "<keyType>" is "<messageKey>"
+    When the message is published with typed key
+    Then the message should be sent to the topic
+    And the message headers should contain the message key
+    Examples:
+      | keyType | messageKey                           |
+      | UUID    | 0f8fad5b-d9cb-469f-a165-70867728950e |
+      | UUID    | 00000000-0000-0000-0000-000000000000 |
+      | Long    | 0                                    |
+      | Long    | 1234567890123                        |
+      | Long    | -42                                  |
+      | Long    | 9223372036854775807                  |
+      | Long    | -9223372036854775808                 |
+      | Integer | 17                                   |
+
+  Scenario: Message key is taken from message key aware payload
+    Given a message with topic "orders" and payload type "MessageKeyAwareMessage"
+    And the payload has message type "ORDER"
+    And the message key is "user-1"
+    When the message is published
+    Then the message should be sent to the topic
+    And the message headers should contain the message key
+
+  Scenario Outline: Partition is computed from message key when partition layout is known
+    Given a message with topic "<topic>" and payload type "TypeAwareMessage"
+    And the payload has message type "ORDER"
+    And the topic "orders" has 12 partitions
+    And the message key is "<messageKey>"
+    When the message is published with string key
+    Then the message should be sent to the topic
+    And the message partition should be the one Kafka would pick for <partitionCount> partitions
+    Examples:
+      | topic    | messageKey | partitionCount |
+      | orders   | user-1     | 12             |
+      | orders   | user-2     | 12             |
+      | payments | user-1     | 0              |
+
+  Scenario: Explicit partition takes precedence over computed one
+    Given a message with topic "orders" and payload type "TypeAwareMessage"
+    And the payload has message type "ORDER"
+    And the topic "orders" has 12 partitions
+    And the message key is "user-1"
+    When the message is published to partition 5
+    Then the message should be sent to the topic
+    And the message partition should be 5
+
   Scenario: Publishing message with unsupported payload type
     Given a message with topic "orders" and payload type "String"
     And the payload has message type "ORDER"
     When the message is published
     Then an exception should be thrown
+
+  Scenario: Publishing stages are recorded as JFR events
+    Given a message with topic "orders" and payload type "TypeAwareMessage"
+    And the payload has message type "ORDER"
+    And JFR recording of message publishing is started
+    When the message is published
+    Then no exception should be thrown
+    And JFR publish events should be recorded for stages "CONVERT, RESOLVE_TYPE, SEND"
@@ -0,0 +1,23 @@
+@messaging #@disabled
+Feature: MessageBrokerValues
+  Broker values of enum message types should be computed once, others should be computed on each call
+
+  Scenario Outline: Broker value of enum constant is cached
+    When broker value of enum message type "<constant>" is read 3 times
+    Then the broker value read should be "<brokerValue>"
+    And broker value of enum message type "<constant>" should have been computed 1 time
+
+    Examples:
+      | constant  | brokerValue |
+      | PLAIN     | plain       |
+      | WITH_BODY | with-body   |
+      | BLANK     |             |
+
+  Scenario: Broker value of non-enum message type is not cached
+    When broker value of non-enum message type "custom" is read 3 times
+    Then the broker value read should be "custom"
+    And broker value of non-enum message type should have been computed 3 times
+
+  Scenario: Broker value of null message type is null
+    When broker value of null message type is read
+    Then the broker value read should be ""
@@ -0,0 +1,97 @@
+@messaging #@disabled
+Feature: MessageCoalescer
+  Messages having the same key should be coalesced and acknowledged only after delivery
+
+  Scenario: Latest payload of a key is delivered when the window expires
+    Given message coalescer with max messages 0 and max keys 100
+    When message "a1" with key "a" is offered to coalescer
+    And message "a2" with key "a" is offered to coalescer
+    And message "a3" with key "a" is offered to coalescer
+    Then coalesced payloads should be ""
+    And 0 coalesced messages should be acknowledged
+    When scheduled coalescer flush number 1 runs
+    Then coalesced payloads should be "a3"
+    And 3 coalesced messages should be acknowledged
+    And coalescer should have 0 pending keys
+
+  Scenario: Payloads are merged per key and keys are delivered in order
+    Given message coalescer with max messages 0 and max keys 100
+    And coalescer merges payloads
+    When message "a1" with key "a" is offered to coalescer
+    And message "b1" with key "b" is offered to coalescer
+    And message "a2" with key "a" is offered to coalescer
+    And scheduled coalescer flush number 1 runs
+    And scheduled coalescer flush number 2 runs
+    Then coalesced payloads should be "a1+a2,b1"
+    And 3 coalesced messages should be acknowledged
+
+  Scenario: Buffer reaching max messages is delivered at once, and its stale flush doesn't deliver a newer buffer
+    Given message coalescer with max messages 2 and max keys 100
+    And coalescer merges payloads
+    When message "a1" with key "a" is offered to coalescer
+    And message "a2" with key "a" is offered to coalescer
+    Then coalesced payloads should be "a1+a2"
+    And 2 coalesced messages should be acknowledged
+    When message "a3" with key "a" is offered to coalescer
+    And scheduled coalescer flush number 1 runs
+    Then coalesced payloads should be "a1+a2"
+    And coalescer should have 1 pending keys
+    When scheduled coalescer flush number 2 runs
+    Then coalesced payloads should be "a1+a2,a3"
+    And 3 coalesced messages should be acknowledged
+
+  Scenario: Messages without acknowledgment are not buffered
+    Given message coalescer with max messages 0 and max keys 100
+    When message "a1" with key "a" and without acknowledgment is offered to coalescer
+    Then coalesced payloads should be "a1"
+    And the last message should be buffered by coalescer: false
+    And coalescer should have 0 pending keys
+
+  Scenario: Messages of new keys are not buffered when max keys are buffered
+    Given message coalescer with max messages 0 and max keys 1
+    When message "a1" with key "a" is offered to coalescer
+    And message "b1" with key "b" is offered to coalescer
+    Then coalesced payloads should be "b1"
+    And the last message should be buffered by coalescer: false
+    And 0 coalesced messages should be acknowledged
+    And coalescer should have 1 pending keys
+
+  Scenario: Failed delivery is not acknowledged and is retried together with newer messages
+    Given message coalescer with max messages 0 and max keys 100
+    And coalescer merges payloads
+    And coalesced delivery fails 1 time
+    When message "a1" with key "a" is offered to coalescer
+    And scheduled coalescer flush number 1 runs
+    Then coalesced payloads should be ""
+    And 0 coalesced messages should be acknowledged
+    And coalescer should have 1 pending keys
+    When message "a2" with key "a" is offered to coalescer
+    And scheduled coalescer flush number 2 runs
+    Then coalesced payloads should be "a1+a2"
+    And 2 coalesced messages should be acknowledged
+
+  Scenario: Buffered messages are delivered on close
+    Given message coalescer with max messages 0 and max keys 100
+    When message "a1" with key "a" is offered to coalescer
+    And message "b1" with key "b" is offered to coalescer
+    And message coalescer is closed
+    Then coalesced payloads should be "a1,b1"
+    And 2 coalesced messages should be acknowledged
+    When message "a2" with key "a" is offered to coalescer
+    Then coalesced payloads should be "a1,b1,a2"
+    And the last message should be buffered by coalescer: false
+    And 2 coalesced messages should be acknowledged
+    And coalescer should have 0 pending keys
+
+  Scenario: Slow delivery of a key doesn't hold up deliveries of other keys
+    Given message coalescer with max messages 0 and max keys 100
+    And coalesced delivery of payload "a1" blocks until released
+    When message "a1" with key "a" is offered to coalescer
+    And message "b1" with key "b" is offered to coalescer
+    Then the last message should be buffered by coalescer: true
+    When scheduled coalescer flush number 1 runs in background until its delivery blocks
+    And scheduled coalescer flush number 2 runs
+    Then coalesced payloads should be "b1"
+    When blocked coalesced delivery is released
+    Then coalesced payloads should be "b1,a1"
+    And 2 coalesced messages should be acknowledged
@@ -0,0 +1,44 @@
+@messaging #@disabled
+Feature: Off-heap buffered message publisher
+  Messages are buffered off-heap and sent by a dedicated thread, in publishing order
+
+  Scenario Outline: Buffered messages are sent in publishing order
+    Given an off-heap buffered publisher with capacity of <capacity> bytes and overflow policy "<policy>"
+    When <messages> messages are published to topic "orders" with keys
+    And the off-heap buffered publisher is closed
+    Then no exception should be thrown
+    And <messages> messages should be sent to topic "orders" in publishing order with their keys
+    Examples:
+      | capacity | policy        | messages |
+      | 65536    | BLOCK         | 200      |
+      | 512      | BLOCK         | 200      |
+      | 512      | SPILL_TO_DISK | 200      |
+
+  Scenario: Messages are dropped when buffer is full and overflow policy is drop
+    Given the binder is slow
+    And an off-heap buffered publisher with capacity of 512 bytes and overflow policy "DROP"
+    When 200 messages are published to topic "orders" with keys
+    And the off-heap buffered publisher is closed
+    Then no exception should be thrown
+    And some messages should be dropped
+
+  Scenario: Publishers wait for the spill file to be sent when it's full
+    Given the binder is slow
+    And an off-heap buffered publisher with capacity of 512 bytes spilling up to 1024 bytes and waiting up to 30000 ms for space
+    When 200 messages are published to topic "orders" with keys
+    And the off-heap buffered publisher is closed
+    Then no exception should be thrown
+    And 200 messages should be sent to topic "orders" in publishing order with their keys
+
+  Scenario: Publishing fails when the spill file is full for too long
+    Given the binder is slow
+    And an off-heap buffered publisher with capacity of 512 bytes spilling up to 1024 bytes and waiting up to 1 ms for space
+    When 200 messages are published to topic "orders" with keys
+    Then the exception message should contain "spill file is full"
+
+  Scenario: Header values longer than 64 KB are sent as is
+    Given an off-heap buffered publisher with capacity of 1048576 bytes and overflow policy "BLOCK"
+    When a message with header "x-trace" of 100000 characters is published to topic "orders"
+    And the off-heap buffered publisher is closed
+    Then no exception should be thrown
+    And the sent message should have header "x-trace" of 100000 characters
@@ -0,0 +1,20 @@
+@messaging #@disabled
+Feature: Payload converter
+  Raw payload maps should be converted to payload classes the same way as with ObjectMapper#convertValue
+
+  Scenario Outline: Raw payload is converted like ObjectMapper does it
+    Given a payload converter
+    When raw payload '<json>' is converted
+    Then no exception should be thrown
+    And the converted payload should be equal to the one converted by object mapper
+    Examples:
+      | json                                                                                                      |
+      | {"text":"a","count":5,"total":12345678901,"ratio":1.5,"amount":2.25,"active":true}                        |
+      | {"nested":{"text":"b","numbers":[1,2,3]},"children":[{"text":"c"},{"text":"d","numbers":[]}]}             |
+      | {"text":null,"binary":"AQID","attributes":{"k":[1,"2",{"z":null}]},"unknown":{"deep":[1,[2]]}}            |
+      | {}                                                                                                        |
+
+  Scenario: Integer overflow is reported
+    Given a payload converter
+    When raw payload '{"count":30000000000}' is converted
+    Then the exception message should contain "out of range of int"
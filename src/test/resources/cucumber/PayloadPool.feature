@@ -0,0 +1,14 @@
+@messaging #@disabled
+Feature: PayloadPool
+  In leak detection mode, payloads retained by consumers after release should be reported
+
+  Scenario Outline: Retained payload is reported as leaking after garbage collection
+    Given a payload pool with leak detection
+    When a reusable payload is acquired and released, retained by its consumer: <retained>
+    And garbage is collected
+    And another reusable payload is acquired and released
+    Then the reusable payload class should be reported as leaking: <leaking>
+    Examples:
+      | retained | leaking |
+      | true     | true    |
+      | false    | false   |
@@ -0,0 +1,32 @@
+@messaging #@disabled
+Feature: ReactiveDispatchingMessageListener
+  Messages should be dispatched off the caller thread, in order per partition, and failures should not be skipped
+
+  Scenario Outline: Messages of the same partition are dispatched in their arrival order
+    Given reactive listener with concurrency <concurrency>
+    When reactive listener receives messages:
+      | partition | content |
+      | 0         | a1      |
+      | 1         | b1      |
+      | 0         | a2      |
+      | 1         | b2      |
+      | 0         | a3      |
+    Then no exception should be thrown
+    And reactive delegate should receive contents "a1,a2,a3" from partition 0
+    And reactive delegate should receive contents "b1,b2" from partition 1
+    And reactive delegate should not be called on the caller thread
+    Examples:
+      | concurrency |
+      | 1           |
+      | 2           |
+
+  Scenario: Failed message stops the listener instead of being skipped
+    Given reactive listener with concurrency 1
+    And reactive delegate fails on content "a2" with message "consumer failure"
+    When reactive listener receives messages:
+      | partition | content |
+      | 0         | a1      |
+      | 0         | a2      |
+      | 0         | a3      |
+    Then the exception message should contain "consumer failure"
+    And reactive delegate should receive contents "a1" from partition 0
@@ -0,0 +1,16 @@
+@messaging #@disabled
+Feature: ReactiveMessagePublisherService
+  Messages should be published by the blocking publisher, on a scheduler meant for blocking tasks
+
+  Scenario: Message is published on subscription, off the caller thread
+    When reactive publisher publishes to topic "orders"
+    Then blocking publisher should not be called
+    When reactive publication is subscribed to
+    Then no exception should be thrown
+    And blocking publisher should publish to topic "orders" off the caller thread
+
+  Scenario: Publishing failure is signalled as error
+    Given blocking publisher fails with message "broker unavailable"
+    When reactive publisher publishes to topic "orders"
+    And reactive publication is subscribed to
+    Then the exception message should contain "broker unavailable"
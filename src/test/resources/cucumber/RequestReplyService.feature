@@ -0,0 +1,45 @@
+@messaging #@disabled
+Feature: RequestReplyService
+  Requests should be completed by replies having the same correlation ID, or fail on timeout
+
+  Background:
+    Given request-reply service with reply topic "test-replies"
+
+  Scenario: Reply arriving at reply listener completes the request
+    When request is sent to topic "test-requests" with timeout of 5000 ms
+    Then request should be published to topic "test-requests" with correlation ID and reply topic "test-replies"
+    And pending request count should be 1
+    When reply with the request correlation ID and field "result" set to "done" arrives at reply listener
+    Then request should be completed with field "result" set to "done"
+    And pending request count should be 0
+
+  Scenario: Request without reply times out
+    When request is sent to topic "test-requests" with timeout of 50 ms
+    Then request should fail with timeout within 2000 ms
+    And pending request count should be 0
+
+  Scenario: Reply having unknown correlation ID is dropped
+    When request is sent to topic "test-requests" with timeout of 5000 ms
+    And reply with correlation ID "unknown" and field "result" set to "done" arrives at reply listener
+    Then no exception should be thrown
+    And request should not be completed
+    And pending request count should be 1
+
+  Scenario: Request failing to publish fails the future
+    Given publishing fails with message "broker unavailable"
+    When request is sent to topic "test-requests" with timeout of 5000 ms
+    Then request should fail with exception message "broker unavailable"
+    And pending request count should be 0
+
+  Scenario: Cancelled request is forgotten
+    When request is sent to topic "test-requests" with timeout of 5000 ms
+    And request is cancelled by the caller
+    Then pending request count should be 0
+
+  Scenario: Responder replies to the reply topic with the request correlation ID
+    When reply is sent for request having correlation ID "abc" and reply topic "test-replies"
+    Then reply should be published to topic "test-replies" with correlation ID "abc"
+
+  Scenario: Responder can't reply to request lacking reply topic
+    When reply is sent for request having correlation ID "abc" and no reply topic
+    Then the exception message should contain "x-reply-topic"
@@ -37,6 +37,127 @@ Feature: Type Based Dispatching Message Listener
     When a type based dispatching message listener is initialized
     Then the exception message should contain "Payload class must inherit from"
 
+  Scenario: Consumer declaring its payload class and message type is bound without payload instantiation
+    Given a message consumer declaring payload class and message type "declared-type" is registered
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a message with type "declared-type" is received
+    Then no exception should be thrown
+    And the message should be dispatched to the declaring consumer
+
+  Scenario Outline: Consumer failures are retried in-process according to consumer's retry policy
+    Given a message consumer failing <failures> times with retry policy of <maxAttempts> attempts is registered
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a message with type "test-type" is received by a listener that may fail
+    Then the failing consumer should be called <calls> times
+    And no exception should be thrown
+    Examples:
+      | failures | maxAttempts | calls |
+      | 0        | 3           | 1     |
+      | 1        | 3           | 2     |
+      | 2        | 3           | 3     |
+
+  Scenario: Consumer failure is rethrown when retries are exhausted
+    Given a message consumer failing 3 times with retry policy of 2 attempts is registered
+    And a type based dispatching message listener is initialized
+    When a message with type "test-type" is received by a listener that may fail
+    Then the failing consumer should be called 2 times
+    And the exception message should contain "consumer failure #2"
+
+  Scenario: Non-retryable consumer failure is not retried
+    Given a message consumer failing with validation exception and retry policy of 3 attempts is registered
+    And a type based dispatching message listener is initialized
+    When a message with type "test-type" is received by a listener that may fail
+    Then the failing consumer should be called 1 times
+    And the exception message should contain "non-retryable"
+
+  Scenario: Consumer failure is published to dead letter topic instead of being rethrown
+    Given a message consumer failing 3 times with retry policy of 2 attempts is registered
+    And a type based dispatching message listener is initialized
+    And the listener publishes dead letters to topic "test-dlq"
+    When a message with type "test-type" is received by a listener that may fail
+    Then no exception should be thrown
+    And the failing consumer should be called 2 times
+    And a dead letter should be published to topic "test-dlq" after 2 attempts
+
+  Scenario: Consumer failure is rethrown when dead letter can't be published
+    Given a message consumer failing 3 times with retry policy of 2 attempts is registered
+    And a type based dispatching message listener is initialized
+    And the listener publishes dead letters to topic "test-dlq"
+    And publishing dead letters fails with message "DLQ unavailable"
+    When a message with type "test-type" is received by a listener that may fail
+    Then the exception message should contain "consumer failure #2"
+
+  Scenario Outline: Handled messages are acknowledged
+    Given a message consumer is registered for test message
+    And a type based dispatching message listener is initialized
+    When a message with type "<messageType>", key "key" and acknowledgment is received
+    Then no exception should be thrown
+    And the consumer should be called <calls> times
+    And the message should be acknowledged 1 time
+    Examples:
+      | messageType | calls |
+      | test-type   | 1     |
+      | other-type  | 0     |
+
+  Scenario: Dead-lettered message is acknowledged
+    Given a message consumer failing 3 times with retry policy of 2 attempts is registered
+    And a type based dispatching message listener is initialized
+    And the listener publishes dead letters to topic "test-dlq"
+    When a message with type "test-type", key "key" and acknowledgment is received
+    Then no exception should be thrown
+    And the message should be acknowledged 1 time
+
+  Scenario: Failed message is not acknowledged
+    Given a message consumer failing 3 times with retry policy of 2 attempts is registered
+    And a type based dispatching message listener is initialized
+    When a message with type "test-type", key "key" and acknowledgment is received
+    Then the exception message should contain "consumer failure #2"
+    And the message should be acknowledged 0 times
+
+  Scenario: Message buffered by a coalescer is acknowledged after delivery
+    Given a coalescing message consumer is registered for test message
+    And a type based dispatching message listener is initialized
+    When a message with type "test-type", key "key" and acknowledgment is received
+    Then no exception should be thrown
+    And the consumer should be called 0 times
+    And the message should be acknowledged 0 times
+    When scheduled coalescing flushes run
+    Then the consumer should be called 1 times
+    And the message should be acknowledged 1 time
+
+  Scenario: Fan-out mode redelivers messages only to consumers that failed
+    Given fan-out mode is enabled
+    And a message consumer is registered for test message
+    And a message consumer failing 1 times with retry policy of 1 attempts is registered
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a message with type "test-type" and offset 42 is delivered twice
+    Then no exception should be thrown
+    And the consumer should be called 1 times
+    And the failing consumer should be called 2 times
+
+  Scenario: Fan-out mode records completions in the injected store by consumer ID
+    Given fan-out mode is enabled
+    And a message consumer with ID "first" is registered for test message
+    And a message consumer with ID "second" is registered for test message
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    And the listener has a message completion store
+    When a message with type "test-type" and offset 42 is delivered twice
+    Then no exception should be thrown
+    And the consumer should be called 4 times
+    And completion of the message by consumer "first" should be recorded in the message completion store
+    And completion of the message by consumer "second" should be recorded in the message completion store
+
+  Scenario: Fan-out mode requires unique consumer IDs
+    Given fan-out mode is enabled
+    And a message consumer is registered for test message
+    And a message consumer is registered for test message
+    When a type based dispatching message listener is initialized
+    Then the exception message should contain "consumer ID"
+
   Scenario Outline: Message type resolution is delegated to message type resolver
     Given a type based dispatching message listener is initialized
     And no exception should be thrown
@@ -49,3 +170,202 @@ Feature: Type Based Dispatching Message Listener
       | test-type-2   |
       | unknown-type  |
       |               |
+
+  Scenario: Message is deserialized with specialized deserializer
+    Given a message consumer using specialized deserialization is registered for test message
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a message with type "test-type" is received
+    Then no exception should be thrown
+    And the message should be dispatched to the correct consumer
+    And the consumer should receive content "Test content"
+
+  Scenario: Reusable payload instance is reset and refilled for each message
+    Given a message consumer with reusable payload is registered for test message
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a message with type "test-type" is received
+    And a message with type "test-type" and no content is received
+    Then no exception should be thrown
+    And the reusable payload consumer should receive contents "Test content,"
+    And the reusable payload consumer should receive the same instance each time
+
+  Scenario: Priority listener processes urgent messages first, preserving per-key order
+    Given a message consumer with priority 0 is registered for message type "bulk-type"
+    And a message consumer with priority 10 is registered for message type "urgent-type"
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a batch of messages is received by a priority listener:
+      | type        | key | content  |
+      | bulk-type   | a   | bulk-a   |
+      | bulk-type   | b   | bulk-b   |
+      | urgent-type | b   | urgent-b |
+      | urgent-type | c   | urgent-c |
+      | bulk-type   | d   | bulk-d   |
+    Then no exception should be thrown
+    And messages should be processed in order "bulk-b,urgent-b,urgent-c,bulk-a,bulk-d"
+
+  Scenario: Message log context is set during processing only
+    Given a message consumer is registered for test message
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a message with type "test-type" is received
+    Then no exception should be thrown
+    And the message ID should be in the log context during consumption
+    And the message ID should not remain in the log context
+
+  Scenario Outline: End-to-end latency is recorded per listener and message type
+    Given a message consumer is registered for test message
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    And the listener has a meter registry
+    When a message with type "<type>" published 1500 ms ago is received
+    Then no exception should be thrown
+    And "<meter>" latency of at least 1500 ms should be recorded for message type "<tag>"
+    Examples:
+      | meter                                | type       | tag       |
+      | messaging.message.dispatch.latency   | test-type  | test-type |
+      | messaging.message.completion.latency | test-type  | test-type |
+      | messaging.message.dispatch.latency   | other-type | unknown   |
+      | messaging.message.completion.latency | other-type | unknown   |
+
+  Scenario Outline: Messages older than consumer's max age are shed before deserialization
+    Given a message consumer with max message age of 60 seconds is registered for test message
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a message with type "test-type" and Kafka timestamp <age> seconds ago is received
+    Then no exception should be thrown
+    And the consumer should be called <calls> times
+    And the listener should have shed <shed> messages
+    Examples:
+      | age  | calls | shed |
+      | 1    | 1     | 0    |
+      | 3600 | 0     | 1    |
+
+  Scenario Outline: Messages older than max age of the payload's message type are shed
+    Given a message consumer of payloads whose message type has max age of 60 seconds is registered
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a message with type "test-type" and Kafka timestamp <age> seconds ago is received
+    Then no exception should be thrown
+    And the consumer should be called <calls> times
+    And the listener should have shed <shed> messages
+    Examples:
+      | age  | calls | shed |
+      | 1    | 1     | 0    |
+      | 3600 | 0     | 1    |
+
+  Scenario Outline: Low-value message types are shed while the listener lags behind
+    Given a message consumer with priority 0 is registered for message type "bulk-type"
+    And a message consumer with priority 0 is registered for message type "urgent-type"
+    And load shedding of message type "bulk-type" is enabled with lag threshold of 60 seconds
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When messages with Kafka timestamp <age> seconds ago are received:
+      | type        | content  |
+      | bulk-type   | bulk-a   |
+      | urgent-type | urgent-a |
+      | bulk-type   | bulk-b   |
+    Then no exception should be thrown
+    And messages should be processed in order "<processed>"
+    And the listener should have load-shed <shed> messages
+    Examples:
+      | age  | processed              | shed |
+      | 1    | bulk-a,urgent-a,bulk-b | 0    |
+      | 3600 | urgent-a               | 2    |
+
+  Scenario: Load-shed messages are counted per sheddable message type
+    Given a message consumer with priority 0 is registered for message type "bulk-type"
+    And a message consumer with priority 0 is registered for message type "urgent-type"
+    And load shedding of message type "bulk-type" is enabled with lag threshold of 60 seconds
+    And a type based dispatching message listener is initialized
+    And the listener has a meter registry
+    When messages with Kafka timestamp 3600 seconds ago are received:
+      | type        | content  |
+      | bulk-type   | bulk-a   |
+      | urgent-type | urgent-a |
+      | other-type  | other-a  |
+      | bulk-type   | bulk-b   |
+    Then no exception should be thrown
+    And load-shed messages should be counted only for message type "bulk-type": 2
+
+  Scenario: Shed message is deferred with its message type header and key
+    Given a message consumer with priority 0 is registered for message type "bulk-type"
+    And load shedding of message type "bulk-type" is enabled with lag threshold of 60 seconds and deferred topic "deferred"
+    And a type based dispatching message listener with message type header "x-type" is initialized
+    And the listener has a message publisher
+    When a message with header "x-type" set to "bulk-type", key "order-1" and Kafka timestamp 3600 seconds ago is received
+    Then no exception should be thrown
+    And the listener should have load-shed 1 messages
+    And the message should be deferred to topic "deferred" with key "order-1" and header "x-type" set to "bulk-type"
+
+  Scenario: Consumer rate limit slows down dispatching without pausing the binding for short waits
+    Given a message consumer limited to 20 messages per second is registered for test message
+    And a type based dispatching message listener is initialized
+    And the listener can pause its binding
+    When 6 messages with type "test-type" are received
+    Then no exception should be thrown
+    And the limited consumer should be called 6 times
+    And receiving should take at least 200 ms
+    And the binding should be paused 0 times
+
+  Scenario: Throttled messages pause the binding once per pause period
+    Given a message consumer limited to 2 messages per second is registered for test message
+    And a type based dispatching message listener is initialized
+    And the listener can pause its binding
+    When 3 messages with type "test-type" are received
+    Then no exception should be thrown
+    And the limited consumer should be called 3 times
+    And the binding should be paused 1 time
+
+  Scenario: Slow consumers pause the binding once per pause period
+    Given a message consumer taking 30 ms is registered for test message
+    And backpressure is enabled with latency threshold of 10 ms
+    And a type based dispatching message listener is initialized
+    And the listener can pause its binding
+    When 3 messages with type "test-type" are received
+    Then no exception should be thrown
+    And the limited consumer should be called 3 times
+    And the binding should be paused 1 time
+
+  Scenario: Fast consumers don't pause the binding
+    Given a message consumer taking 0 ms is registered for test message
+    And backpressure is enabled with latency threshold of 1000 ms
+    And a type based dispatching message listener is initialized
+    And the listener can pause its binding
+    When 3 messages with type "test-type" are received
+    Then no exception should be thrown
+    And the binding should be paused 0 times
+
+  Scenario: Consumer concurrency limit is enforced
+    Given a message consumer limited to 1 concurrent message and taking 50 ms is registered for test message
+    And a type based dispatching message listener is initialized
+    When 4 messages with type "test-type" are received concurrently
+    Then the limited consumer should be called 4 times
+    And the limited consumer should process at most 1 message at the same time
+
+  Scenario: Consumer is registered and disabled at runtime
+    Given a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a message consumer for test message is registered at runtime
+    And no exception should be thrown
+    And a message with type "test-type" is received
+    And the runtime message consumer is disabled
+    And a message with type "test-type" is received
+    Then the consumer should be called 1 times
+
+  Scenario: Registering another consumer for a bound message type at runtime causes exception
+    Given a message consumer is registered for test message
+    And a type based dispatching message listener is initialized
+    And no exception should be thrown
+    When a message consumer for test message is registered at runtime
+    Then the exception message should contain "message type 'test-type' is already bound"
+
+  Scenario: Listener takes its consumers out of shared consumer index
+    Given a message consumer is registered for test message
+    And a type based dispatching message listener is initialized with shared consumer index
+    And no exception should be thrown
+    When a message with type "test-type" is received
+    Then no exception should be thrown
+    And the message should be dispatched to the correct consumer
+    And the shared consumer index should have message type "test-type" for the consumer